@@ -0,0 +1,88 @@
+package bank;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+// Счета в куче против таблицы счетов в отображенном файле: занятая куча после открытия счетов,
+// время перезапуска после штатной остановки и пополнения по случайным счетам.
+// Все счета принадлежат одному клиенту, чтобы в замер попадали только счета.
+// Аргументы: [число счетов] [секунд на пополнения]
+public class AccountStorageBench {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Path root = Files.createTempDirectory("bank-account-storage-bench");
+        try {
+            for (AccountStorage storage : AccountStorage.values()) {
+                run(storage, root.resolve(storage.name()), accounts, seconds);
+            }
+        } finally {
+            BenchFiles.delete(root);
+        }
+    }
+
+    // Фазы в отдельных методах: банк предыдущей фазы не остается достижимым из локальных переменных
+    private static void run(AccountStorage storage, Path dir, int accounts, int seconds) throws IOException {
+        fill(storage, dir, accounts);
+        reopen(storage, dir, accounts, seconds);
+    }
+
+    private static void fill(AccountStorage storage, Path dir, int accounts) throws IOException {
+        long baseline = usedHeap();
+        // Снимок только при закрытии
+        try (Bank bank = new Bank(dir, Durability.ASYNC, Long.MAX_VALUE, storage)) {
+            Customer owner = bank.createCustomer("Клиент");
+            for (int i = 0; i < accounts; i++) {
+                bank.openDebitAccount(owner);
+            }
+            long bytes = usedHeap() - baseline;
+            Reference.reachabilityFence(bank);
+            System.out.printf("%-6s куча: %6.1f байт/счет%n", storage, (double) bytes / accounts);
+        }
+    }
+
+    private static void reopen(AccountStorage storage, Path dir, int accounts, int seconds) throws IOException {
+        long baseline = usedHeap();
+        long started = System.nanoTime();
+        try (Bank bank = new Bank(dir, Durability.ASYNC, Long.MAX_VALUE, storage)) {
+            long restart = System.nanoTime() - started;
+            long bytes = usedHeap() - baseline;
+            Reference.reachabilityFence(bank);
+            System.out.printf("%-6s перезапуск: %,8.0f мс | куча после перезапуска: %6.1f байт/счет%n",
+                    storage, restart / 1e6, (double) bytes / accounts);
+
+            SplittableRandom random = new SplittableRandom(42);
+            long deposits = 0;
+            long end = System.nanoTime() + seconds * 1_000_000_000L;
+            started = System.nanoTime();
+            while (System.nanoTime() < end) {
+                for (int i = 0; i < 1000; i++) {
+                    bank.deposit(random.nextInt(accounts), AMOUNT);
+                }
+                deposits += 1000;
+            }
+            double rate = deposits * 1e9 / (System.nanoTime() - started);
+            BigDecimal total = BigDecimal.ZERO;
+            for (Account account : bank.getAccounts()) {
+                total = total.add(account.getBalance());
+            }
+            boolean consistent = total.equals(AMOUNT.multiply(BigDecimal.valueOf(deposits)));
+            System.out.printf("%-6s пополнения: %,12.0f оп/с | сумма балансов %s%n",
+                    storage, rate, consistent ? "совпадает" : "НЕ СОВПАДАЕТ");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,134 @@
+package bank;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Постоянная нагрузка пополнениями с заданной частотой без архива и с архивацией старых транзакций: занятая
+// куча после GC каждые несколько секунд, размер архива на диске и чтение всей истории, большая часть
+// которой в архиве. Затем банк перезапускается, и история, ее сумма и итоги отчета сверяются с прежними.
+// Аргументы: [секунд нагрузки] [пополнений в секунду] [транзакций в памяти при архивации]
+public class ArchiveBench {
+    private static final int ACCOUNTS = 10_000;
+    private static final int REPORT_EVERY_SECONDS = 5;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    public static void main(String[] args) throws IOException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        int keepRecords = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        Path root = Files.createTempDirectory("bank-archive-bench");
+        try {
+            run("без архива", root.resolve("plain"), seconds, rate, -1);
+            run("с архивом", root.resolve("archived"), seconds, rate, keepRecords);
+        } finally {
+            BenchFiles.delete(root);
+        }
+    }
+
+    // keepRecords < 0 - без архивации
+    private static void run(String name, Path dir, int seconds, int rate, int keepRecords) throws IOException {
+        String before;
+        try (Bank bank = new Bank(dir, Durability.ASYNC, Bank.DEFAULT_SNAPSHOT_EVERY)) {
+            Customer owner = bank.createCustomer("Клиент");
+            for (int i = 0; i < ACCOUNTS; i++) {
+                bank.openDebitAccount(owner);
+            }
+            if (keepRecords >= 0) {
+                bank.startArchiver(keepRecords, null);
+            }
+            System.out.println(name + ":");
+            SplittableRandom random = new SplittableRandom(42);
+            long deposits = 0;
+            for (int second = REPORT_EVERY_SECONDS; second <= seconds; second += REPORT_EVERY_SECONDS) {
+                // Пачки по 1000 пополнений по расписанию; отставшая пачка выполняется сразу
+                long started = System.nanoTime();
+                long batches = (long) rate * REPORT_EVERY_SECONDS / 1000;
+                for (long batch = 0; batch < batches; batch++) {
+                    long due = started + batch * 1000 * 1_000_000_000L / rate;
+                    LockSupport.parkNanos(due - System.nanoTime());
+                    for (int i = 0; i < 1000; i++) {
+                        bank.deposit(random.nextInt(ACCOUNTS), AMOUNT);
+                    }
+                    deposits += 1000;
+                }
+                double achieved = batches * 1000 * 1e9 / (System.nanoTime() - started);
+                System.out.printf("  %3d с: транзакций %,12d | %,9.0f оп/с | куча после GC %,6.0f МБ%n",
+                        second, deposits, achieved, usedHeap() / 1e6);
+            }
+            System.out.printf("  архив на диске: %s%n", archiveSize(dir.resolve("archive"), deposits));
+
+            long started = System.nanoTime();
+            List<Transaction> history = bank.getTransactions();
+            long total = 0;
+            for (int i = 0; i < history.size(); i++) {
+                total += Money.toMinor(history.get(i).getAmount());
+            }
+            double elapsed = (System.nanoTime() - started) / 1e9;
+            System.out.printf("  чтение всей истории: %,.0f записей/с (сумма %s)%n",
+                    history.size() / elapsed, Money.toBigDecimal(total));
+            before = describe(bank, total);
+        }
+
+        long started = System.nanoTime();
+        try (Bank bank = new Bank(dir, Durability.ASYNC, Bank.DEFAULT_SNAPSHOT_EVERY)) {
+            double elapsed = (System.nanoTime() - started) / 1e9;
+            long total = 0;
+            for (Transaction transaction : bank.getTransactions()) {
+                total += Money.toMinor(transaction.getAmount());
+            }
+            String after = describe(bank, total);
+            if (!after.equals(before)) {
+                throw new IllegalStateException("История после перезапуска не совпадает: " + before + " | " + after);
+            }
+            System.out.printf("  перезапуск за %.2f с, история совпадает | журнал на диске %,.0f МБ%n",
+                    elapsed, journalSize(dir) / 1e6);
+        }
+    }
+
+    private static String describe(Bank bank, long total) {
+        try (BankView view = bank.openView()) {
+            BankStats stats = view.getStats();
+            return "транзакций " + bank.getTransactions().size() + ", сумма " + total
+                    + ", успешных " + stats.getSuccessCount() + ", сбоев " + stats.getFailCount();
+        }
+    }
+
+    private static long journalSize(Path dir) throws IOException {
+        long bytes = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().startsWith("journal-")) {
+                    bytes += Files.size(file);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static String archiveSize(Path archive, long transactions) throws IOException {
+        if (!Files.isDirectory(archive)) {
+            return "-";
+        }
+        long bytes = 0;
+        try (Stream<Path> files = Files.list(archive)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                bytes += Files.size(file);
+            }
+        }
+        return String.format("%,.0f МБ, %.1f байт/транзакцию", bytes / 1e6, (double) bytes / transactions);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,90 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Баланс счета на момент из середины истории: Bank.balanceAsOf с контрольными точками против прогона
+// getTransactions() с начала журнала. Моменты - метки времени случайных транзакций; ответы сверяются.
+// Аргументы: [размеры журнала через пробел]
+public class BalanceAsOfBench {
+    private static final int ACCOUNTS = 1_000;
+    private static final int QUERIES = 100_000;
+    private static final int REPLAY_QUERIES = 20;
+    private static final long SEED = 1_000_000;
+
+    public static void main(String[] args) {
+        int[] sizes = (args.length > 0) ? parseSizes(args) : new int[] {10_000, 1_000_000, 5_000_000};
+        for (int size : sizes) {
+            Bank bank = new Bank();
+            Customer owner = bank.createCustomer("Клиент");
+            Bank.Outcome outcome = new Bank.Outcome();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                bank.deposit(bank.openDebitAccount(owner).getAccountNumber(), SEED, SEED, outcome);
+            }
+            SplittableRandom random = new SplittableRandom(1);
+            for (int i = ACCOUNTS; i < size; i++) {
+                long amount = random.nextInt(1, 10_000);
+                if (i % 4 == 0) {
+                    bank.deposit(random.nextInt(ACCOUNTS), amount, amount, outcome);
+                } else {
+                    bank.transfer(random.nextInt(ACCOUNTS), random.nextInt(ACCOUNTS), amount, amount, outcome);
+                }
+            }
+            List<Transaction> transactions = bank.getTransactions();
+
+            long sink = 0;
+            double checkpointMicros = 0;
+            for (int round = 1; round <= 3; round++) {
+                SplittableRandom queries = new SplittableRandom(round);
+                long started = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    LocalDateTime time = transactions.get(queries.nextInt(size)).getTimestamp();
+                    sink += bank.balanceAsOf(queries.nextInt(ACCOUNTS), time).unscaledValue().longValue();
+                }
+                checkpointMicros = (System.nanoTime() - started) / 1e3 / QUERIES;
+            }
+
+            SplittableRandom queries = new SplittableRandom(7);
+            boolean match = true;
+            long started = System.nanoTime();
+            for (int q = 0; q < REPLAY_QUERIES; q++) {
+                LocalDateTime time = transactions.get(queries.nextInt(size)).getTimestamp();
+                int accountNumber = queries.nextInt(ACCOUNTS);
+                BigDecimal replayed = replay(transactions, accountNumber, time);
+                match &= replayed.compareTo(bank.balanceAsOf(accountNumber, time)) == 0;
+            }
+            double replayMicros = (System.nanoTime() - started) / 1e3 / REPLAY_QUERIES;
+            System.out.printf("%,12d транзакций | balanceAsOf: %8.2f мкс | прогон с начала: %,12.0f мкс | ответы %s | %d%n",
+                    size, checkpointMicros, replayMicros, match ? "совпадают" : "РАСХОДЯТСЯ", sink);
+        }
+    }
+
+    private static BigDecimal replay(List<Transaction> transactions, int accountNumber, LocalDateTime time) {
+        BigDecimal balance = BigDecimal.ZERO;
+        for (Transaction transaction : transactions) {
+            if (transaction.getTimestamp().isAfter(time)) {
+                break;
+            }
+            if (!transaction.isSuccess()) {
+                continue;
+            }
+            if (Integer.valueOf(accountNumber).equals(transaction.getFromAccountNumber())) {
+                balance = balance.subtract(transaction.getAmount());
+            }
+            if (Integer.valueOf(accountNumber).equals(transaction.getToAccountNumber())) {
+                balance = balance.add(transaction.getAmount());
+            }
+        }
+        return balance;
+    }
+
+    private static int[] parseSizes(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
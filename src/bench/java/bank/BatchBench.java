@@ -0,0 +1,88 @@
+package bank;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BatchBench {
+    private static final int ACCOUNTS = 1_000;
+    private static final int BATCH_SIZE = 5_000;
+
+    public static void main(String[] args) throws IOException {
+        int batches = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        List<BatchOperation> batch = generate(new Random(7));
+
+        try (Bank bank = populate(new Bank())) {
+            compare("В памяти", bank, batch, batches);
+        }
+        Path dataDir = Files.createTempDirectory("bank-batch-bench");
+        try {
+            try (Bank bank = populate(new Bank(dataDir, Durability.FSYNC, 0))) {
+                compare("Журнал FSYNC", bank, batch, Math.max(1, batches / 10));
+            }
+        } finally {
+            BenchFiles.delete(dataDir);
+        }
+    }
+
+    private static Bank populate(Bank bank) {
+        List<BatchOperation> deposits = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Customer customer = bank.createCustomer("Клиент " + i);
+            Account account = (i % 2 == 0)
+                    ? bank.openDebitAccount(customer)
+                    : bank.openCreditAccount(customer, new BigDecimal("100.00"));
+            deposits.add(BatchOperation.deposit(account.getAccountNumber(), new BigDecimal("1000000.00")));
+        }
+        bank.applyBatch(deposits);
+        return bank;
+    }
+
+    private static List<BatchOperation> generate(Random random) {
+        List<BatchOperation> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(10_000) + 1, Common.MONEY_UNIT_PRECISION);
+            int account = random.nextInt(ACCOUNTS);
+            switch (i % 3) {
+                case 0 -> batch.add(BatchOperation.deposit(account, amount));
+                case 1 -> batch.add(BatchOperation.withdraw(account, amount));
+                default -> batch.add(BatchOperation.transfer(account, random.nextInt(ACCOUNTS), amount));
+            }
+        }
+        return batch;
+    }
+
+    private static void compare(String name, Bank bank, List<BatchOperation> batch, int batches) {
+        for (int warmup = 0; warmup < 2; warmup++) {
+            runLoop(bank, batch);
+            bank.applyBatch(batch);
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < batches; i++) {
+            runLoop(bank, batch);
+        }
+        double loop = batches * (double) batch.size() * 1e9 / (System.nanoTime() - started);
+        started = System.nanoTime();
+        for (int i = 0; i < batches; i++) {
+            bank.applyBatch(batch);
+        }
+        double batched = batches * (double) batch.size() * 1e9 / (System.nanoTime() - started);
+        System.out.printf("%-14s цикл: %,12.0f оп/с | applyBatch: %,12.0f оп/с | ускорение x%.1f%n",
+                name, loop, batched, batched / loop);
+    }
+
+    private static void runLoop(Bank bank, List<BatchOperation> batch) {
+        for (BatchOperation operation : batch) {
+            switch (operation.getType()) {
+                case DEPOSIT -> bank.deposit(operation.getToAccountNumber(), operation.getAmount());
+                case WITHDRAW -> bank.withdraw(operation.getFromAccountNumber(), operation.getAmount());
+                default -> bank.transfer(operation.getFromAccountNumber(), operation.getToAccountNumber(),
+                        operation.getAmount());
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package bank;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Поиск клиента по части ФИО: индекс Bank.findCustomers против обхода всех клиентов.
+// ФИО собираются из имени, отчества и фамилии из случайных слогов.
+// Полный масштаб: -PbenchArgs=10000000 -PbenchJvmArgs=-Xmx5g
+public class CustomerSearchBench {
+    private static final String[] FIRST_NAMES = {
+        "Александр", "Алексей", "Анна", "Андрей", "Валерия", "Виктор", "Галина", "Дмитрий", "Екатерина", "Елена",
+        "Иван", "Ирина", "Кирилл", "Ксения", "Максим", "Мария", "Наталья", "Никита", "Ольга", "Павел",
+        "Полина", "Роман", "Светлана", "Сергей", "Татьяна", "Фёдор", "Юлия", "Яков"
+    };
+    private static final String[] PATRONYMICS = {
+        "Александрович", "Алексеевич", "Андреевна", "Викторович", "Дмитриевна", "Иванович", "Ивановна",
+        "Кириллович", "Максимовна", "Павлович", "Романовна", "Сергеевич", "Сергеевна", "Фёдорович"
+    };
+    private static final String[] SYLLABLES = {
+        "ба", "ве", "го", "да", "жу", "за", "ки", "ло", "ми", "но", "пе", "ру", "со", "ти", "фу", "ха", "це", "ша"
+    };
+    private static final String[] SUFFIXES = {"ов", "ев", "ин", "ский", "енко", "ук"};
+    private static final String[] QUERIES = {"ива", "Шаки", "лоцеру", "Фёдор Павлович", "ру", "ф"};
+    private static final int PAGE_SIZE = 20;
+    private static final int REPEATS = 20;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Bank bank = new Bank();
+        SplittableRandom random = new SplittableRandom(7);
+        long started = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            bank.createCustomer(name(random));
+        }
+        System.out.printf("Клиентов: %,d | созданы и проиндексированы за %.1f с%n",
+                count, (System.nanoTime() - started) / 1e9);
+
+        for (String query : QUERIES) {
+            CustomerPage page = null;
+            started = System.nanoTime();
+            for (int i = 0; i < REPEATS; i++) {
+                page = bank.findCustomers(query, null, PAGE_SIZE);
+            }
+            double indexed = (System.nanoTime() - started) / 1e6 / REPEATS;
+            started = System.nanoTime();
+            if (page.hasNextPage()) {
+                bank.findCustomers(query, page.getNextPageToken(), PAGE_SIZE);
+            }
+            double nextPage = (System.nanoTime() - started) / 1e6;
+
+            started = System.nanoTime();
+            int scanned = scan(bank, query);
+            double scan = (System.nanoTime() - started) / 1e6;
+            System.out.printf("%-16s индекс %8.3f мс | следующая страница %8.3f мс | обход %9.1f мс"
+                    + " (первая страница: %d, в обходе найдено: %,d)%n",
+                    "\"" + query + "\"", indexed, nextPage, scan, page.getCustomers().size(), scanned);
+        }
+    }
+
+    private static String name(SplittableRandom random) {
+        StringBuilder lastName = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            lastName.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        lastName.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+        lastName.setCharAt(0, Character.toUpperCase(lastName.charAt(0)));
+        return lastName + " " + FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]
+                + " " + PATRONYMICS[random.nextInt(PATRONYMICS.length)];
+    }
+
+    // Как раньше выбирался клиент: просмотр всего списка
+    private static int scan(Bank bank, String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        int found = 0;
+        for (Customer customer : bank.getCustomers()) {
+            if (customer.getFullName().toLowerCase(Locale.ROOT).contains(needle)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,77 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Закрытие дня на N счетах (3/4 дебетовых, 1/4 кредитных со случайными остатками) в одном потоке и
+// в пуле на все ядра. Во время закрытия отдельный поток пополняет случайные счета: печатается, сколько
+// пополнений прошло и самая долгая задержка, а затем проверяется, что сумма остатков изменилась ровно
+// на начисления и пополнения. Аргументы: [число счетов]
+public class EndOfDayBench {
+    private static final BigDecimal DEPOSIT = new BigDecimal("1.00");
+
+    public static void main(String[] args) throws InterruptedException {
+        int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        EndOfDayRates rates = new EndOfDayRates(new BigDecimal("3.5"), new BigDecimal("24"), new BigDecimal("0.50"));
+        Bank bank = new Bank();
+        Customer owner = bank.createCustomer("Клиент");
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < accountCount; i++) {
+            if (i % 4 == 3) {
+                bank.openCreditAccount(owner, new BigDecimal("10000.00"));
+                bank.withdraw(i, Money.toBigDecimal(random.nextLong(1, 1_000_000)));
+            } else {
+                bank.openDebitAccount(owner);
+                bank.deposit(i, Money.toBigDecimal(random.nextLong(1, 100_000_000)));
+            }
+        }
+        System.out.printf("Счетов: %,d, ядер: %d%n", accountCount, Runtime.getRuntime().availableProcessors());
+
+        run("1 поток", bank, rates, new ForkJoinPool(1), accountCount);
+        run("все ядра", bank, rates, ForkJoinPool.commonPool(), accountCount);
+    }
+
+    private static void run(String name, Bank bank, EndOfDayRates rates, ForkJoinPool pool, int accountCount)
+            throws InterruptedException {
+        long before = totalBalance(bank);
+        AtomicBoolean stop = new AtomicBoolean();
+        long[] deposits = new long[1];
+        long[] maxLatency = new long[1];
+        Thread depositor = new Thread(() -> {
+            SplittableRandom random = new SplittableRandom(7);
+            while (!stop.get()) {
+                long started = System.nanoTime();
+                bank.deposit(random.nextInt(accountCount), DEPOSIT);
+                maxLatency[0] = Math.max(maxLatency[0], System.nanoTime() - started);
+                deposits[0]++;
+            }
+        }, "depositor");
+        depositor.start();
+
+        long started = System.nanoTime();
+        EndOfDayResult result = bank.closeDay(rates, pool);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        stop.set(true);
+        depositor.join();
+
+        long charged = Money.toMinor(result.getInterestTotal()) - Money.toMinor(result.getOverdraftInterestTotal())
+                - Money.toMinor(result.getFeeTotal());
+        long expected = before + charged + deposits[0] * Money.toMinor(DEPOSIT);
+        long after = totalBalance(bank);
+        System.out.printf("%-9s: %.2f с, %,.0f счетов/с | начислений %,d | пополнений во время закрытия %,d,"
+                        + " макс. задержка %.1f мс | сумма остатков %s%n",
+                name, elapsed, accountCount / elapsed,
+                result.getInterestCount() + result.getOverdraftInterestCount() + result.getFeeCount(),
+                deposits[0], maxLatency[0] / 1e6, (after == expected) ? "сошлась" : "РАСХОЖДЕНИЕ " + (after - expected));
+    }
+
+    private static long totalBalance(Bank bank) {
+        long total = 0;
+        for (Account account : bank.getAccounts()) {
+            total += account.getBalanceMinor();
+        }
+        return total;
+    }
+}
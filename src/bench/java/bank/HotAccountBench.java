@@ -0,0 +1,71 @@
+package bank;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Пополнения одного счета из 1..N потоков: обычный счет против горячего с полосами. Четверть операций -
+// переводы на этот счет с других счетов. После каждого прогона баланс счета сверяется с суммой зачислений.
+// Аргументы: [секунд на прогон] [числа потоков через запятую]
+public class HotAccountBench {
+    private static final int SENDERS = 1_024;
+    private static final long SEED = 1_000_000_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int processors = Runtime.getRuntime().availableProcessors();
+        String threadCounts = args.length > 1 ? args[1] : "1,2,4,8";
+        System.out.printf("Процессоров: %d%n", processors);
+        for (boolean hot : new boolean[] {false, true}) {
+            for (String threadCount : threadCounts.split(",")) {
+                run(hot, Integer.parseInt(threadCount.trim()), seconds);
+            }
+        }
+    }
+
+    private static void run(boolean hot, int threads, int seconds) throws InterruptedException {
+        Bank bank = new Bank();
+        Customer owner = bank.createCustomer("Клиент");
+        int collector = bank.openDebitAccount(owner).getAccountNumber();
+        Bank.Outcome outcome = new Bank.Outcome();
+        for (int i = 0; i < SENDERS; i++) {
+            bank.deposit(bank.openDebitAccount(owner).getAccountNumber(), SEED, SEED, outcome);
+        }
+        if (hot) {
+            bank.enableHotAccount(collector);
+        }
+
+        LongAdder operations = new LongAdder();
+        LongAdder credited = new LongAdder();
+        long end = System.nanoTime() + (seconds + 1) * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                Bank.Outcome result = new Bank.Outcome();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    long amount = random.nextInt(10_000) + 1;
+                    if (random.nextInt(4) == 0) {
+                        bank.transfer(random.nextInt(SENDERS) + 1, collector, amount, amount, result);
+                    } else {
+                        bank.deposit(collector, amount, amount, result);
+                    }
+                    if (result.status.isSuccess()) {
+                        credited.add(amount);
+                    }
+                    operations.increment();
+                }
+            }, "hot-account-bench-" + i);
+            workers[i].start();
+        }
+        Thread.sleep(1_000);
+        long measuredFrom = operations.sum();
+        long started = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double rate = (operations.sum() - measuredFrom) * 1e9 / (System.nanoTime() - started);
+        boolean exact = bank.findAccount(collector).getBalanceMinor() == credited.sum();
+        System.out.printf("%-8s потоков: %2d %,12.0f зачислений/с | баланс %s%n",
+                hot ? "горячий" : "обычный", threads, rate, exact ? "сходится" : "НЕ СХОДИТСЯ");
+    }
+}
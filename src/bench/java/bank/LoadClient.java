@@ -0,0 +1,167 @@
+package bank;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Нагрузка с открытым циклом: запросы отправляются по расписанию с заданной частотой, не дожидаясь ответов,
+// а задержка считается от запланированного момента отправки, так что очередь на стороне клиента тоже
+// попадает в перцентили. Без адреса сервера поднимает BankServer с банком в памяти в этом же процессе.
+// Аргументы: [запросов в секунду] [секунд] [http://хост:порт]
+public class LoadClient {
+    private static final int ACCOUNTS = 1_000;
+    private static final int WARMUP_SECONDS = 3;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile LatencyHistogram latency = new LatencyHistogram();
+
+    private LoadClient(HttpClient client, String baseUrl) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rate = (args.length > 0) ? Integer.parseInt(args[0]) : 5_000;
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        BankServer server = null;
+        String baseUrl;
+        if (args.length > 2) {
+            baseUrl = args[2];
+        } else {
+            server = new BankServer(new Bank(), new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            baseUrl = "http://127.0.0.1:" + server.getPort();
+            System.out.println("Локальный сервер: " + baseUrl
+                    + (server.usesVirtualThreads() ? " (виртуальные потоки)" : " (пул потоков)"));
+        }
+
+        ExecutorService executor = BankServer.virtualThreadExecutor();
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool();
+        }
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .build();
+        try {
+            LoadClient load = new LoadClient(client, baseUrl);
+            long populateStarted = System.nanoTime();
+            load.populate();
+            System.out.printf("Подготовка %,d счетов: %.1f с%n", ACCOUNTS, (System.nanoTime() - populateStarted) / 1e9);
+            load.run(rate, WARMUP_SECONDS);
+            load.reset();
+            long started = System.nanoTime();
+            long sent = load.run(rate, seconds);
+            load.report(rate, sent, System.nanoTime() - started);
+        } finally {
+            executor.shutdownNow();
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private void populate() throws IOException, InterruptedException {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            send("/customers", "{\"fullName\":\"Клиент " + i + "\"}");
+            send("/accounts", (i % 2 == 0)
+                    ? "{\"customerId\":" + i + ",\"type\":\"DEBIT\"}"
+                    : "{\"customerId\":" + i + ",\"type\":\"CREDIT\",\"creditLimit\":1000}");
+            send("/deposit", "{\"account\":" + i + ",\"amount\":100000}");
+        }
+    }
+
+    private void send(String path, String json) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request(path, json), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(path + ": " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private long run(int rate, int seconds) throws InterruptedException {
+        Random random = new Random(11);
+        long period = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long scheduled = start + i * period;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            HttpRequest request = randomRequest(random);
+            LatencyHistogram histogram = latency;
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                histogram.record(System.nanoTime() - scheduled);
+                if (error != null) {
+                    failed.incrementAndGet();
+                } else if (response.statusCode() / 100 == 2) {
+                    succeeded.incrementAndGet();
+                } else if (response.statusCode() == 422) {
+                    rejected.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return total;
+    }
+
+    private HttpRequest randomRequest(Random random) {
+        int account = random.nextInt(ACCOUNTS);
+        String amount = (1 + random.nextInt(10_000)) / 100.0 + "";
+        switch (random.nextInt(3)) {
+            case 0:
+                return request("/deposit", "{\"account\":" + account + ",\"amount\":" + amount + "}");
+            case 1:
+                return request("/withdraw", "{\"account\":" + account + ",\"amount\":" + amount + "}");
+            default:
+                int to = (account + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                return request("/transfer", "{\"from\":" + account + ",\"to\":" + to + ",\"amount\":" + amount + "}");
+        }
+    }
+
+    private HttpRequest request(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private void reset() {
+        latency = new LatencyHistogram();
+        succeeded.set(0);
+        rejected.set(0);
+        failed.set(0);
+    }
+
+    private void report(int rate, long sent, long elapsedNanos) {
+        System.out.printf("Цель: %,d запросов/с | отправлено: %,d | достигнуто: %,.0f запросов/с%n",
+                rate, sent, (succeeded.get() + rejected.get() + failed.get()) * 1e9 / elapsedNanos);
+        System.out.printf("Успешно: %,d | отклонено банком (422): %,d | ошибок: %,d | без ответа: %,d%n",
+                succeeded.get(), rejected.get(), failed.get(), inFlight.get());
+        System.out.printf("Задержка, мс: p50 %.2f | p99 %.2f | p99.9 %.2f | макс %.2f%n",
+                latency.percentile(50) / 1e6, latency.percentile(99) / 1e6,
+                latency.percentile(99.9) / 1e6, latency.getMax() / 1e6);
+    }
+}
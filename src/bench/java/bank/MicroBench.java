@@ -0,0 +1,235 @@
+package bank;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+// Микробенчмарки горячих путей Bank и Account. Результаты пишутся в JSON в формате JMH (-rf json),
+// чтобы прогоны можно было сравнивать между собой и теми же инструментами.
+// Аргументы: [регулярное выражение для имени] [--quick] [--out файл]
+public class MicroBench {
+    private static final int INDEX_MASK = 4095;
+    private static final int LOG_LIMIT = 1 << 22;
+    private static final BigDecimal SEED = new BigDecimal("100000000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    private final MicroHarness harness;
+    private final Pattern filter;
+    private final List<MicroHarness.Result> results = new ArrayList<>();
+    // printReport пишет в System.out, поэтому на время замера он подменяется; итоги печатаются сюда
+    private final PrintStream console = System.out;
+
+    private MicroBench(MicroHarness harness, Pattern filter) {
+        this.harness = harness;
+        this.filter = filter;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String regex = ".*";
+        boolean quick = false;
+        Path out = Path.of("build", "microbench",
+                "results-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--quick")) {
+                quick = true;
+            } else if (args[i].equals("--out")) {
+                out = Path.of(args[++i]);
+            } else {
+                regex = args[i];
+            }
+        }
+        MicroHarness harness = quick ? new MicroHarness(1, 3, 200) : new MicroHarness(3, 5, 1000);
+        MicroBench bench = new MicroBench(harness, Pattern.compile(regex));
+        bench.runAll();
+        bench.write(out, quick ? 1 : 3, quick ? 3 : 5, quick ? 200 : 1000);
+        System.out.println("Результаты: " + out.toAbsolutePath());
+    }
+
+    private void runAll() throws InterruptedException {
+        int[] indices = randomIndices(1_000);
+        for (int threads : new int[] {1, 4}) {
+            runOnNewBank("Bank.deposit", threads,
+                    bank -> n -> bank.deposit(indices[(int) (n & INDEX_MASK)], AMOUNT) ? 1 : 0);
+            runOnNewBank("Bank.withdraw", threads,
+                    bank -> n -> bank.withdraw(indices[(int) (n & INDEX_MASK)], AMOUNT) ? 1 : 0);
+            runOnNewBank("Bank.transfer", threads, bank -> n -> {
+                int from = indices[(int) (n & INDEX_MASK)];
+                int to = indices[(int) ((n + 1) & INDEX_MASK)];
+                return bank.transfer(from, (from != to) ? to : (to + 1) % 1_000, AMOUNT) ? 1 : 0;
+            });
+        }
+        run("Account.withdraw", MicroHarness.params("type", "DEBIT"), 1, () -> {
+            Account account = new DebitAccount(0, new Customer(0, "Бенчмарк"));
+            account.deposit(Long.MAX_VALUE / 2);
+            return n -> account.withdraw(100) ? 1 : 0;
+        });
+
+        // Путь отказа без блокировки счета: поиск счета и logTransaction
+        runOnNewBank("Bank.deposit.accountNotFound", 1, bank -> n -> bank.deposit(-1, AMOUNT) ? 1 : 0);
+        // Журнал пересоздается каждые 4 млн записей, чтобы замер не упирался в размер кучи
+        run("TransactionLog.append", MicroHarness.params(), 1, () -> {
+            TransactionLog[] log = {new TransactionLog()};
+            return n -> {
+                if (log[0].size() == LOG_LIMIT) {
+                    log[0] = new TransactionLog();
+                }
+                return log[0].append(TransactionType.TRANSFER, 100, (int) (n & 1023), 7,
+                        Transaction.nowEpochNanos(), TransactionStatus.OK);
+            };
+        });
+
+        Bank bank = populate(1_000);
+        Transaction transaction = bank.getLastTransaction();
+        run("Transaction.toString", MicroHarness.params(), 1, () -> n -> transaction.toString().length());
+
+        String[] inputs = {"12.34", "0,5", "1000", "99999.99", "abc", "1.234", " 250,00 "};
+        run("BankApp.parseMoneyAmount", MicroHarness.params(), 1,
+                () -> n -> BankApp.parseMoneyAmount(inputs[(int) (n % inputs.length)]).isPresent() ? 1 : 0);
+
+        for (int accounts : new int[] {1_000, 1_000_000}) {
+            if (!matches("Bank.findAccount")) {
+                break;
+            }
+            Bank lookupBank = (accounts == 1_000) ? bank : populate(accounts);
+            int[] lookupIndices = randomIndices(accounts);
+            run("Bank.findAccount", MicroHarness.params("accounts", Integer.toString(accounts)), 1,
+                    () -> n -> lookupBank.findAccount(lookupIndices[(int) (n & INDEX_MASK)]).getAccountNumber());
+        }
+
+        if (matches("Bank.printReport")) {
+            Bank reportBank = populate(100_000);
+            List<BatchOperation> batch = new ArrayList<>();
+            int[] reportIndices = randomIndices(100_000);
+            for (int i = 0; i < 1_000_000; i++) {
+                batch.add(BatchOperation.deposit(reportIndices[i & INDEX_MASK], AMOUNT));
+                if (batch.size() == 10_000) {
+                    reportBank.applyBatch(batch);
+                    batch.clear();
+                }
+            }
+            System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+            try {
+                for (boolean reconcile : new boolean[] {false, true}) {
+                    run("Bank.printReport", MicroHarness.params("accounts", "100000", "transactions", "1000000",
+                            "reconcile", Boolean.toString(reconcile)), 1, () -> n -> {
+                        reportBank.printReport(reconcile);
+                        return 1;
+                    });
+                }
+            } finally {
+                System.setOut(console);
+            }
+        }
+    }
+
+    // Журнал транзакций растет с каждой операцией, поэтому каждый замер получает свой банк на 1000 счетов,
+    // который становится мусором сразу после замера
+    private void runOnNewBank(String benchmark, int threads, Function<Bank, MicroHarness.Operation> operation)
+            throws InterruptedException {
+        if (matches(benchmark)) {
+            Bank bank = populate(1_000);
+            run(benchmark, MicroHarness.params("accounts", "1000"), threads, () -> operation.apply(bank));
+        }
+    }
+
+    private boolean matches(String benchmark) {
+        return filter.matcher(benchmark).find();
+    }
+
+    private void run(String benchmark, Map<String, String> params, int threads,
+                     Supplier<MicroHarness.Operation> operations) throws InterruptedException {
+        if (!matches(benchmark)) {
+            return;
+        }
+        MicroHarness.Result result = harness.run(benchmark, params, threads, operations);
+        results.add(result);
+        console.printf("%-30s %-55s потоков: %d %,14.1f ± %,10.1f нс/оп%n",
+                benchmark, params, threads, result.score, result.error);
+    }
+
+    private void write(Path out, int warmupIterations, int measurementIterations, long iterationMillis)
+            throws IOException {
+        List<String> items = new ArrayList<>();
+        for (MicroHarness.Result result : results) {
+            Json.ObjectBuilder params = Json.object();
+            for (Map.Entry<String, String> param : result.params.entrySet()) {
+                params.field(param.getKey(), param.getValue());
+            }
+            List<String> samples = new ArrayList<>();
+            for (double sample : result.iterations) {
+                samples.add(number(sample));
+            }
+            String primaryMetric = Json.object()
+                    .raw("score", number(result.score))
+                    .raw("scoreError", number(result.error))
+                    .field("scoreUnit", "ns/op")
+                    .raw("rawData", Json.array(List.of(Json.array(samples))))
+                    .toString();
+            items.add(Json.object()
+                    .field("benchmark", "bank." + result.benchmark)
+                    .field("mode", "avgt")
+                    .field("threads", result.threads)
+                    .field("forks", 0)
+                    .field("jdkVersion", System.getProperty("java.version"))
+                    .field("vmName", System.getProperty("java.vm.name"))
+                    .field("warmupIterations", warmupIterations)
+                    .field("measurementIterations", measurementIterations)
+                    .field("measurementTime", iterationMillis + " ms")
+                    .raw("params", params.toString())
+                    .raw("primaryMetric", primaryMetric)
+                    .toString());
+        }
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        Files.writeString(out, Json.array(items).replace("},{", "},\n{") + "\n", StandardCharsets.UTF_8);
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : "null";
+    }
+
+    // 1000 клиентов, у каждого поровну дебетовых и кредитных счетов, на каждом счете большой остаток
+    private static Bank populate(int accounts) {
+        Bank bank = new Bank();
+        int customers = Math.min(accounts, 1_000);
+        List<Customer> owners = new ArrayList<>();
+        for (int i = 0; i < customers; i++) {
+            owners.add(bank.createCustomer("Клиент " + i));
+        }
+        List<BatchOperation> deposits = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            Customer owner = owners.get(i % customers);
+            Account account = (i % 2 == 0)
+                    ? bank.openDebitAccount(owner)
+                    : bank.openCreditAccount(owner, new BigDecimal("1000.00"));
+            deposits.add(BatchOperation.deposit(account.getAccountNumber(), SEED));
+            if (deposits.size() == 10_000) {
+                bank.applyBatch(deposits);
+                deposits.clear();
+            }
+        }
+        bank.applyBatch(deposits);
+        return bank;
+    }
+
+    private static int[] randomIndices(int bound) {
+        Random random = new Random(17);
+        int[] indices = new int[INDEX_MASK + 1];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = random.nextInt(bound);
+        }
+        return indices;
+    }
+}
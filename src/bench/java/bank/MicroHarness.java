@@ -0,0 +1,142 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Supplier;
+
+// Упрощенный аналог JMH (его нет в офлайн-сборке): прогрев, несколько замеров фиксированной длительности,
+// среднее время операции и доверительный интервал 99,9% по t-распределению, как в режиме avgt JMH.
+// Каждый поток получает свою операцию от фабрики; результаты операций суммируются, чтобы JIT их не выбросил
+final class MicroHarness {
+    private static final int MAX_OPERATIONS_PER_CHECK = 1 << 16;
+    private static final long CHECK_INTERVAL_NANOS = 100_000;
+    // Квантиль t-распределения 0,9995 для 1..10 степеней свободы
+    private static final double[] T_QUANTILES = {636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587};
+
+    interface Operation {
+        long run(long iteration);
+    }
+
+    static final class Result {
+        final String benchmark;
+        final Map<String, String> params;
+        final int threads;
+        final double score;
+        final double error;
+        final double[] iterations;
+
+        Result(String benchmark, Map<String, String> params, int threads, double score, double error,
+               double[] iterations) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.threads = threads;
+            this.score = score;
+            this.error = error;
+            this.iterations = iterations;
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private volatile long sink;
+
+    MicroHarness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+    }
+
+    static Map<String, String> params(String... keysAndValues) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            params.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return params;
+    }
+
+    Result run(String benchmark, Map<String, String> params, int threads, Supplier<Operation> operations)
+            throws InterruptedException {
+        List<Operation> perThread = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            perThread.add(operations.get());
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(perThread);
+        }
+        double[] samples = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            samples[i] = iteration(perThread);
+        }
+
+        double mean = 0;
+        for (double sample : samples) {
+            mean += sample;
+        }
+        mean /= samples.length;
+        double error = Double.NaN;
+        if (samples.length > 1) {
+            double variance = 0;
+            for (double sample : samples) {
+                variance += (sample - mean) * (sample - mean);
+            }
+            variance /= samples.length - 1;
+            int degrees = samples.length - 1;
+            double quantile = (degrees <= T_QUANTILES.length) ? T_QUANTILES[degrees - 1] : 3.291;
+            error = quantile * Math.sqrt(variance / samples.length);
+        }
+        return new Result(benchmark, params, threads, mean, error, samples);
+    }
+
+    // Среднее время одной операции в наносекундах: суммарное время потоков на число операций
+    private double iteration(List<Operation> perThread) throws InterruptedException {
+        int threads = perThread.size();
+        long[] operations = new long[threads];
+        long[] elapsed = new long[threads];
+        CyclicBarrier start = new CyclicBarrier(threads);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                Operation operation = perThread.get(index);
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                long result = 0;
+                long count = 0;
+                // Время проверяется после пачки операций; пачка растет, пока операции быстрые
+                int batch = 1;
+                long started = System.nanoTime();
+                long deadline = started + iterationNanos;
+                long now = started;
+                do {
+                    long batchStarted = now;
+                    for (int i = 0; i < batch; i++) {
+                        result += operation.run(count++);
+                    }
+                    now = System.nanoTime();
+                    if (now - batchStarted < CHECK_INTERVAL_NANOS && batch < MAX_OPERATIONS_PER_CHECK) {
+                        batch *= 2;
+                    }
+                } while (now < deadline);
+                operations[index] = count;
+                elapsed[index] = now - started;
+                sink += result;
+            }, "micro-bench-" + t);
+            workers[t].start();
+        }
+        long totalOperations = 0;
+        long totalElapsed = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            totalOperations += operations[t];
+            totalElapsed += elapsed[t];
+        }
+        return (double) totalElapsed / totalOperations;
+    }
+}
@@ -0,0 +1,94 @@
+package bank;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+public class MoneyBench {
+    private static final int ACCOUNTS = 1024;
+    private static final int OPERATIONS = 20_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        BigDecimal[] decimalBalances = new BigDecimal[ACCOUNTS];
+        BigDecimal[] decimalLimits = new BigDecimal[ACCOUNTS];
+        Account[] accounts = new Account[ACCOUNTS];
+        Customer owner = new Customer(0, "Бенчмарк");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            decimalBalances[i] = BigDecimal.ZERO.setScale(Common.MONEY_UNIT_PRECISION);
+            decimalLimits[i] = new BigDecimal("500.00");
+            accounts[i] = (i % 2 == 0) ? new DebitAccount(i, owner) : new CreditAccount(i, owner, 50_000);
+        }
+        BigDecimal decimalAmount = new BigDecimal("12.34");
+        long minorAmount = Money.toMinor(decimalAmount);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            boolean measure = round == ROUNDS;
+            run("BigDecimal", measure, () -> {
+                long ok = 0;
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int n = i & (ACCOUNTS - 1);
+                    if ((i & 1) == 0) {
+                        decimalBalances[n] = decimalBalances[n].add(decimalAmount);
+                        ok++;
+                    } else if (decimalBalances[n].subtract(decimalAmount).compareTo(decimalLimits[n].negate()) >= 0) {
+                        decimalBalances[n] = decimalBalances[n].subtract(decimalAmount);
+                        ok++;
+                    }
+                }
+                return ok;
+            });
+            run("long (копейки)", measure, () -> {
+                long ok = 0;
+                for (int i = 0; i < OPERATIONS; i++) {
+                    Account account = accounts[i & (ACCOUNTS - 1)];
+                    if ((i & 1) == 0 ? account.deposit(minorAmount) : account.withdraw(minorAmount)) {
+                        ok++;
+                    }
+                }
+                return ok;
+            });
+        }
+    }
+
+    private interface Workload {
+        long run();
+    }
+
+    private static void run(String name, boolean measure, Workload workload) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long started = System.nanoTime();
+
+        long ok = workload.run();
+
+        long elapsed = System.nanoTime() - started;
+        if (!measure) {
+            return;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-16s %,14.0f оп/с | %8.2f байт/оп | GC: %d сборок, %d мс | успешно: %d%n",
+                name, OPERATIONS * 1e9 / elapsed, (double) allocated / OPERATIONS,
+                gcCount() - gcCountBefore, gcTime() - gcTimeBefore, ok);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += gc.getCollectionTime();
+        }
+        return time;
+    }
+}
@@ -0,0 +1,115 @@
+package bank;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Пополнения на 1.00 по случайным счетам: прямые вызовы Bank против BankPipeline, в памяти и с журналом FSYNC.
+// Синхронные клиенты ждут каждую операцию; асинхронный клиент публикует по WINDOW операций и затем ждет их.
+// После прогона сумма балансов сверяется с числом успешных пополнений.
+// Аргументы: [секунд на прогон] [синхронных клиентов]
+public class PipelineBench {
+    private static final int ACCOUNTS = 10_000;
+    private static final int WINDOW = 1024;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        System.out.printf("Счетов: %,d | синхронных клиентов: %d | процессоров: %d%n",
+                ACCOUNTS, clients, Runtime.getRuntime().availableProcessors());
+
+        compare("В памяти", new Bank(), seconds, clients);
+        Path dataDir = Files.createTempDirectory("bank-pipeline-bench");
+        try {
+            compare("Журнал FSYNC", new Bank(dataDir, Durability.FSYNC, 0), seconds, clients);
+        } finally {
+            BenchFiles.delete(dataDir);
+        }
+    }
+
+    private static void compare(String name, Bank bank, int seconds, int clients)
+            throws IOException, InterruptedException {
+        try (bank) {
+            Customer owner = bank.createCustomer("Клиент");
+            for (int i = 0; i < ACCOUNTS; i++) {
+                bank.openDebitAccount(owner);
+            }
+            LongAdder succeeded = new LongAdder();
+
+            double direct = run(clients, seconds, () -> {
+                if (bank.deposit(ThreadLocalRandom.current().nextInt(ACCOUNTS), AMOUNT)) {
+                    succeeded.increment();
+                }
+                return 1;
+            });
+            report(name, "Bank, синхронно", direct);
+
+            try (BankPipeline pipeline = new BankPipeline(bank)) {
+                double synchronous = run(clients, seconds, () -> {
+                    if (pipeline.deposit(ThreadLocalRandom.current().nextInt(ACCOUNTS), AMOUNT)) {
+                        succeeded.increment();
+                    }
+                    return 1;
+                });
+                report(name, "BankPipeline, синхронно", synchronous);
+
+                long[] sequences = new long[WINDOW];
+                double windowed = run(1, seconds, () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < WINDOW; i++) {
+                        sequences[i] = pipeline.publishDeposit(random.nextInt(ACCOUNTS), AMOUNT);
+                    }
+                    for (long sequence : sequences) {
+                        if (pipeline.awaitResult(sequence)) {
+                            succeeded.increment();
+                        }
+                    }
+                    return WINDOW;
+                });
+                report(name, "BankPipeline, окно " + WINDOW, windowed);
+            }
+
+            BigDecimal total = BigDecimal.ZERO;
+            for (Account account : bank.getAccounts()) {
+                total = total.add(account.getBalance());
+            }
+            boolean consistent = total.equals(AMOUNT.multiply(BigDecimal.valueOf(succeeded.sum())));
+            System.out.println("Сумма балансов " + (consistent ? "совпадает" : "НЕ СОВПАДАЕТ")
+                    + " с успешными пополнениями");
+        }
+    }
+
+    private interface Step {
+        int run();
+    }
+
+    // Операций в секунду после секунды прогрева
+    private static double run(int clients, int seconds, Step step) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        long end = System.nanoTime() + (seconds + 1) * 1_000_000_000L;
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    operations.add(step.run());
+                }
+            }, "pipeline-bench-" + i);
+            threads[i].start();
+        }
+        Thread.sleep(1_000);
+        long measuredFrom = operations.sum();
+        long started = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (operations.sum() - measuredFrom) * 1e9 / (System.nanoTime() - started);
+    }
+
+    private static void report(String bank, String mode, double rate) {
+        System.out.printf("%-14s %-28s %,12.0f оп/с%n", bank, mode, rate);
+    }
+}
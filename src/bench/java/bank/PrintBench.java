@@ -0,0 +1,80 @@
+package bank;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PrintBench {
+    private static final int TRANSACTIONS = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : TRANSACTIONS;
+        Bank bank = new Bank();
+        for (int i = 0; i < 100; i++) {
+            bank.openCreditAccount(bank.createCustomer("Клиент " + i), Money.toBigDecimal(100_000));
+        }
+        List<BatchOperation> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(BatchOperation.transfer(i % 100, (i * 7 + 1) % 100, Money.toBigDecimal(1 + i % 50_000)));
+            if (batch.size() == 10_000) {
+                bank.applyBatch(batch);
+                batch.clear();
+            }
+        }
+        bank.applyBatch(batch);
+
+        Path legacyFile = Files.createTempFile("print-legacy", ".txt");
+        Path renderedFile = Files.createTempFile("print-rendered", ".txt");
+        PrintStream stdout = System.out;
+        ReportWriter.setStdoutCharset(StandardCharsets.UTF_8);
+        try {
+            for (int round = 1; round <= 2; round++) {
+                long legacy = timed(legacyFile, () -> printLegacy(bank.getTransactions()));
+                long rendered = timed(renderedFile, bank::printTransactions);
+                if (round == 2) {
+                    stdout.printf("%,d транзакций | String.format + println: %,d мс | RowRenderer + ReportWriter: %,d мс | x%.1f%n",
+                            bank.getTransactions().size(), legacy / 1_000_000, rendered / 1_000_000,
+                            (double) legacy / rendered);
+                }
+            }
+            if (Files.mismatch(legacyFile, renderedFile) != -1) {
+                throw new IllegalStateException("Вывод отличается от String.format");
+            }
+        } finally {
+            System.setOut(stdout);
+            BenchFiles.delete(legacyFile);
+            BenchFiles.delete(renderedFile);
+        }
+    }
+
+    private static long timed(Path file, Runnable print) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(file.toFile()), true, StandardCharsets.UTF_8)) {
+            System.setOut(out);
+            long started = System.nanoTime();
+            print.run();
+            return System.nanoTime() - started;
+        }
+    }
+
+    // Вывод до RowRenderer: String.format на каждое поле и println на каждую строку
+    private static void printLegacy(List<Transaction> transactions) {
+        System.out.println("Совершено " + transactions.size() + " транзакций:");
+        for (Transaction transaction : transactions) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("| ВРЕМЯ: ").append(String.format("%-19s", transaction.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)))
+              .append(" | ТИП: ").append(String.format("%-10s", transaction.getType().toString()))
+              .append(" | СУММА: ").append(String.format("%-10.2f", transaction.getAmount()))
+              .append(" | ОТ: ").append(String.format("%-5s", (transaction.getFromAccountNumber() != null ? transaction.getFromAccountNumber() : "-")))
+              .append(" | КОМУ: ").append(String.format("%-5s", (transaction.getToAccountNumber() != null ? transaction.getToAccountNumber() : "-")))
+              .append(" | СТАТУС: ").append(String.format("%-8s", (transaction.isSuccess() ? "УСПЕШНО" : "СБОЙ")))
+              .append(" | СООБЩЕНИЕ: ").append(transaction.getMessage()).append(String.format("%-35s", " |"));
+            System.out.println(sb.toString());
+        }
+    }
+}
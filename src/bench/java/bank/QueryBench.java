@@ -0,0 +1,40 @@
+package bank;
+
+public class QueryBench {
+    private static final int ACCOUNTS = 1_000;
+    private static final int PAGE = 50;
+    private static final int QUERIES = 200_000;
+
+    public static void main(String[] args) {
+        int[] sizes = (args.length > 0) ? parseSizes(args) : new int[] {10_000, 1_000_000, 10_000_000};
+        for (int size : sizes) {
+            TransactionLog log = new TransactionLog();
+            for (int i = 0; i < size; i++) {
+                log.append(TransactionType.TRANSFER, 100, i % ACCOUNTS, (i * 7 + 1) % ACCOUNTS,
+                        Transaction.nowEpochNanos(), (i % 10 == 0) ? TransactionStatus.SENDER_INSUFFICIENT_FUNDS
+                                                                    : TransactionStatus.OK);
+            }
+            long sink = 0;
+            for (int round = 1; round <= 3; round++) {
+                long started = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    TransactionPage page = log.find(q % ACCOUNTS, null, null, null, null, PAGE);
+                    sink += page.getTransactions().size();
+                }
+                long elapsed = System.nanoTime() - started;
+                if (round == 3) {
+                    System.out.printf("%,12d транзакций | последняя страница счета (%d записей): %8.2f мкс/запрос | %d%n",
+                            size, PAGE, elapsed / 1e3 / QUERIES, sink);
+                }
+            }
+        }
+    }
+
+    private static int[] parseSizes(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
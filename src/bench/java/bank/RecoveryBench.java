@@ -0,0 +1,73 @@
+package bank;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class RecoveryBench {
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : 3_000_000;
+        Path dataDir = Files.createTempDirectory("bank-recovery-bench");
+
+        try {
+            long started = System.nanoTime();
+            BigDecimal expectedTotal;
+            try (Bank bank = new Bank(dataDir, Durability.ASYNC, 0)) {
+                for (int i = 0; i < accounts; i++) {
+                    Customer customer = bank.createCustomer("Клиент " + i);
+                    if (i % 2 == 0) {
+                        bank.openDebitAccount(customer);
+                    } else {
+                        bank.openCreditAccount(customer, new BigDecimal("1000.00"));
+                    }
+                }
+                Random random = new Random(42);
+                BigDecimal[] amounts = new BigDecimal[100];
+                for (int i = 0; i < amounts.length; i++) {
+                    amounts[i] = BigDecimal.valueOf(random.nextInt(100_000) + 1, Common.MONEY_UNIT_PRECISION);
+                }
+                for (int i = 0; i < transactions; i++) {
+                    BigDecimal amount = amounts[i % amounts.length];
+                    int account = random.nextInt(accounts);
+                    switch (i % 3) {
+                        case 0 -> bank.deposit(account, amount);
+                        case 1 -> bank.withdraw(account, amount);
+                        default -> bank.transfer(account, random.nextInt(accounts), amount);
+                    }
+                }
+                expectedTotal = total(bank);
+            }
+            long written = System.nanoTime() - started;
+            long journalSize = BenchFiles.size(dataDir);
+            System.out.printf("Запись: %d клиентов/счетов, %d транзакций за %.2f с, журнал %.1f МБ%n",
+                    accounts, transactions, written / 1e9, journalSize / 1048576.0);
+
+            started = System.nanoTime();
+            try (Bank recovered = new Bank(dataDir, Durability.ASYNC, 0)) {
+                long elapsed = System.nanoTime() - started;
+                long records = 2L * accounts + transactions;
+                System.out.printf("Восстановление: %d записей за %.2f с (%,.0f записей/с)%n",
+                        records, elapsed / 1e9, records * 1e9 / elapsed);
+                BigDecimal actualTotal = total(recovered);
+                if (actualTotal.compareTo(expectedTotal) != 0
+                        || recovered.getTransactions().size() != transactions) {
+                    throw new IllegalStateException("Состояние после восстановления не совпадает: "
+                            + actualTotal + " != " + expectedTotal);
+                }
+            }
+        } finally {
+            BenchFiles.delete(dataDir);
+        }
+    }
+
+    private static BigDecimal total(Bank bank) {
+        long total = 0;
+        for (Account account : bank.getAccounts()) {
+            total += account.getBalanceMinor();
+        }
+        return Money.toBigDecimal(total);
+    }
+}
@@ -0,0 +1,112 @@
+package bank;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Память на запись и случайный поиск: ConcurrentHashMap<Integer, Account> против Registry.
+// Все номера ссылаются на один счет, поэтому в замер попадает только сама структура.
+// Отдельно - списки номеров счетов клиентов: CopyOnWriteArrayList<Integer> против IntList.
+// Аргументы: [число счетов]
+public class RegistryBench {
+    private static final int ACCOUNTS = 10_000_000;
+    private static final int LOOKUPS = 20_000_000;
+    private static final int ACCOUNTS_PER_CUSTOMER = 4;
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : ACCOUNTS;
+        Account account = new DebitAccount(0, new Customer(0, "Клиент"));
+        int[] keys = randomKeys(count);
+
+        long baseline = usedHeap();
+        Map<Integer, Account> map = new ConcurrentHashMap<>();
+        for (int i = 0; i < count; i++) {
+            map.put(i, account);
+        }
+        long mapBytes = usedHeap() - baseline;
+        long started = System.nanoTime();
+        long found = 0;
+        for (int key : keys) {
+            if (map.get(key) != null) {
+                found++;
+            }
+        }
+        report("ConcurrentHashMap", count, mapBytes, System.nanoTime() - started, found);
+        Reference.reachabilityFence(map);
+        map = null;
+
+        baseline = usedHeap();
+        Registry<Account> registry = new Registry<>();
+        for (int i = 0; i < count; i++) {
+            registry.put(i, account);
+        }
+        long registryBytes = usedHeap() - baseline;
+        started = System.nanoTime();
+        found = 0;
+        for (int key : keys) {
+            if (registry.get(key) != null) {
+                found++;
+            }
+        }
+        report("Registry", count, registryBytes, System.nanoTime() - started, found);
+        Reference.reachabilityFence(registry);
+        registry = null;
+
+        int customers = count / ACCOUNTS_PER_CUSTOMER;
+        baseline = usedHeap();
+        List<List<Integer>> boxedLists = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            List<Integer> accounts = new CopyOnWriteArrayList<>();
+            for (int j = 0; j < ACCOUNTS_PER_CUSTOMER; j++) {
+                accounts.add(i * ACCOUNTS_PER_CUSTOMER + j);
+            }
+            boxedLists.add(accounts);
+        }
+        reportLists("CopyOnWriteArrayList", usedHeap() - baseline, customers);
+        Reference.reachabilityFence(boxedLists);
+        boxedLists = null;
+
+        baseline = usedHeap();
+        List<IntList> intLists = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            IntList accounts = new IntList();
+            for (int j = 0; j < ACCOUNTS_PER_CUSTOMER; j++) {
+                accounts.add(i * ACCOUNTS_PER_CUSTOMER + j);
+            }
+            intLists.add(accounts);
+        }
+        reportLists("IntList", usedHeap() - baseline, customers);
+        Reference.reachabilityFence(intLists);
+    }
+
+    private static int[] randomKeys(int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] keys = new int[LOOKUPS];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextInt(count);
+        }
+        return keys;
+    }
+
+    private static void report(String name, int count, long bytes, long lookupNanos, long found) {
+        System.out.printf("%-22s %6.1f байт/счет | поиск %6.1f нс | найдено: %d%n",
+                name, (double) bytes / count, (double) lookupNanos / LOOKUPS, found);
+    }
+
+    private static void reportLists(String name, long bytes, int customers) {
+        System.out.printf("%-22s %6.1f байт/клиент (по %d счета)%n",
+                name, (double) bytes / customers, ACCOUNTS_PER_CUSTOMER);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,60 @@
+package bank;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class ScriptBench {
+    private static final int CUSTOMERS = 1_000;
+    private static final int OPERATIONS = 2_000_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int operations = (args.length > 0) ? Integer.parseInt(args[0]) : OPERATIONS;
+        Durability durability = (args.length > 1) ? Durability.valueOf(args[1]) : Durability.FSYNC;
+        Path dir = Files.createTempDirectory("script-bench");
+        Path script = dir.resolve("ops.csv");
+        try {
+            writeScript(script, operations);
+            System.out.printf("Сценарий: %,d строк, %,d байт, долговечность %s%n",
+                    CUSTOMERS * 3 + operations, Files.size(script), durability);
+            try (Bank bank = new Bank(dir.resolve("data"), durability, 0)) {
+                new ScriptRunner(bank).run(script);
+            }
+        } finally {
+            BenchFiles.delete(dir);
+        }
+    }
+
+    private static void writeScript(Path script, int operations) throws IOException {
+        Random random = new Random(42);
+        int accounts = CUSTOMERS * 2;
+        try (BufferedWriter writer = Files.newBufferedWriter(script, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < CUSTOMERS; i++) {
+                writer.write("customer;Клиент " + i + "\n");
+            }
+            for (int i = 0; i < CUSTOMERS; i++) {
+                writer.write("debit;" + i + "\n");
+                writer.write("credit;" + i + ";1000,00\n");
+            }
+            for (int i = 0; i < operations; i++) {
+                int account = random.nextInt(accounts);
+                int minor = 1 + random.nextInt(50_000);
+                String amount = minor / 100 + "," + (minor % 100) / 10 + minor % 10;
+                switch (random.nextInt(3)) {
+                    case 0:
+                        writer.write("deposit;" + account + ";" + amount + "\n");
+                        break;
+                    case 1:
+                        writer.write("withdraw;" + account + ";" + amount + "\n");
+                        break;
+                    default:
+                        writer.write("transfer;" + account + ";" + ((account + 1 + random.nextInt(accounts - 1)) % accounts)
+                                + ";" + amount + "\n");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Пропускная способность случайных переводов: Bank с блокировками против ShardedBank с разным числом шардов.
+// Клиенты ShardedBank держат по WINDOW незавершенных переводов. После каждого прогона проверяется,
+// что сумма денег в банке не изменилась.
+// Аргументы: [секунд на прогон] [клиентских потоков] [числа шардов через запятую]
+public class ShardBench {
+    private static final int ACCOUNTS = 10_000;
+    private static final int WINDOW = 256;
+    private static final BigDecimal SEED = new BigDecimal("1000000.00");
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String shardCounts = args.length > 2 ? args[2] : "1,2,4,8";
+        System.out.printf("Счетов: %,d | клиентов: %d | процессоров: %d%n",
+                ACCOUNTS, clients, Runtime.getRuntime().availableProcessors());
+
+        Bank bank = new Bank();
+        Customer owner = bank.createCustomer("Клиент");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.deposit(bank.openDebitAccount(owner).getAccountNumber(), SEED);
+        }
+        BigDecimal expected = SEED.multiply(BigDecimal.valueOf(ACCOUNTS));
+        LongAdder operations = new LongAdder();
+        double rate = run(clients, seconds, operations, () -> () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            bank.transfer(random.nextInt(ACCOUNTS), random.nextInt(ACCOUNTS), amount(random));
+            operations.increment();
+        });
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : bank.getAccounts()) {
+            total = total.add(account.getBalance());
+        }
+        report("Bank (блокировки)", rate, total.equals(expected));
+
+        for (String shardCount : shardCounts.split(",")) {
+            int shards = Integer.parseInt(shardCount.trim());
+            try (ShardedBank sharded = new ShardedBank(shards)) {
+                Customer shardedOwner = sharded.createCustomer("Клиент");
+                List<CompletableFuture<Boolean>> seeds = new ArrayList<>();
+                for (int i = 0; i < ACCOUNTS; i++) {
+                    seeds.add(sharded.depositAsync(sharded.openDebitAccount(shardedOwner).getAccountNumber(), SEED));
+                }
+                seeds.forEach(CompletableFuture::join);
+
+                LongAdder completed = new LongAdder();
+                rate = run(clients, seconds, completed, () -> new Client() {
+                    private final List<CompletableFuture<Boolean>> pending = new ArrayList<>(WINDOW);
+
+                    @Override
+                    public void step() {
+                        if (pending.size() == WINDOW) {
+                            finish();
+                        }
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        pending.add(sharded.transferAsync(random.nextInt(ACCOUNTS), random.nextInt(ACCOUNTS),
+                                amount(random)));
+                    }
+
+                    @Override
+                    public void finish() {
+                        pending.forEach(CompletableFuture::join);
+                        completed.add(pending.size());
+                        pending.clear();
+                    }
+                });
+                report("ShardedBank, шардов: " + shards, rate, sharded.getTotalBalance().equals(expected));
+            }
+        }
+    }
+
+    private static BigDecimal amount(ThreadLocalRandom random) {
+        return BigDecimal.valueOf(random.nextInt(10_000) + 1, Common.MONEY_UNIT_PRECISION);
+    }
+
+    private interface Client {
+        void step();
+
+        default void finish() {
+        }
+    }
+
+    // Операций в секунду за измеряемый интервал после секунды прогрева
+    private static double run(int clients, int seconds, LongAdder operations, Supplier<Client> factory)
+            throws InterruptedException {
+        long end = System.nanoTime() + (seconds + 1) * 1_000_000_000L;
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            Client client = factory.get();
+            threads[i] = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    client.step();
+                }
+                client.finish();
+            }, "shard-bench-" + i);
+            threads[i].start();
+        }
+        Thread.sleep(1_000);
+        long measuredFrom = operations.sum();
+        long started = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (operations.sum() - measuredFrom) * 1e9 / (System.nanoTime() - started);
+    }
+
+    private static void report(String name, double rate, boolean conserved) {
+        System.out.printf("%-24s %,12.0f переводов/с | сумма денег %s%n",
+                name, rate, conserved ? "сохранена" : "НЕ СОХРАНЕНА");
+    }
+}
@@ -0,0 +1,90 @@
+package bank;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Полный масштаб из задачи: -PbenchArgs="1000000 10000000" -PbenchJvmArgs=-Xmx4g
+public class StartupBench {
+    private static final double TAIL_SHARE = 0.1;
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int tail = (int) (transactions * TAIL_SHARE);
+        Path root = Files.createTempDirectory("bank-startup-bench");
+        Path fullDir = root.resolve("full");
+        Path snapshotDir = root.resolve("snapshot");
+
+        try {
+            try (Bank bank = new Bank(fullDir, Durability.ASYNC, 0)) {
+                for (int i = 0; i < accounts; i++) {
+                    Customer customer = bank.createCustomer("Клиент " + i);
+                    if (i % 2 == 0) {
+                        bank.openDebitAccount(customer);
+                    } else {
+                        bank.openCreditAccount(customer, new BigDecimal("1000.00"));
+                    }
+                }
+                runTransactions(bank, accounts, transactions - tail, 1);
+            }
+            BenchFiles.copy(fullDir, snapshotDir);
+
+            try (Bank bank = new Bank(snapshotDir, Durability.ASYNC, 0)) {
+                long started = System.nanoTime();
+                bank.snapshot();
+                System.out.printf("Снимок %d счетов записан за %.2f с%n", accounts, (System.nanoTime() - started) / 1e9);
+                runTransactions(bank, accounts, tail, 2);
+            }
+            try (Bank bank = new Bank(fullDir, Durability.ASYNC, 0)) {
+                runTransactions(bank, accounts, tail, 2);
+            }
+
+            // После перезапуска со снимком история и итоги отчета те же, что и с полным журналом
+            String full = measureStartup("Полный журнал", fullDir);
+            String snapshot = measureStartup("Снимок + хвост", snapshotDir);
+            String expected = "транзакций " + transactions;
+            if (!full.equals(snapshot) || !full.contains(expected + ",")) {
+                throw new IllegalStateException("Состояние после запуска не совпадает: " + full + " | " + snapshot
+                        + " (ожидается " + expected + ")");
+            }
+        } finally {
+            BenchFiles.delete(root);
+        }
+    }
+
+    private static void runTransactions(Bank bank, int accounts, int count, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(100_000) + 1, Common.MONEY_UNIT_PRECISION);
+            int account = random.nextInt(accounts);
+            switch (i % 3) {
+                case 0 -> bank.deposit(account, amount);
+                case 1 -> bank.withdraw(account, amount);
+                default -> bank.transfer(account, random.nextInt(accounts), amount);
+            }
+        }
+    }
+
+    // Сумма балансов, размер истории и число успешных и неуспешных транзакций в отчете
+    private static String measureStartup(String name, Path dataDir) throws IOException {
+        long size = BenchFiles.size(dataDir);
+        long started = System.nanoTime();
+        try (Bank bank = new Bank(dataDir, Durability.ASYNC, 0)) {
+            long elapsed = System.nanoTime() - started;
+            long total = 0;
+            for (Account account : bank.getAccounts()) {
+                total += account.getBalanceMinor();
+            }
+            System.out.printf("%-16s запуск за %6.2f с | данные на диске %8.1f МБ | транзакций в памяти %d%n",
+                    name, elapsed / 1e9, size / 1048576.0, bank.getTransactions().size());
+            try (BankView view = bank.openView()) {
+                BankStats stats = view.getStats();
+                return "сумма " + total + ", транзакций " + bank.getTransactions().size()
+                        + ", успешных " + stats.getSuccessCount() + ", сбоев " + stats.getFailCount();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package bank;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+// Выписки за период для всех клиентов (по два счета и случайные переводы между счетами разных клиентов)
+// в одном потоке и в пуле на все ядра; половина операций попадает в период, половина - раньше него.
+// Аргументы: [число клиентов] [операций на клиента]
+public class StatementBench {
+    public static void main(String[] args) throws IOException {
+        int customerCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int operationsPerCustomer = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Bank bank = new Bank();
+        for (int i = 0; i < customerCount; i++) {
+            Customer customer = bank.createCustomer("Клиент " + i);
+            bank.openDebitAccount(customer);
+            bank.openCreditAccount(customer, new BigDecimal("1000.00"));
+        }
+        int accountCount = customerCount * 2;
+        SplittableRandom random = new SplittableRandom(42);
+        long operations = (long) customerCount * operationsPerCustomer;
+        LocalDateTime periodStart = null;
+        for (long i = 0; i < operations; i++) {
+            if (i == operations / 2) {
+                periodStart = LocalDateTime.now();
+            }
+            BigDecimal amount = Money.toBigDecimal(random.nextLong(1, 100_000));
+            if (i % 3 == 0) {
+                bank.deposit(random.nextInt(accountCount), amount);
+            } else {
+                bank.transfer(random.nextInt(accountCount), random.nextInt(accountCount), amount);
+            }
+        }
+        LocalDateTime periodEnd = LocalDateTime.now().plusDays(1);
+        System.out.printf("Клиентов: %,d, транзакций: %,d, ядер: %d%n",
+                customerCount, operations, Runtime.getRuntime().availableProcessors());
+
+        run("1 поток", bank, periodStart, periodEnd, new ForkJoinPool(1));
+        run("все ядра", bank, periodStart, periodEnd, ForkJoinPool.commonPool());
+    }
+
+    private static void run(String name, Bank bank, LocalDateTime from, LocalDateTime to, ForkJoinPool pool)
+            throws IOException {
+        Path dir = Files.createTempDirectory("bank-statements");
+        try {
+            long started = System.nanoTime();
+            int written = bank.writeStatements(dir, from, to, pool);
+            double elapsed = (System.nanoTime() - started) / 1e9;
+            System.out.printf("%-9s: %,d выписок за %.1f с, %,.0f выписок/с, %,.0f МБ%n",
+                    name, written, elapsed, written / elapsed, BenchFiles.size(dir) / 1e6);
+        } finally {
+            BenchFiles.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package bank;
+
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransactionMemoryBench {
+    private static final int TRANSACTIONS = 2_000_000;
+    private static final int ACCOUNTS = 10_000;
+
+    // Раскладка транзакции до перехода на TransactionLog: отдельный объект на каждую запись
+    private static final class LegacyTransaction {
+        final TransactionType type;
+        final BigDecimal amount;
+        final Integer fromAccountNumber;
+        final Integer toAccountNumber;
+        final LocalDateTime timestamp;
+        boolean success;
+        String message;
+
+        LegacyTransaction(TransactionType type, BigDecimal amount, Integer from, Integer to) {
+            this.type = type;
+            this.amount = amount;
+            this.fromAccountNumber = from;
+            this.toAccountNumber = to;
+            this.timestamp = LocalDateTime.now();
+            this.success = true;
+            this.message = "ОК";
+        }
+    }
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : TRANSACTIONS;
+
+        long baseline = usedHeap();
+        long started = System.nanoTime();
+        List<LegacyTransaction> legacy = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            legacy.add(new LegacyTransaction(TransactionType.TRANSFER, Money.toBigDecimal(100 + i % 100_000),
+                    i % ACCOUNTS, (i + 1) % ACCOUNTS));
+        }
+        long legacyWrite = System.nanoTime() - started;
+        started = System.nanoTime();
+        long legacyOk = 0;
+        for (LegacyTransaction transaction : legacy) {
+            if (transaction.success) {
+                legacyOk++;
+            }
+        }
+        long legacyScan = System.nanoTime() - started;
+        long legacyBytes = usedHeap() - baseline;
+        Reference.reachabilityFence(legacy);
+        report("ArrayList<Transaction>", count, legacyBytes, legacyWrite, legacyScan, legacyOk);
+        legacy = null;
+
+        baseline = usedHeap();
+        started = System.nanoTime();
+        TransactionLog log = new TransactionLog();
+        for (int i = 0; i < count; i++) {
+            log.append(TransactionType.TRANSFER, 100 + i % 100_000, i % ACCOUNTS, (i + 1) % ACCOUNTS,
+                    Transaction.nowEpochNanos(), TransactionStatus.OK);
+        }
+        long columnarWrite = System.nanoTime() - started;
+        started = System.nanoTime();
+        long columnarOk = 0;
+        for (int i = 0, size = log.size(); i < size; i++) {
+            if (log.getStatus(i).isSuccess()) {
+                columnarOk++;
+            }
+        }
+        long columnarScan = System.nanoTime() - started;
+        long columnarBytes = usedHeap() - baseline;
+        Reference.reachabilityFence(log);
+        report("TransactionLog", count, columnarBytes, columnarWrite, columnarScan, columnarOk);
+        if (log.size() != count) {
+            throw new IllegalStateException("Размер журнала: " + log.size());
+        }
+    }
+
+    private static void report(String name, int count, long bytes, long writeNanos, long scanNanos, long ok) {
+        System.out.printf("%-22s %8.1f байт/транзакция | запись %,12.0f оп/с | обход %,14.0f оп/с | успешно: %d%n",
+                name, (double) bytes / count, count * 1e9 / writeNanos, count * 1e9 / scanNanos, ok);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
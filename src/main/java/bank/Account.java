@@ -4,17 +4,26 @@ import java.math.BigDecimal;
 
 public abstract class Account {
     private final AccountType type;
-    private static int nextAccountNumber = 0;
-
     private final int accountNumber;
-    protected BigDecimal balance;
+    private volatile long balance;
     private final Customer owner;
+    private long appliedLsn;
+    // Счет из AccountTable: баланс и LSN хранятся в ячейке таблицы, а объект служит только представлением
+    private final AccountTable table;
+    // Полосы пополнений горячего счета; null, пока режим не включен. Тогда balance - основной баланс,
+    // а полный баланс - его сумма с полосами
+    private volatile HotBalance hot;
+
+    public Account(int accountNumber, Customer owner, AccountType type) {
+        this(accountNumber, owner, type, null);
+    }
 
-    public Account(Customer owner, AccountType type) {
+    Account(int accountNumber, Customer owner, AccountType type, AccountTable table) {
         this.type = type;
-        this.accountNumber = nextAccountNumber++;
-        this.balance = BigDecimal.ZERO.setScale(Common.MONEY_UNIT_PRECISION);
+        this.accountNumber = accountNumber;
+        this.balance = 0;
         this.owner = owner;
+        this.table = table;
     }
 
     public AccountType getType() {
@@ -26,27 +35,98 @@ public abstract class Account {
     }
 
     public BigDecimal getBalance() {
-        return balance;
+        return Money.toBigDecimal(getBalanceMinor());
+    }
+
+    public long getBalanceMinor() {
+        HotBalance hot = this.hot;
+        return (hot == null) ? getBaseMinor() : getBaseMinor() + hot.sum();
+    }
+
+    // Основной баланс без полос горячего счета
+    long getBaseMinor() {
+        return (table == null) ? balance : table.getBalance(accountNumber);
+    }
+
+    private void setBaseMinor(long balance) {
+        if (table == null) {
+            this.balance = balance;
+        } else {
+            table.setBalance(accountNumber, balance);
+        }
     }
 
     public Customer getOwner() {
         return owner;
     }
 
-    public boolean deposit(BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) > 0){
-            balance = balance.add(amount);
+    // Лимиты проверяются по полному балансу. Полосы горячего счета параллельно только растут,
+    // поэтому разрешенное по нему списание остается в пределах лимита
+    public boolean deposit(long amount) {
+        if (canDeposit(getBalanceMinor(), amount)) {
+            setBaseMinor(getBaseMinor() + amount);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean withdraw(long amount) {
+        if (canWithdraw(getBalanceMinor(), amount)) {
+            setBaseMinor(getBaseMinor() - amount);
             return true;
         }
         return false;
     }
 
-    public abstract boolean withdraw(BigDecimal amount);
+    static boolean canDeposit(long balance, long amount) {
+        return amount > 0 && balance <= Long.MAX_VALUE - amount;
+    }
+
+    abstract boolean canWithdraw(long balance, long amount);
+
+    void adjustBalance(long delta) {
+        setBaseMinor(Math.addExact(getBaseMinor(), delta));
+    }
+
+    HotBalance getHotBalance() {
+        return hot;
+    }
+
+    // Вызывается под блокировкой счета; счета из AccountTable держат весь баланс в ячейке таблицы
+    void enableHotBalance() {
+        if (table != null) {
+            throw new IllegalStateException("Режим горячего счета доступен только для счетов в куче");
+        }
+        if (hot == null) {
+            hot = new HotBalance();
+        }
+    }
+
+    long getAppliedLsn() {
+        return (table == null) ? appliedLsn : table.getAppliedLsn(accountNumber);
+    }
+
+    void setAppliedLsn(long appliedLsn) {
+        if (table == null) {
+            this.appliedLsn = appliedLsn;
+        } else {
+            table.setAppliedLsn(accountNumber, appliedLsn);
+        }
+    }
+
+    // LSN последнего изменения с учетом полос; читается под блокировкой счета и всеми полосами
+    long getLastAppliedLsn() {
+        HotBalance hot = this.hot;
+        return (hot == null) ? getAppliedLsn() : Math.max(getAppliedLsn(), hot.lastAppliedLsn());
+    }
 
-    public boolean transfer(Account to, BigDecimal amount) {
+    public boolean transfer(Account to, long amount) {
         if (this.withdraw(amount)) {
-            return to.deposit(amount);
+            if (to.deposit(amount)) {
+                return true;
+            }
+            adjustBalance(amount);
         }
         return false;
     }
-}
\ No newline at end of file
+}
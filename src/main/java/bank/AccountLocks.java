@@ -0,0 +1,77 @@
+package bank;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+class AccountLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    AccountLocks() {
+        int size = Integer.highestOneBit(Math.max(1024, Runtime.getRuntime().availableProcessors() * 64) - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    void lock(int accountNumber) {
+        stripes[stripe(accountNumber)].lock();
+    }
+
+    void unlock(int accountNumber) {
+        stripes[stripe(accountNumber)].unlock();
+    }
+
+    // Полосы всегда захватываются по возрастанию индекса, поэтому встречные переводы не взаимоблокируются
+    void lockBoth(int first, int second) {
+        int a = stripe(first);
+        int b = stripe(second);
+        if (a == b) {
+            stripes[a].lock();
+        } else {
+            stripes[Math.min(a, b)].lock();
+            stripes[Math.max(a, b)].lock();
+        }
+    }
+
+    void unlockBoth(int first, int second) {
+        int a = stripe(first);
+        int b = stripe(second);
+        stripes[a].unlock();
+        if (a != b) {
+            stripes[b].unlock();
+        }
+    }
+
+    // Возвращает захваченные полосы для unlockAll; каждая полоса захватывается один раз
+    int[] lockAll(int[] accountNumbers) {
+        int[] order = new int[accountNumbers.length];
+        for (int i = 0; i < accountNumbers.length; i++) {
+            order[i] = stripe(accountNumbers[i]);
+        }
+        Arrays.sort(order);
+        int count = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || order[i] != order[i - 1]) {
+                order[count++] = order[i];
+            }
+        }
+        int[] locked = Arrays.copyOf(order, count);
+        for (int stripe : locked) {
+            stripes[stripe].lock();
+        }
+        return locked;
+    }
+
+    void unlockAll(int[] lockedStripes) {
+        for (int stripe : lockedStripes) {
+            stripes[stripe].unlock();
+        }
+    }
+
+    private int stripe(int accountNumber) {
+        return accountNumber & mask;
+    }
+}
@@ -0,0 +1,8 @@
+package bank;
+
+public enum AccountStorage {
+    // Счета - объекты в куче, при запуске загружаются из снимка и журнала
+    HEAP,
+    // Счета - ячейки файла accounts.bin, отображенного в память; после штатной остановки не загружаются заново
+    MAPPED
+}
@@ -0,0 +1,19 @@
+package bank;
+
+import java.util.Collection;
+import java.util.List;
+
+// Хранилище счетов банка. Номера счетов плотные и неотрицательные
+interface AccountStore {
+    Account find(int accountNumber);
+
+    boolean contains(int accountNumber);
+
+    void add(Account account);
+
+    // Все счета по возрастанию номеров
+    Collection<Account> all();
+
+    // Счета клиента в порядке открытия
+    List<Account> ownedBy(int customerId);
+}
@@ -0,0 +1,346 @@
+package bank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+// Счета в файле accounts.bin, отображенном в память: ячейка фиксированного размера на номер счета
+// с типом, владельцем, балансом, кредитным лимитом и LSN последнего изменения. Объекты Account, которые
+// возвращает таблица, - представления: они читают и меняют ячейку, поэтому куча не растет с числом счетов.
+// Счета клиента связаны в список через ячейки, начало и конец списка - в account-owners.bin.
+// Ячейки уходят на диск, когда решит ОС, и после сбоя могут опережать журнал. Поэтому таблице верят только
+// после штатной остановки (состояние CLEAN в заголовке) и только если журнал заканчивается на том же LSN;
+// иначе она очищается и заполняется из снимка и журнала при этом же запуске
+final class AccountTable implements AccountStore, Closeable {
+    static final String FILE_NAME = "accounts.bin";
+    static final String OWNERS_FILE_NAME = "account-owners.bin";
+
+    private static final int MAGIC = 0x424E4B41;
+    private static final int VERSION = 1;
+    private static final int DIRTY = 0;
+    private static final int CLEAN = 1;
+
+    // Заголовок: число счетов и итоги BankStats на момент штатной остановки
+    private static final int HEADER_SIZE = 64;
+    private static final int STATE = 8;
+    private static final int LIMIT = 12;
+    private static final int CLEAN_LSN = 16;
+    private static final int COUNT = 24;
+    private static final int DEBIT_COUNT = 32;
+    private static final int CREDIT_COUNT = 40;
+    private static final int DEBIT_TOTAL = 48;
+    private static final int CREDIT_TOTAL = 56;
+
+    // Ячейка счета. Тип 0 - номер свободен, иначе AccountType.ordinal() + 1.
+    // Номера в списке счетов клиента хранятся со сдвигом на 1, 0 - конец списка
+    private static final int SLOT_SIZE = 40;
+    private static final int TYPE = 0;
+    private static final int OWNER = 4;
+    private static final int BALANCE = 8;
+    private static final int CREDIT_LIMIT = 16;
+    private static final int APPLIED_LSN = 24;
+    private static final int NEXT_OWNED = 32;
+
+    private static final int OWNER_SLOT_SIZE = 8;
+    private static final int FIRST_OWNED = 0;
+    private static final int LAST_OWNED = 4;
+
+    private static final AccountType[] TYPES = AccountType.values();
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final FileChannel ownersChannel;
+    private final MappedByteBuffer header;
+    private final Region slots;
+    private final Region owners;
+    private final IntFunction<Customer> customers;
+    private final boolean restored;
+    private volatile int limit;
+    private volatile int count;
+
+    // customers находит владельца по номеру для представлений счетов, journalEndLsn - LSN последней записи журнала
+    AccountTable(Path dir, IntFunction<Customer> customers, long journalEndLsn) throws IOException {
+        this.customers = customers;
+        this.channel = FileChannel.open(dir.resolve(FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.ownersChannel = FileChannel.open(dir.resolve(OWNERS_FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer existing = ByteBuffer.allocate(HEADER_SIZE);
+        boolean clean = channel.read(existing, 0) == HEADER_SIZE
+                && (int) INT.get(existing, 0) == MAGIC
+                && (int) INT.get(existing, 4) == VERSION
+                && (int) INT.get(existing, STATE) == CLEAN;
+        if (clean && (long) LONG.get(existing, CLEAN_LSN) != journalEndLsn) {
+            // Журнал менялся без таблицы (или потерял хвост): ячейкам нельзя верить, таблица строится заново
+            System.err.println("Таблица счетов " + FILE_NAME + " сохранена на LSN " + LONG.get(existing, CLEAN_LSN)
+                    + ", а журнал заканчивается на LSN " + journalEndLsn + "; таблица строится заново из снимка и журнала");
+            clean = false;
+        }
+        if (!clean) {
+            channel.truncate(0);
+            ownersChannel.truncate(0);
+        }
+        this.restored = clean;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        this.slots = new Region(channel, HEADER_SIZE, SLOT_SIZE);
+        this.owners = new Region(ownersChannel, 0, OWNER_SLOT_SIZE);
+        if (clean) {
+            this.limit = (int) INT.get(header, LIMIT);
+            this.count = (int) (long) LONG.get(header, COUNT);
+            slots.mapExisting();
+            owners.mapExisting();
+        } else {
+            INT.set(header, 0, MAGIC);
+            INT.set(header, 4, VERSION);
+        }
+        // До первого изменения ячеек: если процесс упадет, при следующем запуске таблица будет перестроена
+        INT.set(header, STATE, DIRTY);
+        header.force();
+    }
+
+    // Таблица осталась от штатной остановки, и счета не нужно загружать из снимка
+    boolean isRestored() {
+        return restored;
+    }
+
+    void restoreStats(BankStats stats) {
+        stats.restore((long) LONG.get(header, DEBIT_COUNT), (long) LONG.get(header, CREDIT_COUNT),
+                (long) LONG.get(header, DEBIT_TOTAL), (long) LONG.get(header, CREDIT_TOTAL));
+    }
+
+    @Override
+    public Account find(int accountNumber) {
+        if (!contains(accountNumber)) {
+            return null;
+        }
+        ByteBuffer segment = slots.segment(accountNumber);
+        int offset = slots.offset(accountNumber);
+        Customer owner = customers.apply((int) INT.get(segment, offset + OWNER));
+        return (TYPES[(int) INT.get(segment, offset + TYPE) - 1] == AccountType.CREDIT)
+                ? new CreditAccount(accountNumber, owner, (long) LONG.get(segment, offset + CREDIT_LIMIT), this)
+                : new DebitAccount(accountNumber, owner, this);
+    }
+
+    @Override
+    public boolean contains(int accountNumber) {
+        if (accountNumber < 0 || accountNumber >= limit) {
+            return false;
+        }
+        return (int) INT.getAcquire(slots.segment(accountNumber), slots.offset(accountNumber) + TYPE) != 0;
+    }
+
+    // Тип записывается последним: ячейка с ненулевым типом заполнена полностью
+    @Override
+    public synchronized void add(Account account) {
+        int accountNumber = account.getAccountNumber();
+        int ownerId = account.getOwner().getId();
+        ByteBuffer segment = slots.map(accountNumber);
+        int offset = slots.offset(accountNumber);
+        if ((int) INT.get(segment, offset + TYPE) != 0) {
+            throw new IllegalStateException("Номер уже занят: " + accountNumber);
+        }
+        INT.set(segment, offset + OWNER, ownerId);
+        LONG.set(segment, offset + BALANCE, account.getBalanceMinor());
+        LONG.set(segment, offset + CREDIT_LIMIT, (account instanceof CreditAccount)
+                ? ((CreditAccount) account).getCreditLimitMinor()
+                : 0L);
+        LONG.set(segment, offset + APPLIED_LSN, account.getAppliedLsn());
+        INT.set(segment, offset + NEXT_OWNED, 0);
+        INT.setRelease(segment, offset + TYPE, account.getType().ordinal() + 1);
+
+        ByteBuffer ownerSegment = owners.map(ownerId);
+        int ownerOffset = owners.offset(ownerId);
+        int last = (int) INT.get(ownerSegment, ownerOffset + LAST_OWNED);
+        if (last == 0) {
+            INT.setRelease(ownerSegment, ownerOffset + FIRST_OWNED, accountNumber + 1);
+        } else {
+            INT.setRelease(slots.segment(last - 1), slots.offset(last - 1) + NEXT_OWNED, accountNumber + 1);
+        }
+        INT.set(ownerSegment, ownerOffset + LAST_OWNED, accountNumber + 1);
+        count = count + 1;
+        if (accountNumber >= limit) {
+            limit = accountNumber + 1;
+        }
+    }
+
+    @Override
+    public Collection<Account> all() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Account> iterator() {
+                int end = limit;
+                return new Iterator<>() {
+                    private int next = advance(0);
+
+                    private int advance(int from) {
+                        int accountNumber = from;
+                        while (accountNumber < end && !AccountTable.this.contains(accountNumber)) {
+                            accountNumber++;
+                        }
+                        return accountNumber;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < end;
+                    }
+
+                    @Override
+                    public Account next() {
+                        if (next >= end) {
+                            throw new NoSuchElementException();
+                        }
+                        Account account = find(next);
+                        next = advance(next + 1);
+                        return account;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public List<Account> ownedBy(int customerId) {
+        List<Account> result = new ArrayList<>();
+        ByteBuffer ownerSegment = owners.segment(customerId);
+        if (customerId < 0 || ownerSegment == null) {
+            return result;
+        }
+        int next = (int) INT.getAcquire(ownerSegment, owners.offset(customerId) + FIRST_OWNED);
+        while (next != 0) {
+            int accountNumber = next - 1;
+            result.add(find(accountNumber));
+            next = (int) INT.getAcquire(slots.segment(accountNumber), slots.offset(accountNumber) + NEXT_OWNED);
+        }
+        return result;
+    }
+
+    long getBalance(int accountNumber) {
+        return (long) LONG.getVolatile(slots.segment(accountNumber), slots.offset(accountNumber) + BALANCE);
+    }
+
+    void setBalance(int accountNumber, long balance) {
+        LONG.setVolatile(slots.segment(accountNumber), slots.offset(accountNumber) + BALANCE, balance);
+    }
+
+    long getAppliedLsn(int accountNumber) {
+        return (long) LONG.get(slots.segment(accountNumber), slots.offset(accountNumber) + APPLIED_LSN);
+    }
+
+    void setAppliedLsn(int accountNumber, long appliedLsn) {
+        LONG.set(slots.segment(accountNumber), slots.offset(accountNumber) + APPLIED_LSN, appliedLsn);
+    }
+
+    // Штатная остановка: ячейки сбрасываются на диск, затем в заголовок пишется CLEAN.
+    // Вызывается, когда операций больше нет, а журнал закрыт на lastLsn
+    synchronized void closeClean(long lastLsn, BankStats stats) throws IOException {
+        slots.force();
+        owners.force();
+        INT.set(header, LIMIT, limit);
+        LONG.set(header, COUNT, (long) count);
+        LONG.set(header, CLEAN_LSN, lastLsn);
+        LONG.set(header, DEBIT_COUNT, stats.getDebitCount());
+        LONG.set(header, CREDIT_COUNT, stats.getCreditCount());
+        LONG.set(header, DEBIT_TOTAL, stats.getDebitTotal());
+        LONG.set(header, CREDIT_TOTAL, stats.getCreditTotal());
+        header.force();
+        INT.set(header, STATE, CLEAN);
+        header.force();
+        close();
+    }
+
+    // Без отметки CLEAN: при следующем запуске таблица будет перестроена
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        ownersChannel.close();
+    }
+
+    // Записи фиксированного размера в отображенных сегментах файла по SEGMENT_SIZE записей.
+    // Сегменты отображаются при первой записи в них и не освобождаются до закрытия таблицы
+    private static final class Region {
+        private static final int SEGMENT_SHIFT = 20;
+        private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+        private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+        private final FileChannel channel;
+        private final long base;
+        private final int recordSize;
+        private volatile MappedByteBuffer[] segments = new MappedByteBuffer[16];
+
+        Region(FileChannel channel, long base, int recordSize) {
+            this.channel = channel;
+            this.base = base;
+            this.recordSize = recordSize;
+        }
+
+        // null, если сегмент еще не отображен
+        ByteBuffer segment(int index) {
+            MappedByteBuffer[] current = segments;
+            int segmentIndex = index >>> SEGMENT_SHIFT;
+            return (segmentIndex < current.length) ? current[segmentIndex] : null;
+        }
+
+        int offset(int index) {
+            return (index & SEGMENT_MASK) * recordSize;
+        }
+
+        synchronized ByteBuffer map(int index) {
+            int segmentIndex = index >>> SEGMENT_SHIFT;
+            MappedByteBuffer[] current = segments;
+            if (segmentIndex >= current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, segmentIndex + 1));
+                segments = current;
+            }
+            if (current[segmentIndex] == null) {
+                long segmentBytes = (long) SEGMENT_SIZE * recordSize;
+                try {
+                    current[segmentIndex] = channel.map(FileChannel.MapMode.READ_WRITE,
+                            base + segmentIndex * segmentBytes, segmentBytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Не удалось отобразить таблицу счетов", e);
+                }
+                segments = current;
+            }
+            return current[segmentIndex];
+        }
+
+        void mapExisting() throws IOException {
+            long segmentBytes = (long) SEGMENT_SIZE * recordSize;
+            long existing = (channel.size() - base) / segmentBytes;
+            for (long i = 0; i < existing; i++) {
+                map((int) (i << SEGMENT_SHIFT));
+            }
+        }
+
+        synchronized void force() {
+            for (MappedByteBuffer segment : segments) {
+                if (segment != null) {
+                    segment.force();
+                }
+            }
+        }
+    }
+}
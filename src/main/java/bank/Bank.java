@@ -1,131 +1,644 @@
 package bank;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class Bank {
-    private final Map<Integer, Customer> customers;
-    private final Map<Integer, Account> accounts;
-    private final List<Transaction> transactions;
-    private final Map<Integer, List<Integer>> customerAccounts;
+public class Bank implements Closeable {
+    public static final long DEFAULT_SNAPSHOT_EVERY = 1_000_000;
+    private static final String ARCHIVE_DIR = "archive";
+    private static final int STATEMENT_BUFFER = 8192;
+    // Восстановление идет в конструкторе, до первого представления банка
+    private static final long RECOVERY_EPOCH = 0;
+
+    private final Registry<Customer> customers = new Registry<>();
+    private final CustomerIndex customerIndex = new CustomerIndex(customers::get);
+    private final AccountStore accounts;
+    // null, если счета хранятся в куче
+    private final AccountTable accountTable;
+    private final TransactionLog transactions = new TransactionLog();
+    private final AtomicInteger nextCustomerId = new AtomicInteger();
+    private final AtomicInteger nextAccountNumber = new AtomicInteger();
+    private final AccountLocks locks = new AccountLocks();
+    private final ReadEpochs epochs = new ReadEpochs();
+    private final BankStats stats = new BankStats();
+    private final BankMetrics metrics;
+    // Создание клиентов и счетов берет его на чтение, снимок - на запись на время смены сегмента журнала
+    private final ReadWriteLock registryLock = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private final Path dataDir;
+    private final Journal journal;
+    private final long snapshotEveryRecords;
+    private final Thread snapshotter;
+    private volatile long lastSnapshotLsn;
+    // Число транзакций до последнего снимка и их исходы по BankStats.outcome; меняются под snapshotLock
+    private int snapshotTransactions;
+    private long[] snapshotOutcomes = new long[BankStats.OUTCOME_COUNTERS];
+    private volatile Thread archiver;
+    // null без журнала
+    private final TransactionArchive archive;
 
     public Bank() {
-        this.customers = new HashMap<>();
-        this.accounts = new HashMap<>();
-        this.customerAccounts = new HashMap<>();
-        this.transactions = new ArrayList<>();
+        this.accounts = new HeapAccountStore();
+        this.accountTable = null;
+        this.dataDir = null;
+        this.journal = null;
+        this.snapshotEveryRecords = 0;
+        this.snapshotter = null;
+        this.archive = null;
+        this.metrics = new BankMetrics(stats, BankMetrics.SAMPLED_RATE);
+    }
+
+    public Bank(Path dataDir, Durability durability) throws IOException {
+        this(dataDir, durability, DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    // snapshotEveryRecords = 0 отключает автоматические снимки
+    public Bank(Path dataDir, Durability durability, long snapshotEveryRecords) throws IOException {
+        this(dataDir, durability, snapshotEveryRecords, AccountStorage.HEAP);
+    }
+
+    public Bank(Path dataDir, Durability durability, long snapshotEveryRecords, AccountStorage storage)
+            throws IOException {
+        Files.createDirectories(dataDir);
+        if (storage == AccountStorage.MAPPED) {
+            this.accountTable = new AccountTable(dataDir, customers::get, Journal.endLsn(dataDir));
+            this.accounts = accountTable;
+            if (accountTable.isRestored()) {
+                accountTable.restoreStats(stats);
+            }
+        } else {
+            this.accountTable = null;
+            this.accounts = new HeapAccountStore();
+        }
+        // История продолжается с конца архива, а журнал дочитывает транзакции после него
+        this.archive = new TransactionArchive(dataDir.resolve(ARCHIVE_DIR));
+        transactions.attachArchive(archive);
+        Recovery recovery = new Recovery();
+        long snapshotLsn = Snapshot.loadLatest(dataDir, recovery);
+        recovery.snapshotLsn = snapshotLsn;
+        this.dataDir = dataDir;
+        this.journal = new Journal(dataDir, durability, snapshotLsn, archive.size(), recovery);
+        this.snapshotEveryRecords = snapshotEveryRecords;
+        this.lastSnapshotLsn = snapshotLsn;
+        this.metrics = new BankMetrics(stats, (durability == Durability.ASYNC) ? BankMetrics.SAMPLED_RATE
+                                                                                : BankMetrics.EVERY_CALL);
+        if (snapshotEveryRecords > 0) {
+            this.snapshotter = new Thread(this::snapshotLoop, "bank-snapshotter");
+            this.snapshotter.setDaemon(true);
+            this.snapshotter.start();
+        } else {
+            this.snapshotter = null;
+        }
+    }
+
+    // Переносит старые транзакции из памяти в сжатые сегменты каталога archive: записи сверх последних
+    // keepRecords или старше keepAge (null - без ограничения по времени). Перенос идет в фоне блоками
+    // по 16 384 записи, а история по-прежнему читается целиком через getTransactions и findTransactions.
+    // Архив хранится между запусками и заменяет сегменты журнала: снимок удаляет те из них, чьи транзакции
+    // уже в архиве. Сегменты прошлых запусков читаются при открытии банка и без вызова этого метода
+    public synchronized void startArchiver(int keepRecords, Duration keepAge) {
+        if (journal == null) {
+            throw new IllegalStateException("Архив транзакций доступен только для банка с журналом");
+        }
+        if (archiver != null) {
+            throw new IllegalStateException("Архивация транзакций уже запущена");
+        }
+        if (keepRecords < 0 || (keepAge != null && keepAge.isNegative())) {
+            throw new IllegalArgumentException("Некорректные границы архивации: " + keepRecords + ", " + keepAge);
+        }
+        archiver = new Thread(() -> archiveLoop(keepRecords, keepAge), "bank-archiver");
+        archiver.setDaemon(true);
+        archiver.start();
     }
 
     public Collection<Customer> getCustomers() {
-        return customers.values();
+        return customers;
     }
 
     public Collection<Account> getAccounts() {
-        return accounts.values();
+        return accounts.all();
+    }
+
+    // Номера счетов выдаются с 0 подряд: у всех открытых счетов номер меньше этого значения
+    int getAccountNumberLimit() {
+        return nextAccountNumber.get();
     }
 
     public List<Transaction> getTransactions() {
-        return transactions;
+        return transactions.asList();
     }
 
     public Transaction getLastTransaction() {
-        return !transactions.isEmpty() ? transactions.get(transactions.size() - 1) : null;
+        int size = transactions.size();
+        return (size > 0) ? transactions.get(size - 1) : null;
+    }
+
+    // История от новых операций к старым. Любой фильтр можно не задавать (null); период - [fromTime, toTime).
+    // Для следующей страницы передается getNextPageToken() предыдущей
+    public TransactionPage findTransactions(Integer accountNumber, LocalDateTime fromTime, LocalDateTime toTime,
+                                            TransactionStatus status, String pageToken, int limit) {
+        return transactions.find(accountNumber,
+                (fromTime != null) ? Transaction.toEpochNanos(fromTime) : null,
+                (toTime != null) ? Transaction.toEpochNanos(toTime) : null,
+                status, pageToken, limit);
     }
 
     public Customer createCustomer(String fullName) {
-        Customer customer = new Customer(fullName);
-        customers.put(customer.getId(), customer);
-        customerAccounts.put(customer.getId(), new ArrayList<>());
+        Customer customer = new Customer(nextCustomerId.getAndIncrement(), fullName);
+        long lsn;
+        registryLock.readLock().lock();
+        try {
+            lsn = (journal != null) ? journal.appendCustomer(customer.getId(), fullName) : 0;
+            registerCustomer(customer);
+        } finally {
+            registryLock.readLock().unlock();
+        }
+        awaitDurable(lsn);
         return customer;
     }
 
     public Account openDebitAccount(Customer owner) {
-        Account account = new DebitAccount(owner);
-        accounts.put(account.getAccountNumber(), account);
-        customerAccounts.get(owner.getId()).add(account.getAccountNumber());
-        return account;
+        return openAccount(new DebitAccount(nextAccountNumber.getAndIncrement(), owner), 0);
     }
 
     public Account openCreditAccount(Customer owner, BigDecimal creditLimit) {
-        Account account = new CreditAccount(owner, creditLimit);
-        accounts.put(account.getAccountNumber(), account);
-        customerAccounts.get(owner.getId()).add(account.getAccountNumber());
-        return account;
+        if (creditLimit.signum() < 0 || !Money.isRepresentable(creditLimit)) {
+            throw new IllegalArgumentException("Некорректный кредитный лимит: " + creditLimit);
+        }
+        long minorLimit = Money.toMinor(creditLimit);
+        return openAccount(new CreditAccount(nextAccountNumber.getAndIncrement(), owner, minorLimit), minorLimit);
     }
 
     public Customer findCustomer(int customerId) {
         return customers.get(customerId);
     }
 
+    // Клиенты, в ФИО которых есть query без учета регистра, по возрастанию ID. Запрос короче трех символов
+    // ищет начало слова, пустой - возвращает всех. Для следующей страницы передается getNextPageToken() предыдущей
+    public CustomerPage findCustomers(String query, String pageToken, int limit) {
+        return customerIndex.find(query, pageToken, limit);
+    }
+
+    // Включает режим горячего счета: пополнения и входящие переводы распределяются по полосам,
+    // число которых - степень двойки не меньше числа ядер, и не ждут друг друга на блокировке счета.
+    // Списания и getBalance складывают полосы. Режим действует до остановки банка и не журналируется
+    public void enableHotAccount(int accountNumber) {
+        if (accountTable != null) {
+            throw new IllegalStateException("Режим горячего счета доступен только для счетов в куче");
+        }
+        Account account = findAccount(accountNumber);
+        if (account == null) {
+            throw new IllegalArgumentException("Счет не найден: " + accountNumber);
+        }
+        locks.lock(accountNumber);
+        try {
+            account.enableHotBalance();
+        } finally {
+            locks.unlock(accountNumber);
+        }
+    }
+
     public Account findAccount(int accountNumber) {
-        return accounts.get(accountNumber);
+        return accounts.find(accountNumber);
+    }
+
+    // null, если клиент не найден
+    public List<Account> getCustomerAccounts(int customerId) {
+        if (!customers.containsId(customerId)) {
+            return null;
+        }
+        return accounts.ownedBy(customerId);
+    }
+
+    BankMetrics getMetrics() {
+        return metrics;
     }
 
     public boolean deposit(int accountNumber, BigDecimal amount) {
-        Transaction transaction = new Transaction(TransactionType.DEPOSIT, amount, null, accountNumber);
+        long started = metrics.startSample();
+        try {
+            Outcome outcome = new Outcome();
+            deposit(accountNumber, minorAmountOrInvalid(amount), recordedAmount(amount), outcome);
+            awaitDurable(outcome.lsn);
+            return outcome.status.isSuccess();
+        } finally {
+            metrics.operationCompleted(TransactionType.DEPOSIT, started);
+        }
+    }
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            logTransaction(transaction, false, "Неверная сумма");
-            return false;
+    public boolean withdraw(int accountNumber, BigDecimal amount) {
+        long started = metrics.startSample();
+        try {
+            Outcome outcome = new Outcome();
+            withdraw(accountNumber, minorAmountOrInvalid(amount), recordedAmount(amount), outcome);
+            awaitDurable(outcome.lsn);
+            return outcome.status.isSuccess();
+        } finally {
+            metrics.operationCompleted(TransactionType.WITHDRAW, started);
+        }
+    }
+
+    public boolean transfer(int from, int to, BigDecimal amount) {
+        long started = metrics.startSample();
+        try {
+            Outcome outcome = new Outcome();
+            transfer(from, to, minorAmountOrInvalid(amount), recordedAmount(amount), outcome);
+            awaitDurable(outcome.lsn);
+            return outcome.status.isSuccess();
+        } finally {
+            metrics.operationCompleted(TransactionType.TRANSFER, started);
+        }
+    }
+
+    // Одна операция из сетевого запроса или сценария: идет тем же путем, что deposit, withdraw и transfer,
+    // поэтому зачисления на горячий счет занимают только полосу, а не блокировку счета, как в applyBatch
+    TransactionStatus apply(BatchOperation operation) {
+        TransactionType type = operation.getType();
+        BigDecimal amount = operation.getAmount();
+        long started = metrics.startSample();
+        try {
+            Outcome outcome = new Outcome();
+            switch (type) {
+                case DEPOSIT -> deposit(operation.getToAccountNumber(), minorAmountOrInvalid(amount),
+                        recordedAmount(amount), outcome);
+                case WITHDRAW -> withdraw(operation.getFromAccountNumber(), minorAmountOrInvalid(amount),
+                        recordedAmount(amount), outcome);
+                default -> transfer(operation.getFromAccountNumber(), operation.getToAccountNumber(),
+                        minorAmountOrInvalid(amount), recordedAmount(amount), outcome);
+            }
+            awaitDurable(outcome.lsn);
+            return outcome.status;
+        } finally {
+            metrics.operationCompleted(type, started);
+        }
+    }
+
+    // Операции без ожидания долговечности: проверка, изменение балансов и запись в журналы.
+    // minorAmount < 0 означает некорректную сумму, recordedAmount - сумма для записи отказа
+    void deposit(int accountNumber, long minorAmount, long recordedAmount, Outcome outcome) {
+        if (minorAmount < 0) {
+            outcome.set(TransactionStatus.INVALID_AMOUNT, logRejected(TransactionType.DEPOSIT, recordedAmount,
+                    TransactionLog.NO_ACCOUNT, accountNumber, TransactionStatus.INVALID_AMOUNT));
+            return;
         }
-        
-        Account account = findAccount(accountNumber); 
+
+        Account account = findAccount(accountNumber);
         if (account == null) {
-            logTransaction(transaction, false, "Счет не найден");
-            return false;
+            outcome.set(TransactionStatus.ACCOUNT_NOT_FOUND, logRejected(TransactionType.DEPOSIT, minorAmount,
+                    TransactionLog.NO_ACCOUNT, accountNumber, TransactionStatus.ACCOUNT_NOT_FOUND));
+            return;
+        }
+
+        if (account.getHotBalance() != null) {
+            depositHot(account, minorAmount, outcome);
+            return;
         }
 
-        boolean success = account.deposit(amount);
-        String message = success ? "ОК" : "Сбой пополнения";
-        logTransaction(transaction, success, message);
-        return success;
+        locks.lock(accountNumber);
+        long epoch = epochs.enter();
+        try {
+            epochs.beforeChange(epoch, account);
+            boolean success = account.deposit(minorAmount);
+            TransactionStatus status = success ? TransactionStatus.OK : TransactionStatus.DEPOSIT_FAILED;
+            long lsn = logTransaction(epoch, TransactionType.DEPOSIT, minorAmount, TransactionLog.NO_ACCOUNT,
+                    accountNumber, status);
+            if (success) {
+                account.setAppliedLsn(lsn);
+                stats.balanceChanged(epoch, account, minorAmount);
+            }
+            outcome.set(status, lsn);
+        } finally {
+            epochs.exit(epoch);
+            locks.unlock(accountNumber);
+        }
     }
 
-    public boolean withdraw(int accountNumber, BigDecimal amount) {
-        Transaction transaction = new Transaction(TransactionType.WITHDRAW, amount, accountNumber, null);
+    // Пополнение горячего счета занимает только одну полосу: полоса, как блокировка обычного счета,
+    // держится до записи в журналы, чтобы LSN полосы соответствовал ее части баланса
+    private void depositHot(Account account, long minorAmount, Outcome outcome) {
+        HotBalance.Stripe stripe = account.getHotBalance().lockStripe();
+        long epoch = epochs.enter();
+        try {
+            epochs.beforeChange(epoch, stripe);
+            boolean success = stripe.deposit(minorAmount);
+            TransactionStatus status = success ? TransactionStatus.OK : TransactionStatus.DEPOSIT_FAILED;
+            long lsn = logTransaction(epoch, TransactionType.DEPOSIT, minorAmount, TransactionLog.NO_ACCOUNT,
+                    account.getAccountNumber(), status);
+            if (success) {
+                stripe.setAppliedLsn(lsn);
+                stats.balanceChanged(epoch, account, minorAmount);
+            }
+            outcome.set(status, lsn);
+        } finally {
+            epochs.exit(epoch);
+            stripe.unlock();
+        }
+    }
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            logTransaction(transaction, false, "Неверная сумма");
-            return false;
+    void withdraw(int accountNumber, long minorAmount, long recordedAmount, Outcome outcome) {
+        if (minorAmount < 0) {
+            outcome.set(TransactionStatus.INVALID_AMOUNT, logRejected(TransactionType.WITHDRAW, recordedAmount,
+                    accountNumber, TransactionLog.NO_ACCOUNT, TransactionStatus.INVALID_AMOUNT));
+            return;
         }
-        
-        Account account = findAccount(accountNumber); 
+
+        Account account = findAccount(accountNumber);
         if (account == null) {
-            logTransaction(transaction, false, "Счет не найден");
-            return false;
+            outcome.set(TransactionStatus.ACCOUNT_NOT_FOUND, logRejected(TransactionType.WITHDRAW, minorAmount,
+                    accountNumber, TransactionLog.NO_ACCOUNT, TransactionStatus.ACCOUNT_NOT_FOUND));
+            return;
         }
 
-        boolean success = account.withdraw(amount);
-        String message = success ? "ОК" : "Недостаточно средств";
-        logTransaction(transaction, success, message);
-        return success;
+        locks.lock(accountNumber);
+        long epoch = epochs.enter();
+        try {
+            epochs.beforeChange(epoch, account);
+            boolean success = account.withdraw(minorAmount);
+            TransactionStatus status = success ? TransactionStatus.OK : TransactionStatus.INSUFFICIENT_FUNDS;
+            long lsn = logTransaction(epoch, TransactionType.WITHDRAW, minorAmount, accountNumber,
+                    TransactionLog.NO_ACCOUNT, status);
+            if (success) {
+                account.setAppliedLsn(lsn);
+                stats.balanceChanged(epoch, account, -minorAmount);
+            }
+            outcome.set(status, lsn);
+        } finally {
+            epochs.exit(epoch);
+            locks.unlock(accountNumber);
+        }
     }
 
-    public boolean transfer(int from, int to, BigDecimal amount) {
-        Transaction transaction = new Transaction(TransactionType.TRANSFER, amount, from, to);
-        
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            logTransaction(transaction, false, "Неверная сумма");
-            return false;
+    void transfer(int from, int to, long minorAmount, long recordedAmount, Outcome outcome) {
+        if (minorAmount < 0) {
+            outcome.set(TransactionStatus.INVALID_AMOUNT, logRejected(TransactionType.TRANSFER, recordedAmount,
+                    from, to, TransactionStatus.INVALID_AMOUNT));
+            return;
         }
 
         Account fromAccount = findAccount(from);
-        Account toAccount = findAccount(to); 
+        Account toAccount = findAccount(to);
         if (fromAccount == null || toAccount == null) {
-            String message  = (fromAccount == null) ? "Счет отправителя не найден"
-                                                    : "Счет получателя не найден";
-            logTransaction(transaction, false, message);
-            return false;
+            TransactionStatus status = (fromAccount == null) ? TransactionStatus.SENDER_NOT_FOUND
+                                                             : TransactionStatus.RECIPIENT_NOT_FOUND;
+            outcome.set(status, logRejected(TransactionType.TRANSFER, minorAmount, from, to, status));
+            return;
+        }
+
+        if (toAccount.getHotBalance() != null && from != to) {
+            transferToHot(fromAccount, toAccount, minorAmount, outcome);
+            return;
+        }
+
+        locks.lockBoth(from, to);
+        long epoch = epochs.enter();
+        try {
+            epochs.beforeChange(epoch, fromAccount);
+            epochs.beforeChange(epoch, toAccount);
+            boolean success = fromAccount.transfer(toAccount, minorAmount);
+            TransactionStatus status = success ? TransactionStatus.OK : TransactionStatus.SENDER_INSUFFICIENT_FUNDS;
+            long lsn = logTransaction(epoch, TransactionType.TRANSFER, minorAmount, from, to, status);
+            if (success) {
+                fromAccount.setAppliedLsn(lsn);
+                toAccount.setAppliedLsn(lsn);
+                stats.balanceChanged(epoch, fromAccount, -minorAmount);
+                stats.balanceChanged(epoch, toAccount, minorAmount);
+            }
+            outcome.set(status, lsn);
+        } finally {
+            epochs.exit(epoch);
+            locks.unlockBoth(from, to);
+        }
+    }
+
+    // Блокируется только отправитель; зачисление идет в полосу получателя
+    private void transferToHot(Account fromAccount, Account toAccount, long minorAmount, Outcome outcome) {
+        int from = fromAccount.getAccountNumber();
+        int to = toAccount.getAccountNumber();
+        locks.lock(from);
+        try {
+            HotBalance.Stripe stripe = toAccount.getHotBalance().lockStripe();
+            long epoch = epochs.enter();
+            try {
+                epochs.beforeChange(epoch, fromAccount);
+                epochs.beforeChange(epoch, stripe);
+                boolean success = fromAccount.withdraw(minorAmount);
+                if (success && !stripe.deposit(minorAmount)) {
+                    fromAccount.adjustBalance(minorAmount);
+                    success = false;
+                }
+                TransactionStatus status = success ? TransactionStatus.OK : TransactionStatus.SENDER_INSUFFICIENT_FUNDS;
+                long lsn = logTransaction(epoch, TransactionType.TRANSFER, minorAmount, from, to, status);
+                if (success) {
+                    fromAccount.setAppliedLsn(lsn);
+                    stripe.setAppliedLsn(lsn);
+                    stats.balanceChanged(epoch, fromAccount, -minorAmount);
+                    stats.balanceChanged(epoch, toAccount, minorAmount);
+                }
+                outcome.set(status, lsn);
+            } finally {
+                epochs.exit(epoch);
+                stripe.unlock();
+            }
+        } finally {
+            locks.unlock(from);
+        }
+    }
+
+    // Каждый счет ищется один раз и блокируется один раз на весь пакет. Операции проверяются по порядку
+    // на промежуточных балансах, а на счет записывается только итоговое изменение. Результат i-й операции
+    // - ее транзакция в журнале банка
+    public List<Transaction> applyBatch(List<BatchOperation> operations) {
+        int size = operations.size();
+        TransactionType[] types = new TransactionType[size];
+        long[] amounts = new long[size];
+        int[] fromSlots = new int[size];
+        int[] toSlots = new int[size];
+        Map<Integer, Integer> slots = new HashMap<>();
+        List<Account> slotAccounts = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            BatchOperation operation = operations.get(i);
+            types[i] = operation.getType();
+            amounts[i] = isValidAmount(operation.getAmount()) ? Money.toMinor(operation.getAmount()) : -1;
+            fromSlots[i] = resolveSlot(operation.getFromAccountNumber(), slots, slotAccounts);
+            toSlots[i] = resolveSlot(operation.getToAccountNumber(), slots, slotAccounts);
+        }
+
+        int[] accountNumbers = new int[slotAccounts.size()];
+        for (int slot = 0; slot < accountNumbers.length; slot++) {
+            accountNumbers[slot] = slotAccounts.get(slot).getAccountNumber();
+        }
+        long[] working = new long[accountNumbers.length];
+        long[] original = new long[accountNumbers.length];
+        long[] appliedLsns = new long[accountNumbers.length];
+        int[] indices = new int[size];
+        long lastLsn = 0;
+
+        int[] lockedStripes = locks.lockAll(accountNumbers);
+        long epoch = epochs.enter();
+        try {
+            for (int slot = 0; slot < working.length; slot++) {
+                epochs.beforeChange(epoch, slotAccounts.get(slot));
+                original[slot] = slotAccounts.get(slot).getBalanceMinor();
+                working[slot] = original[slot];
+            }
+
+            for (int i = 0; i < size; i++) {
+                TransactionType type = types[i];
+                int from = fromSlots[i];
+                int to = toSlots[i];
+                long amount = amounts[i];
+                boolean success = false;
+                TransactionStatus status;
+
+                if (amount < 0) {
+                    status = TransactionStatus.INVALID_AMOUNT;
+                } else if (type == TransactionType.DEPOSIT) {
+                    if (to < 0) {
+                        status = TransactionStatus.ACCOUNT_NOT_FOUND;
+                    } else {
+                        success = Account.canDeposit(working[to], amount);
+                        status = success ? TransactionStatus.OK : TransactionStatus.DEPOSIT_FAILED;
+                    }
+                } else if (type == TransactionType.WITHDRAW) {
+                    if (from < 0) {
+                        status = TransactionStatus.ACCOUNT_NOT_FOUND;
+                    } else {
+                        success = slotAccounts.get(from).canWithdraw(working[from], amount);
+                        status = success ? TransactionStatus.OK : TransactionStatus.INSUFFICIENT_FUNDS;
+                    }
+                } else if (from < 0 || to < 0) {
+                    status = (from < 0) ? TransactionStatus.SENDER_NOT_FOUND : TransactionStatus.RECIPIENT_NOT_FOUND;
+                } else {
+                    success = slotAccounts.get(from).canWithdraw(working[from], amount)
+                            && Account.canDeposit(working[to] - ((from == to) ? amount : 0), amount);
+                    status = success ? TransactionStatus.OK : TransactionStatus.SENDER_INSUFFICIENT_FUNDS;
+                }
+
+                if (success) {
+                    if (from >= 0) {
+                        working[from] -= amount;
+                    }
+                    if (to >= 0) {
+                        working[to] += amount;
+                    }
+                }
+                BatchOperation operation = operations.get(i);
+                long lsn;
+                synchronized (transactions) {
+                    indices[i] = transactions.append(type,
+                            (amount >= 0) ? amount : recordedAmount(operation.getAmount()),
+                            accountNumberOrNone(operation.getFromAccountNumber()),
+                            accountNumberOrNone(operation.getToAccountNumber()), Transaction.nowEpochNanos(), status);
+                    lsn = journalTransaction(indices[i]);
+                }
+                transactionLogged(epoch, indices[i], type, status);
+                lastLsn = Math.max(lastLsn, lsn);
+                if (success) {
+                    if (from >= 0) {
+                        appliedLsns[from] = lsn;
+                    }
+                    if (to >= 0) {
+                        appliedLsns[to] = lsn;
+                    }
+                }
+            }
+
+            for (int slot = 0; slot < working.length; slot++) {
+                Account account = slotAccounts.get(slot);
+                if (working[slot] != original[slot]) {
+                    account.adjustBalance(working[slot] - original[slot]);
+                    stats.balanceChanged(epoch, account, working[slot] - original[slot]);
+                }
+                if (appliedLsns[slot] != 0) {
+                    account.setAppliedLsn(appliedLsns[slot]);
+                }
+            }
+        } finally {
+            epochs.exit(epoch);
+            locks.unlockAll(lockedStripes);
+        }
+        awaitDurable(lastLsn);
+        Transaction[] results = new Transaction[size];
+        for (int i = 0; i < size; i++) {
+            results[i] = transactions.get(indices[i]);
+        }
+        return Arrays.asList(results);
+    }
+
+    // Закрытие операционного дня: проценты на положительные остатки дебетовых счетов, проценты и комиссия
+    // за овердрафт на отрицательные остатки кредитных. Счета обходятся параллельно диапазонами номеров,
+    // каждый счет блокируется только на время своих начислений, поэтому операции клиентов не останавливаются
+    public EndOfDayResult closeDay(EndOfDayRates rates) {
+        return closeDay(rates, ForkJoinPool.commonPool());
+    }
+
+    EndOfDayResult closeDay(EndOfDayRates rates, ForkJoinPool pool) {
+        EndOfDayResult result = pool.invoke(new EndOfDayBatch(this, rates, 0, nextAccountNumber.get()));
+        awaitDurable(result.lastLsn);
+        return result;
+    }
+
+    // Начисления одного счета записываются транзакциями, но без ожидания долговечности каждой
+    void closeDay(int accountNumber, EndOfDayRates rates, EndOfDayResult result) {
+        Account account = findAccount(accountNumber);
+        if (account == null) {
+            return;
         }
+        locks.lock(accountNumber);
+        long epoch = epochs.enter();
+        try {
+            epochs.beforeChange(epoch, account);
+            long balance = account.getBalanceMinor();
+            if (account instanceof DebitAccount) {
+                long interest = (balance > 0) ? rates.debitInterest(balance) : 0;
+                if (interest > 0 && account.deposit(interest)) {
+                    charge(epoch, account, TransactionType.INTEREST, interest, TransactionLog.NO_ACCOUNT, accountNumber,
+                            result);
+                }
+            } else if (balance < 0) {
+                // Начисления по овердрафту списываются сверх кредитного лимита: отказать в них нельзя
+                long interest = rates.overdraftInterest(balance);
+                if (interest > 0) {
+                    account.adjustBalance(-interest);
+                    charge(epoch, account, TransactionType.OVERDRAFT_INTEREST, interest, accountNumber,
+                            TransactionLog.NO_ACCOUNT, result);
+                }
+                long fee = rates.overdraftFee();
+                if (fee > 0) {
+                    account.adjustBalance(-fee);
+                    charge(epoch, account, TransactionType.FEE, fee, accountNumber, TransactionLog.NO_ACCOUNT, result);
+                }
+            }
+            result.accountProcessed();
+        } finally {
+            epochs.exit(epoch);
+            locks.unlock(accountNumber);
+        }
+    }
 
-        boolean success = fromAccount.transfer(toAccount, amount);
-        String message = success ? "ОК" : "Недостаточно средств у отправителя";
-        logTransaction(transaction, success, message);
-        return success;
+    private void charge(long epoch, Account account, TransactionType type, long amount, int from, int to,
+                        EndOfDayResult result) {
+        long lsn = logTransaction(epoch, type, amount, from, to, TransactionStatus.OK);
+        account.setAppliedLsn(lsn);
+        stats.balanceChanged(epoch, account, (from == TransactionLog.NO_ACCOUNT) ? amount : -amount);
+        result.charged(type, amount, lsn);
     }
 
     public void printCustomerAccounts(int customerId) {
@@ -135,89 +648,692 @@ public class Bank {
             return;
         }
 
-        if (customerAccounts.get(customerId).isEmpty()) {
-            System.out.println("У клиента - " + customer.getFullName() + " нет открытых счетов");
+        try (BankView view = openView()) {
+            List<Account> customerAccounts = view.getCustomerAccounts(customerId);
+            if (customerAccounts.isEmpty()) {
+                System.out.println("У клиента - " + customer.getFullName() + " нет открытых счетов");
+                return;
+            }
+
+            try (ReportWriter out = ReportWriter.stdout()) {
+                out.println("Счета клиента - " + customer.getFullName() + " :");
+                RowRenderer row = new RowRenderer();
+                for (Account account : customerAccounts) {
+                    out.println(row.clear().account(account, view.getBalanceMinor(account)));
+                }
+            }
+        }
+    }
+
+    public void printTransactions() {
+        try (ReportWriter out = ReportWriter.stdout()) {
+            writeTransactions(out);
+        }
+    }
+
+    public void exportTransactions(Path file) throws IOException {
+        ReportWriter out = ReportWriter.toFile(file);
+        try {
+            writeTransactions(out);
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("Ошибка записи в файл " + file);
+        }
+    }
+
+    // Строки собираются прямо из столбцов журнала, без создания объектов Transaction
+    private void writeTransactions(ReportWriter out) {
+        int size = transactions.size();
+        out.println("Совершено " + size + " транзакций:");
+        RowRenderer row = new RowRenderer();
+        for (int i = 0; i < size; i++) {
+            out.println(row.clear().transaction(transactions.getType(i), transactions.getAmount(i),
+                    transactions.getFrom(i), transactions.getTo(i),
+                    transactions.getTimestamp(i), transactions.getStatus(i)));
+        }
+    }
+
+    // Выписки всех клиентов за период [fromTime, toTime) в файлы statement-<ID клиента>.txt каталога dir:
+    // по каждому счету входящий остаток, успешные транзакции периода и исходящий остаток. Клиенты
+    // обрабатываются параллельно, а история каждого счета читается по его списку записей и сразу пишется в файл
+    public int writeStatements(Path dir, LocalDateTime fromTime, LocalDateTime toTime) throws IOException {
+        return writeStatements(dir, fromTime, toTime, ForkJoinPool.commonPool());
+    }
+
+    int writeStatements(Path dir, LocalDateTime fromTime, LocalDateTime toTime, ForkJoinPool pool)
+            throws IOException {
+        if (!fromTime.isBefore(toTime)) {
+            throw new IllegalArgumentException("Начало периода должно быть раньше конца: " + fromTime + ", " + toTime);
+        }
+        Files.createDirectories(dir);
+        try {
+            return pool.invoke(new StatementBatch(this, dir, Transaction.toEpochNanos(fromTime),
+                    Transaction.toEpochNanos(toTime), 0, nextCustomerId.get()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // false, если клиента с таким ID нет
+    boolean writeStatement(int customerId, Path dir, long fromTimestamp, long toTimestamp, RowRenderer row)
+            throws IOException {
+        Customer customer = customers.get(customerId);
+        if (customer == null) {
+            return false;
+        }
+        Path file = dir.resolve("statement-" + customerId + ".txt");
+        ReportWriter out = ReportWriter.toFile(file, STATEMENT_BUFFER);
+        try {
+            out.println("Выписка клиента - " + customer.getFullName() + " (ID " + customerId + ")");
+            out.println("Период: " + Transaction.fromEpochNanos(fromTimestamp)
+                    + " - " + Transaction.fromEpochNanos(toTimestamp));
+            List<Account> customerAccounts = accounts.ownedBy(customerId);
+            if (customerAccounts.isEmpty()) {
+                out.println("Нет открытых счетов");
+            }
+            for (Account account : customerAccounts) {
+                writeAccountStatement(out, row, account, fromTimestamp, toTimestamp);
+            }
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("Ошибка записи в файл " + file);
+        }
+        return true;
+    }
+
+    // Остатки восстанавливаются от текущего баланса назад по истории счета. Баланс и размер журнала читаются
+    // под блокировкой счета: все изменившие баланс записи счета к этому моменту уже в журнале. Если история
+    // счета до конца периода сохранена не целиком, остатки не выводятся - только пометка об этом
+    private void writeAccountStatement(ReportWriter out, RowRenderer row, Account account,
+                                       long fromTimestamp, long toTimestamp) {
+        int accountNumber = account.getAccountNumber();
+        long closing;
+        int before;
+        HotBalance hot = lockConsistent(account);
+        try {
+            closing = account.getBalanceMinor();
+            before = transactions.size();
+        } finally {
+            unlockConsistent(account, hot);
+        }
+
+        long opening = closing;
+        IntList period = new IntList();
+        TransactionLog.AccountHistory history = transactions.history(accountNumber, before);
+        int index = history.next();
+        for (; index >= 0; index = history.next()) {
+            long timestamp = transactions.getTimestamp(index);
+            if (timestamp < fromTimestamp) {
+                break;
+            }
+            if (!transactions.getStatus(index).isSuccess()) {
+                continue;
+            }
+            long delta = balanceDelta(index, accountNumber);
+            if (timestamp >= toTimestamp) {
+                closing -= delta;
+            } else {
+                period.add(index);
+            }
+            opening -= delta;
+        }
+
+        out.println(row.clear().text("Счет ", 0).number(accountNumber, 0).text(" - " + account.getType(), 0));
+        if (index < 0 && !isFullHistory(opening)) {
+            out.println("История счета сохранена не целиком: остатки и транзакции за период не восстановить");
             return;
         }
+        out.println(row.clear().text("Входящий остаток: ", 0).amount(opening, 0));
+        for (int position = period.size() - 1; position >= 0; position--) {
+            index = period.get(position);
+            out.println(row.clear().transaction(transactions.getType(index), transactions.getAmount(index),
+                    transactions.getFrom(index), transactions.getTo(index),
+                    transactions.getTimestamp(index), transactions.getStatus(index)));
+        }
+        out.println(row.clear().text("Исходящий остаток: ", 0).amount(closing, 0));
+    }
+
+    // Баланс счета на момент time - после всех его транзакций с меткой времени не позже time; null, если счета нет.
+    // От текущего баланса отнимается изменение после time: накопленное после ближайшей контрольной точки журнала
+    // и записи счета между time и этой точкой, которых не больше TransactionLog.CHECKPOINT_EVERY (у записей архива
+    // прошлых запусков точек нет). IllegalStateException, если история счета до time сохранена не целиком
+    public BigDecimal balanceAsOf(int accountNumber, LocalDateTime time) {
+        Account account = findAccount(accountNumber);
+        if (account == null) {
+            return null;
+        }
+        return Money.toBigDecimal(balanceAsOf(account, Transaction.toEpochNanos(time)));
+    }
+
+    // Баланс и точка читаются под блокировкой счета: все изменившие баланс записи счета к этому моменту в журнале
+    long balanceAsOf(Account account, long timestamp) {
+        int accountNumber = account.getAccountNumber();
+        long balance;
+        TransactionLog.Checkpoint checkpoint;
+        HotBalance hot = lockConsistent(account);
+        try {
+            balance = account.getBalanceMinor();
+            checkpoint = transactions.checkpointAfter(accountNumber, timestamp, transactions.size());
+        } finally {
+            unlockConsistent(account, hot);
+        }
 
-        System.out.println("Счета клиента - " + customer.getFullName() + " :");
-        for (int accountId : customerAccounts.get(customerId)) {
-            Account account = accounts.get(accountId);
+        balance -= checkpoint.getChangeAfter();
+        TransactionLog.AccountHistory history = transactions.history(accountNumber, checkpoint.getBefore());
+        for (int index = history.next(); index >= 0; index = history.next()) {
+            if (transactions.getTimestamp(index) <= timestamp) {
+                return balance;
+            }
+            if (transactions.getStatus(index).isSuccess()) {
+                balance -= balanceDelta(index, accountNumber);
+            }
+        }
+        requireFullHistory(accountNumber, balance);
+        return balance;
+    }
 
-            StringBuilder sb = new StringBuilder();
-            sb.append("| НОМЕР СЧЕТА: ").append(String.format("%-5s", account.getAccountNumber()))
-              .append(" | БАЛАНС: ").append(String.format("%-10.2f", account.getBalance()))
-              .append(" | ТИП: ").append(String.format("%-9s", account.getType().toString())).append(" |");
+    // Баланс до самой старой записи счета - ноль: счет открывается с нулевым балансом, а каждое изменение баланса
+    // записывается транзакцией. Иначе часть истории счета не сохранена, и прошлые балансы по ней не восстановить
+    private static boolean isFullHistory(long balanceBeforeOldest) {
+        return balanceBeforeOldest == 0;
+    }
 
-            System.out.println(sb.toString());
-        }       
+    private static void requireFullHistory(int accountNumber, long balanceBeforeOldest) {
+        if (!isFullHistory(balanceBeforeOldest)) {
+            throw new IllegalStateException("История счета " + accountNumber + " сохранена не целиком: баланс"
+                    + " до самой старой записи " + Money.toBigDecimal(balanceBeforeOldest) + " вместо 0.00");
+        }
     }
 
-    public void printTransactions() {
-        System.out.println("Совершено " + transactions.size() + " транзакций:");
-        for (Transaction transaction : transactions) {
-            System.out.println(transaction.toString());
+    private long balanceDelta(int index, int accountNumber) {
+        long amount = transactions.getAmount(index);
+        long delta = 0;
+        if (transactions.getFrom(index) == accountNumber) {
+            delta -= amount;
         }
+        if (transactions.getTo(index) == accountNumber) {
+            delta += amount;
+        }
+        return delta;
     }
 
     public void printReport() {
-        AccountsStats accountsStats = getAccountsStat();
-        TransactionsStats transactionsStats = getTransactionsStats();
+        printReport(false);
+    }
 
-        System.out.println("----------------ОТЧЕТ----------------");
-        System.out.println("Дебетовые счета: " + accountsStats.debitCount);
-        System.out.println("Кредитные счета: " + accountsStats.creditCount);
-        System.out.println("Баланс дебетовых счетов: " + accountsStats.debitTotal);
-        System.out.println("Баланс кредитных счетов: " + accountsStats.creditTotal);
-        System.out.println();
-        System.out.println("Количество успешных транзакций: " + transactionsStats.successCount);
-        System.out.println("Количество сбоев транзакций: " + transactionsStats.failCount);
-        System.out.println("-------------------------------------");
+    // Цифры отчета ведутся на пути записи, поэтому отчет не сканирует счета и транзакции, а берет итоги
+    // согласованного среза: перевод в нем учтен у обоих счетов или ни у одного. С reconcile = true
+    // дополнительно выполняется полный пересчет того же среза для сверки с итогами
+    public void printReport(boolean reconcile) {
+        try (BankView view = openView()) {
+            BankStats stats = view.getStats();
+            System.out.println("----------------ОТЧЕТ----------------");
+            System.out.println("Дебетовые счета: " + stats.getDebitCount());
+            System.out.println("Кредитные счета: " + stats.getCreditCount());
+            System.out.println("Баланс дебетовых счетов: " + Money.toBigDecimal(stats.getDebitTotal()));
+            System.out.println("Баланс кредитных счетов: " + Money.toBigDecimal(stats.getCreditTotal()));
+            System.out.println();
+            System.out.println("Количество успешных транзакций: " + stats.getSuccessCount());
+            System.out.println("Количество сбоев транзакций: " + stats.getFailCount());
+            System.out.println("-------------------------------------");
+
+            if (reconcile) {
+                printReconciliation(view);
+            }
+        }
     }
 
-    private void logTransaction(Transaction transaction, boolean success, String message) {
-        transaction.setSuccess(success);
-        transaction.setMessage(message);
-        transactions.add(transaction);
+    // Согласованный срез балансов, итогов и журнала транзакций. Операции на время чтения не блокируются,
+    // другие читатели ждут закрытия представления; закрывать его нужно в том же потоке
+    public BankView openView() {
+        return epochs.open(this, stats, transactions);
     }
 
-    private class AccountsStats {
-        public int debitCount;
-        public int creditCount;
-        public BigDecimal debitTotal;
-        public BigDecimal creditTotal;
+    private void printReconciliation(BankView view) {
+        BankStats stats = view.getStats();
+        AccountsStats accountsStats = getAccountsStat(view);
+        TransactionsStats transactionsStats = getTransactionsStats(view);
+        List<String> mismatches = new ArrayList<>();
+        if (accountsStats.debitCount != stats.getDebitCount()) {
+            mismatches.add("дебетовые счета: " + accountsStats.debitCount);
+        }
+        if (accountsStats.creditCount != stats.getCreditCount()) {
+            mismatches.add("кредитные счета: " + accountsStats.creditCount);
+        }
+        if (accountsStats.debitTotal != stats.getDebitTotal()) {
+            mismatches.add("баланс дебетовых счетов: " + Money.toBigDecimal(accountsStats.debitTotal));
+        }
+        if (accountsStats.creditTotal != stats.getCreditTotal()) {
+            mismatches.add("баланс кредитных счетов: " + Money.toBigDecimal(accountsStats.creditTotal));
+        }
+        if (transactionsStats.successCount != stats.getSuccessCount()) {
+            mismatches.add("успешные транзакции: " + transactionsStats.successCount);
+        }
+        if (transactionsStats.failCount != stats.getFailCount()) {
+            mismatches.add("сбои транзакций: " + transactionsStats.failCount);
+        }
+
+        if (mismatches.isEmpty()) {
+            System.out.println("Сверка с полным пересчетом: расхождений нет");
+        } else {
+            System.out.println("Сверка с полным пересчетом: найдены расхождения (по пересчету)");
+            for (String mismatch : mismatches) {
+                System.out.println("  " + mismatch);
+            }
+        }
+    }
+
+    // Копейки суммы или -1, если сумма некорректна
+    static long minorAmountOrInvalid(BigDecimal amount) {
+        return isValidAmount(amount) ? Money.toMinor(amount) : -1;
+    }
+
+    static boolean isValidAmount(BigDecimal amount) {
+        return amount.signum() > 0 && Money.isRepresentable(amount);
+    }
+
+    // Сумма, которая попадает в журнал для отклоненной операции: непредставимая сумма записывается как 0
+    static long recordedAmount(BigDecimal amount) {
+        return Money.isRepresentable(amount) ? Money.toMinor(amount) : 0;
+    }
+
+    private static int accountNumberOrNone(Integer accountNumber) {
+        return (accountNumber != null) ? accountNumber : TransactionLog.NO_ACCOUNT;
+    }
+
+    // Снимок не останавливает операции: счета читаются по одному под их блокировками, а операции,
+    // попавшие в снимок частично, при восстановлении отсеиваются по LSN последнего изменения счета.
+    // Транзакции до снимка в нем не хранятся - только их число по типу и статусу для отчета. Сама история
+    // остается в сегментах журнала: удаляются только сегменты, все транзакции которых уже в архиве
+    public void snapshot() throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("Снимок доступен только для банка с журналом");
+        }
+        synchronized (snapshotLock) {
+            long startLsn;
+            int transactionLimit;
+            registryLock.writeLock().lock();
+            try {
+                synchronized (transactions) {
+                    startLsn = journal.roll();
+                    transactionLimit = transactions.size();
+                }
+            } finally {
+                registryLock.writeLock().unlock();
+            }
+            long[] outcomes = countOutcomes(transactionLimit);
+
+            // Граница номеров счетов читается до клиентов: владелец регистрируется раньше, чем счету выдается номер,
+            // поэтому владельцы всех счетов ниже границы уже есть среди прочитанных клиентов
+            int accountLimit = nextAccountNumber.get();
+            List<Customer> snapshotCustomers = new ArrayList<>(customers);
+
+            try (Snapshot.Writer writer = new Snapshot.Writer(dataDir, startLsn,
+                    nextCustomerId.get(), accountLimit, transactionLimit, outcomes)) {
+                for (Customer customer : snapshotCustomers) {
+                    writer.customer(customer.getId(), customer.getFullName());
+                }
+                // Счета пишутся по одному, без копии всех балансов в памяти
+                for (int accountNumber = 0; accountNumber < accountLimit; accountNumber++) {
+                    Account account = accounts.find(accountNumber);
+                    if (account == null) {
+                        continue;
+                    }
+                    long balance;
+                    long appliedLsn;
+                    HotBalance hot = lockConsistent(account);
+                    try {
+                        balance = account.getBalanceMinor();
+                        appliedLsn = account.getLastAppliedLsn();
+                    } finally {
+                        unlockConsistent(account, hot);
+                    }
+                    long creditLimit = (account instanceof CreditAccount)
+                            ? ((CreditAccount) account).getCreditLimitMinor()
+                            : 0;
+                    writer.account(accountNumber, account.getType(), account.getOwner().getId(),
+                            creditLimit, balance, appliedLsn);
+                }
+                journal.sync();
+                writer.commit();
+            }
+            snapshotTransactions = transactionLimit;
+            snapshotOutcomes = outcomes;
+            journal.deleteSegmentsBefore(startLsn, archive.size());
+            Snapshot.deleteBefore(dataDir, startLsn);
+            lastSnapshotLsn = startLsn;
+        }
+    }
+
+    // Исходы транзакций с индексами меньше limit: к итогам прошлого снимка добавляются записи после него
+    private long[] countOutcomes(int limit) {
+        long[] outcomes = snapshotOutcomes.clone();
+        for (int i = snapshotTransactions; i < limit; i++) {
+            outcomes[BankStats.outcome(transactions.getType(i), transactions.getStatus(i))]++;
+        }
+        return outcomes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        if (archiver != null) {
+            archiver.interrupt();
+            try {
+                archiver.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (snapshotter != null) {
+            snapshotter.interrupt();
+            try {
+                snapshotter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            snapshot();
+        }
+        long lastLsn = journal.lastLsn();
+        journal.close();
+        if (accountTable != null) {
+            accountTable.closeClean(lastLsn, stats);
+        }
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    private void snapshotLoop() {
+        while (true) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (journal.lastLsn() - lastSnapshotLsn >= snapshotEveryRecords) {
+                try {
+                    snapshot();
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace(System.err);
+                }
+            }
+        }
+    }
+
+    // Прерывание во время записи сегмента закрывает его канал, поэтому ошибка после interrupt() не печатается.
+    // В архив попадают только транзакции, уже синхронизированные в журнале: иначе после сбоя архив опередил бы журнал
+    private void archiveLoop(int keepRecords, Duration keepAge) {
+        while (true) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long olderThan = (keepAge != null) ? Transaction.nowEpochNanos() - keepAge.toNanos() : Long.MIN_VALUE;
+            try {
+                int count = transactions.size();
+                journal.sync();
+                transactions.archiveOld(count, keepRecords, olderThan);
+            } catch (IOException | RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                e.printStackTrace(System.err);
+            }
+        }
+    }
+
+    private int resolveSlot(Integer accountNumber, Map<Integer, Integer> slots, List<Account> slotAccounts) {
+        if (accountNumber == null) {
+            return -1;
+        }
+        Integer slot = slots.get(accountNumber);
+        if (slot == null) {
+            Account account = findAccount(accountNumber);
+            slot = (account != null) ? slotAccounts.size() : -1;
+            if (account != null) {
+                slotAccounts.add(account);
+            }
+            slots.put(accountNumber, slot);
+        }
+        return slot;
+    }
+
+    // Возвращает счет из хранилища: для таблицы счетов это представление ее ячейки, а не переданный объект
+    private Account openAccount(Account account, long creditLimit) {
+        long lsn;
+        registryLock.readLock().lock();
+        long epoch = epochs.enter();
+        try {
+            lsn = (journal != null)
+                    ? journal.appendAccount(account.getAccountNumber(), account.getType(),
+                                            account.getOwner().getId(), creditLimit)
+                    : 0;
+            epochs.accountOpened(epoch, account.getAccountNumber());
+            registerAccount(epoch, account);
+        } finally {
+            epochs.exit(epoch);
+            registryLock.readLock().unlock();
+        }
+        awaitDurable(lsn);
+        return accounts.find(account.getAccountNumber());
+    }
+
+    private void registerCustomer(Customer customer) {
+        customers.put(customer.getId(), customer);
+        customerIndex.add(customer.getId(), customer.getFullName());
+    }
+
+    private void registerAccount(long epoch, Account account) {
+        stats.accountOpened(epoch, account);
+        accounts.add(account);
+    }
+
+    // Успешные операции журналируются под блокировкой счета, чтобы порядок записей совпадал с порядком изменений
+    private long logTransaction(long epoch, TransactionType type, long amount, int from, int to,
+                                TransactionStatus status) {
+        long started = metrics.startSample();
+        long lsn;
+        int index;
+        synchronized (transactions) {
+            index = transactions.append(type, amount, from, to, Transaction.nowEpochNanos(), status);
+            lsn = journalTransaction(index);
+        }
+        transactionLogged(epoch, index, type, status);
+        metrics.logCompleted(started);
+        return lsn;
+    }
+
+    // Отказ до блокировки счетов: вся операция - запись в журналы
+    private long logRejected(TransactionType type, long amount, int from, int to, TransactionStatus status) {
+        long epoch = epochs.enter();
+        try {
+            return logTransaction(epoch, type, amount, from, to, status);
+        } finally {
+            epochs.exit(epoch);
+        }
+    }
+
+    private void transactionLogged(long epoch, int index, TransactionType type, TransactionStatus status) {
+        stats.transactionLogged(epoch, type, status);
+        epochs.logged(epoch, index);
+    }
+
+    // Вызывается под монитором журнала транзакций вместе с добавлением записи в него: транзакции идут
+    // в журнал операций в том же порядке, и номер транзакции в журнале операций равен ее индексу.
+    // По этому номеру восстанавливается история, а снимок отделяет транзакции до себя
+    private long journalTransaction(int index) {
+        if (journal == null) {
+            return 0;
+        }
+        return journal.appendTransaction(transactions.getType(index), transactions.getAmount(index),
+                transactions.getFrom(index), transactions.getTo(index),
+                transactions.getTimestamp(index), transactions.getStatus(index));
+    }
+
+    // Блокировка счета и, у горячего счета, всех его полос: пока они заняты, баланс счета не меняется
+    // и все изменившие его записи уже в журналах. Возвращает полосы для unlockConsistent
+    private HotBalance lockConsistent(Account account) {
+        locks.lock(account.getAccountNumber());
+        HotBalance hot = account.getHotBalance();
+        if (hot != null) {
+            hot.lockAll();
+        }
+        return hot;
+    }
+
+    private void unlockConsistent(Account account, HotBalance hot) {
+        if (hot != null) {
+            hot.unlockAll();
+        }
+        locks.unlock(account.getAccountNumber());
+    }
+
+    void awaitDurable(long lsn) {
+        if (journal != null) {
+            journal.awaitDurable(lsn);
+        }
+    }
+
+    // Итог операции: статус транзакции и LSN ее записи в журнале (0 без журнала)
+    static final class Outcome {
+        TransactionStatus status;
+        long lsn;
+
+        void set(TransactionStatus status, long lsn) {
+            this.status = status;
+            this.lsn = lsn;
+        }
+    }
+
+    private class Recovery implements JournalListener, Snapshot.Loader {
+        // Записи журнала с меньшим LSN учтены в снимке, из них нужны только транзакции для истории
+        long snapshotLsn;
+
+        @Override
+        public void onHeader(int nextCustomer, int nextAccount, int transactionCount, long[] outcomes) {
+            nextCustomerId.set(nextCustomer);
+            nextAccountNumber.set(nextAccount);
+            snapshotTransactions = transactionCount;
+            snapshotOutcomes = outcomes;
+            stats.restoreOutcomes(outcomes);
+        }
+
+        @Override
+        public void onCustomer(int id, String fullName) {
+            registerCustomer(new Customer(id, fullName));
+        }
+
+        @Override
+        public boolean needsAccounts() {
+            return accountTable == null || !accountTable.isRestored();
+        }
+
+        @Override
+        public void onAccount(int accountNumber, AccountType type, int ownerId, long creditLimit,
+                              long balance, long appliedLsn) {
+            Account account = createAccount(accountNumber, type, ownerId, creditLimit);
+            account.adjustBalance(balance);
+            account.setAppliedLsn(appliedLsn);
+            registerAccount(RECOVERY_EPOCH, account);
+        }
 
-        public AccountsStats() {
-            this.debitCount = 0;
-            this.creditCount = 0;
-            this.debitTotal = BigDecimal.ZERO.setScale(Common.MONEY_UNIT_PRECISION);
-            this.creditTotal = BigDecimal.ZERO.setScale(Common.MONEY_UNIT_PRECISION);
+        @Override
+        public void onCustomer(long lsn, int id, String fullName) {
+            if (!customers.containsId(id)) {
+                registerCustomer(new Customer(id, fullName));
+            }
+            nextCustomerId.accumulateAndGet(id + 1, Math::max);
+        }
+
+        @Override
+        public void onAccount(long lsn, int accountNumber, AccountType type, int ownerId, long creditLimit) {
+            if (!accounts.contains(accountNumber)) {
+                registerAccount(RECOVERY_EPOCH, createAccount(accountNumber, type, ownerId, creditLimit));
+            }
+            nextAccountNumber.accumulateAndGet(accountNumber + 1, Math::max);
+        }
+
+        // Успешные операции применяются как готовые изменения баланса, без повторной проверки лимитов.
+        // Изменения, уже учтенные в снимке, пропускаются
+        @Override
+        public void onTransaction(long lsn, long transaction, TransactionType type, long amount, int from, int to,
+                                  long timestamp, TransactionStatus status) {
+            if (lsn >= snapshotLsn) {
+                if (status.isSuccess() && from != to) {
+                    if (from >= 0) {
+                        applyRecovered(accounts.find(from), -amount, lsn);
+                    }
+                    if (to >= 0) {
+                        applyRecovered(accounts.find(to), amount, lsn);
+                    }
+                }
+                stats.transactionLogged(RECOVERY_EPOCH, type, status);
+            }
+            if (transaction >= transactions.size()) {
+                transactions.append(type, amount, from, to, timestamp, status);
+            }
+        }
+
+        private Account createAccount(int accountNumber, AccountType type, int ownerId, long creditLimit) {
+            Customer owner = customers.get(ownerId);
+            return (type == AccountType.CREDIT)
+                    ? new CreditAccount(accountNumber, owner, creditLimit)
+                    : new DebitAccount(accountNumber, owner);
+        }
+
+        private void applyRecovered(Account account, long delta, long lsn) {
+            if (lsn > account.getAppliedLsn()) {
+                account.adjustBalance(delta);
+                stats.balanceChanged(RECOVERY_EPOCH, account, delta);
+                account.setAppliedLsn(lsn);
+            }
         }
     }
 
-    private AccountsStats getAccountsStat() {
+    private class AccountsStats {
+        public int debitCount = 0;
+        public int creditCount = 0;
+        public long debitTotal = 0;
+        public long creditTotal = 0;
+    }
+
+    private AccountsStats getAccountsStat(BankView view) {
         AccountsStats stats = new AccountsStats();
-        for (Account account : accounts.values()) {
+        for (Account account : accounts.all()) {
+            if (!view.contains(account)) {
+                continue;
+            }
             if (account instanceof DebitAccount) {
                 stats.debitCount++;
-                stats.debitTotal = stats.debitTotal.add(account.getBalance());
+                stats.debitTotal = Math.addExact(stats.debitTotal, view.getBalanceMinor(account));
             } else if (account instanceof CreditAccount) {
                 stats.creditCount++;
-                stats.creditTotal = stats.creditTotal.add(account.getBalance());
+                stats.creditTotal = Math.addExact(stats.creditTotal, view.getBalanceMinor(account));
             }
         }
         return stats;
     }
 
     private class TransactionsStats {
-        public int successCount = 0;
-        public int failCount = 0;
+        public long successCount = 0;
+        public long failCount = 0;
     }
 
-    private TransactionsStats getTransactionsStats() {
+    private TransactionsStats getTransactionsStats(BankView view) {
         TransactionsStats stats = new TransactionsStats();
-        for (Transaction transaction : transactions) {
-            if (transaction.isSuccess()) {
+        for (int i = 0, size = view.getTransactionLimit(); i < size; i++) {
+            if (!view.containsTransaction(i)) {
+                continue;
+            }
+            if (transactions.getStatus(i).isSuccess()) {
                 stats.successCount++;
             } else {
                 stats.failCount++;
@@ -4,13 +4,30 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.math.BigDecimal;
-import java.util.Collection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.management.JMException;
 
 public class BankApp {
-    private static final Bank bank = new Bank();
+    private static final int CUSTOMER_PAGE_SIZE = 20;
+
+    private static Bank bank;
     private static Scanner scanner;
 
     // Команды для powershell перед запуском приложения (для корректного отображения кириллицы):
@@ -21,14 +38,124 @@ public class BankApp {
             System.setProperty("file.encoding", "UTF-8");
             scanner = new Scanner(new InputStreamReader(System.in, "UTF-8"));
             System.setOut(new PrintStream(System.out, true, "UTF-8"));
-            
-            showMainMenu();
+            ReportWriter.setStdoutCharset(StandardCharsets.UTF_8);
+
+            // --load гоняет нагрузку во временном каталоге с теми же настройками журнала и счетов:
+            // синтетические клиенты и операции не должны попадать в данные банка из -Dbank.data
+            boolean load = args.length >= 1 && args[0].equals("--load");
+            Durability durability = Durability.valueOf(System.getProperty("bank.durability", "FSYNC"));
+            long snapshotEvery = Long.getLong("bank.snapshotEvery", Bank.DEFAULT_SNAPSHOT_EVERY);
+            AccountStorage storage = AccountStorage.valueOf(System.getProperty("bank.accounts", "HEAP"));
+            Path dataDir = load ? Files.createTempDirectory("bank-load")
+                                : Path.of(System.getProperty("bank.data", "bank-data"));
+            try (Bank persistentBank = new Bank(dataDir, durability, snapshotEvery, storage)) {
+                bank = persistentBank;
+                startArchiver();
+                registerMetrics();
+                enableHotAccounts();
+                // --script <файл> выполняет команды из файла вместо интерактивного меню,
+                // --server [порт] запускает сетевой режим до завершения процесса,
+                // --load [...] создает клиентов и счета и гоняет по ним синтетическую нагрузку
+                if (args.length == 2 && args[0].equals("--script")) {
+                    new ScriptRunner(bank).run(Path.of(args[1]));
+                } else if (args.length >= 1 && args[0].equals("--server")) {
+                    int port = (args.length > 1) ? Integer.parseInt(args[1]) : BankServer.DEFAULT_PORT;
+                    runServer(port);
+                } else if (load) {
+                    runLoad(args);
+                } else {
+                    showMainMenu();
+                }
+            } finally {
+                if (load) {
+                    deleteDirectory(dataDir);
+                }
+            }
         } catch (IOException e) {
             e.printStackTrace(System.err);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
         scanner.close();
     }
 
+    // Архивация включается, если задана хотя бы одна граница: число транзакций в памяти или их возраст
+    private static void startArchiver() throws IOException {
+        Integer keepRecords = Integer.getInteger("bank.archiveKeep");
+        String keepAge = System.getProperty("bank.archiveAge");
+        if (keepRecords != null || keepAge != null) {
+            bank.startArchiver((keepRecords != null) ? keepRecords : Integer.MAX_VALUE,
+                    (keepAge != null) ? Duration.parse(keepAge) : null);
+        }
+    }
+
+    // -Dbank.hotAccounts=<номера через запятую> - счета, пополнения которых распределяются по полосам
+    private static void enableHotAccounts() {
+        String hotAccounts = System.getProperty("bank.hotAccounts", "");
+        for (String accountNumber : hotAccounts.split(",")) {
+            if (accountNumber.isBlank()) {
+                continue;
+            }
+            try {
+                bank.enableHotAccount(Integer.parseInt(accountNumber.trim()));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                System.err.println("Горячий счет " + accountNumber.trim() + " не включен: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void registerMetrics() {
+        try {
+            bank.getMetrics().register();
+        } catch (JMException e) {
+            System.err.println("Метрики недоступны через JMX: " + e.getMessage());
+        }
+    }
+
+    // Аргументы: --load [клиентов] [потоков] [секунд] [доли пополнений/снятий/переводов] [показатель Ципфа]
+    private static void runLoad(String[] args) throws InterruptedException {
+        int customers = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int seconds = (args.length > 3) ? Integer.parseInt(args[3]) : 10;
+        int[] mix = Arrays.stream(((args.length > 4) ? args[4] : "40/30/30").split("/"))
+                .mapToInt(share -> Integer.parseInt(share.trim()))
+                .toArray();
+        double zipfExponent = (args.length > 5) ? Double.parseDouble(args[5]) : 0;
+        new LoadGenerator(bank, customers, threads, mix, zipfExponent).run(seconds);
+    }
+
+    // Каталог нагрузки удаляется после закрытия банка: сначала файлы, затем вложенные каталоги и сам каталог
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            List<Path> paths = files.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+            for (Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // Процесс завершается по сигналу; обработчик завершения ждет, пока main остановит сервер и закроет банк
+    private static void runServer(int port) throws IOException, InterruptedException {
+        CountDownLatch stopRequested = new CountDownLatch(1);
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stopRequested.countDown();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        try (BankServer server = new BankServer(bank, new InetSocketAddress(port))) {
+            server.start();
+            System.out.println("Сервер банка слушает порт " + server.getPort()
+                    + (server.usesVirtualThreads() ? " (виртуальные потоки)" : " (пул потоков)"));
+            stopRequested.await();
+        }
+        System.out.println("Сервер остановлен");
+    }
+
     public static void showMainMenu() {
         boolean exit = false;
 
@@ -44,7 +171,11 @@ public class BankApp {
             System.out.println("7. Показать счета клиента");
             System.out.println("8. Показать транзакции");
             System.out.println("9. Отчет банка");
-            System.out.println("10. Выход");
+            System.out.println("10. Метрики");
+            System.out.println("11. Закрыть операционный день");
+            System.out.println("12. Выписки клиентов за месяц");
+            System.out.println("13. Баланс счета на момент времени");
+            System.out.println("14. Выход");
             System.out.println("=================================");
             System.out.println();
 
@@ -82,11 +213,23 @@ public class BankApp {
                     showBankReport();
                     break;
                 case 10:
+                    showMetrics();
+                    break;
+                case 11:
+                    closeDay();
+                    break;
+                case 12:
+                    writeStatements();
+                    break;
+                case 13:
+                    showBalanceAsOf();
+                    break;
+                case 14:
                     exit = true;
                     System.out.println("Приложение закрыто");
                     break;
                 default:
-                    System.out.println("Неверный ввод. Введите число от 1 до 10");
+                    System.out.println("Неверный ввод. Введите число от 1 до 14");
             }
         }
     }
@@ -284,58 +427,174 @@ public class BankApp {
 
     private static void showBankReport() {
         System.out.println();
-        bank.printReport();
+        bank.printReport(Boolean.getBoolean("bank.reconcile"));
+    }
+
+    private static void showMetrics() {
+        BankMetrics metrics = bank.getMetrics();
+        System.out.println("\nМетрики операций за " + metrics.getUptimeSeconds() + " с");
+        System.out.println("Задержки в мкс: для операций - до долговечной записи, для журнала - запись одной транзакции");
+        System.out.printf("%-12s %12s %10s %12s %10s %10s %10s %10s%n",
+                "ОПЕРАЦИЯ", "ВСЕГО", "ОШИБОК", "ОПЕРАЦИЙ/С", "P50", "P99", "P99.9", "МАКС");
+        OperationMetrics[] operations = {metrics.getDeposit(), metrics.getWithdraw(),
+                                         metrics.getTransfer(), metrics.getLogTransaction()};
+        for (OperationMetrics operation : operations) {
+            System.out.printf("%-12s %12d %10d %12.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    operation.getName(), operation.getCount(), operation.getFailed(), operation.getThroughput(),
+                    operation.getLatencyP50() / 1e3, operation.getLatencyP99() / 1e3,
+                    operation.getLatencyP999() / 1e3, operation.getLatencyMax() / 1e3);
+        }
+        for (int i = 0; i < operations.length - 1; i++) {
+            for (Map.Entry<String, Long> failure : operations[i].getFailures().entrySet()) {
+                System.out.println(operations[i].getName() + ": " + failure.getKey() + " - " + failure.getValue());
+            }
+        }
+    }
+
+    // Годовые ставки в процентах и комиссия за день овердрафта задаются свойствами bank.debitRate,
+    // bank.overdraftRate и bank.overdraftFee
+    private static void closeDay() {
+        EndOfDayRates rates;
+        try {
+            rates = new EndOfDayRates(new BigDecimal(System.getProperty("bank.debitRate", "3")),
+                    new BigDecimal(System.getProperty("bank.overdraftRate", "24")),
+                    new BigDecimal(System.getProperty("bank.overdraftFee", "0.00")));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка: " + e.getMessage());
+            return;
+        }
+        long started = System.nanoTime();
+        EndOfDayResult result = bank.closeDay(rates);
+        System.out.printf("Операционный день закрыт за %.1f с, обработано счетов: %d%n",
+                (System.nanoTime() - started) / 1e9, result.getAccounts());
+        System.out.println("| ПРОЦЕНТЫ (" + rates.getDebitPercent() + "% годовых): " + result.getInterestCount()
+                + " на сумму " + result.getInterestTotal() + " |");
+        System.out.println("| ПРОЦЕНТЫ ЗА ОВЕРДРАФТ (" + rates.getOverdraftPercent() + "% годовых): "
+                + result.getOverdraftInterestCount() + " на сумму " + result.getOverdraftInterestTotal() + " |");
+        System.out.println("| КОМИССИЯ ЗА ОВЕРДРАФТ (" + rates.getOverdraftFee() + "): " + result.getFeeCount()
+                + " на сумму " + result.getFeeTotal() + " |");
     }
 
+    // Выписки пишутся в каталог из свойства bank.statements, по файлу на клиента
+    private static void writeStatements() {
+        System.out.print("Введите месяц (ГГГГ-ММ): ");
+        YearMonth month;
+        try {
+            month = YearMonth.parse(scanner.nextLine().trim());
+        } catch (DateTimeParseException e) {
+            System.out.println("\nОшибка: месяц нужно ввести в формате ГГГГ-ММ");
+            return;
+        }
+        Path dir = Path.of(System.getProperty("bank.statements", "statements"));
+        long started = System.nanoTime();
+        try {
+            int written = bank.writeStatements(dir, month.atDay(1).atStartOfDay(),
+                    month.plusMonths(1).atDay(1).atStartOfDay());
+            System.out.printf("Выписок за %s: %d, каталог %s, %.1f с%n",
+                    month, written, dir.toAbsolutePath(), (System.nanoTime() - started) / 1e9);
+        } catch (IOException e) {
+            System.out.println("\nОшибка: " + e.getMessage());
+        }
+    }
+
+    private static void showBalanceAsOf() {
+        int accountNumber = selectAccountNumber();
+        if (accountNumber == -1) return;
+
+        System.out.print("\nВведите дату и время (ГГГГ-ММ-ДД ЧЧ:ММ[:СС]): ");
+        LocalDateTime time;
+        try {
+            time = LocalDateTime.parse(scanner.nextLine().trim().replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            System.out.println("\nОшибка: дату и время нужно ввести в формате ГГГГ-ММ-ДД ЧЧ:ММ[:СС]");
+            return;
+        }
+        BigDecimal balance;
+        try {
+            balance = bank.balanceAsOf(accountNumber, time);
+        } catch (IllegalStateException e) {
+            System.out.println("\nОшибка: " + e.getMessage());
+            return;
+        }
+        if (balance == null) {
+            System.out.println("\nСчет с номером " + accountNumber + " не найден");
+            return;
+        }
+        System.out.println("\nБаланс счета " + accountNumber + " на " + time + ": " + balance);
+    }
+
+    // Клиент выбирается по ID или по части ФИО; найденные клиенты выводятся страницами
     private static Customer selectCustomer() {
         if (bank.getCustomers().isEmpty()) {
             System.out.println("В системе нет клиентов!");
             return null;
         }
 
-        System.out.println("Список клиентов:");
-        for (Customer customer : bank.getCustomers()) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("| ID: ").append(String.format("%-5s", customer.getId()))
-              .append(" | ФИО: ").append(String.format("%-25s", customer.getFullName())).append(" |");
-            System.out.println(sb.toString());
+        System.out.print("\nВведите ID клиента или часть ФИО (Enter - все клиенты): ");
+        String query = scanner.nextLine().trim();
+        String pageToken = null;
+        while (!isCustomerId(query)) {
+            CustomerPage page = bank.findCustomers(query, pageToken, CUSTOMER_PAGE_SIZE);
+            if (page.getCustomers().isEmpty()) {
+                System.out.println("\nКлиенты по запросу \"" + query + "\" не найдены!");
+                return null;
+            }
+            try (ReportWriter out = ReportWriter.stdout()) {
+                out.println("Найденные клиенты:");
+                RowRenderer row = new RowRenderer();
+                for (Customer customer : page.getCustomers()) {
+                    out.println(row.clear().customer(customer));
+                }
+            }
+
+            System.out.print(page.hasNextPage()
+                    ? "\nВведите ID клиента, новый запрос или Enter для следующей страницы: "
+                    : "\nВведите ID клиента или новый запрос: ");
+            String answer = scanner.nextLine().trim();
+            if (answer.isEmpty()) {
+                if (!page.hasNextPage()) {
+                    return null;
+                }
+                pageToken = page.getNextPageToken();
+            } else {
+                query = answer;
+                pageToken = null;
+            }
         }
 
-        System.out.print("\nВведите ID клиента: ");
-        try {
-            int customerId = scanner.nextInt();
-            scanner.nextLine();
+        int customerId = Integer.parseInt(query);
+        Customer customer = bank.findCustomer(customerId);
+        if (customer == null) {
+            System.out.println("\nКлиент с ID: " + customerId + " не найден!");
+        }
+        return customer;
+    }
 
-            Customer customer = bank.findCustomer(customerId);
-            if (customer == null) {
-                System.out.println("\nКлиент с ID: " + customerId + " не найден!");
-                return null;
+    private static boolean isCustomerId(String input) {
+        if (input.isEmpty() || input.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            if (!Character.isDigit(input.charAt(i))) {
+                return false;
             }
-            return customer;
-        } catch (InputMismatchException e) {
-            System.out.println("\nОшибка: введите корректный ID!");
-            scanner.nextLine();
-            return null;
         }
+        return true;
     }
 
     private static int selectAccountNumber() {
-        Collection<Account> accounts = bank.getAccounts();
-        if (accounts.isEmpty()) {
+        if (bank.getAccounts().isEmpty()) {
             System.out.println("В банковской системе нет открытых счетов!");
             return -1;
         }
 
-        System.out.println("Список счетов:");
-        for (Account account : accounts) {
-            Customer owner = account.getOwner();
-
-            StringBuilder sb = new StringBuilder();
-            sb.append("| НОМЕР СЧЕТА: ").append(String.format("%-5s", account.getAccountNumber()))
-              .append(" | ВЛАДЕЛЕЦ: ").append(String.format("%-25s", owner.getFullName()))
-              .append(" | БАЛАНС: ").append(String.format("%-10.2f", account.getBalance()))
-              .append(" | ТИП: ").append(String.format("%-9s", account.getType().toString())).append(" |");
-            System.out.println(sb.toString());
+        // Балансы списка - один срез, даже если переводы идут параллельно (сетевой или пакетный режим)
+        try (BankView view = bank.openView(); ReportWriter out = ReportWriter.stdout()) {
+            out.println("Список счетов:");
+            RowRenderer row = new RowRenderer();
+            for (Account account : view.getAccounts()) {
+                out.println(row.clear().accountWithOwner(account, view.getBalanceMinor(account)));
+            }
         }
 
         System.out.print("\nВведите номер счета: ");
@@ -357,7 +616,11 @@ public class BankApp {
     }
 
     private static Optional<BigDecimal> readMoneyAmount() {
-        String input = scanner.nextLine().trim();
+        return parseMoneyAmount(scanner.nextLine());
+    }
+
+    static Optional<BigDecimal> parseMoneyAmount(String input) {
+        input = input.trim();
         if (input.isEmpty()) {
             return Optional.empty();
         }
@@ -366,8 +629,7 @@ public class BankApp {
         try {
             BigDecimal amount = new BigDecimal(input);
             
-            int scale = amount.scale();
-            if (scale > Common.MONEY_UNIT_PRECISION) {
+            if (!Money.isRepresentable(amount)) {
                 return Optional.empty();
             }
 
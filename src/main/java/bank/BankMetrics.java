@@ -0,0 +1,133 @@
+package bank;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Исходы операций берутся из счетчиков BankStats за вычетом восстановленных из журнала при запуске,
+// поэтому учитываются все операции, включая пакетные. Гистограммы задержек с фиксированным
+// размером заполняются вызовами deposit/withdraw/transfer (от входа до долговечности записи) и logTransaction.
+// Когда вызов ждет записи журнала, замеряется каждый вызов. Иначе операция занимает сотни наносекунд,
+// а System.nanoTime на виртуальной машине - десятки, поэтому замеряется в среднем каждый SAMPLED_RATE-й
+// вызов; на перцентили случайная выборка не влияет
+final class BankMetrics implements BankMetricsMXBean {
+    static final String OBJECT_NAME = "bank:type=Bank,name=Metrics";
+    static final int EVERY_CALL = 1;
+    static final int SAMPLED_RATE = 64;
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final long startedNanos = System.nanoTime();
+    private final BankStats stats;
+    private final int sampleRate;
+    private final long[] recovered = new long[TYPES.length * STATUSES.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[TYPES.length];
+    private final LatencyHistogram logLatency = new LatencyHistogram();
+
+    BankMetrics(BankStats stats, int sampleRate) {
+        this.stats = stats;
+        this.sampleRate = sampleRate;
+        for (TransactionType type : TYPES) {
+            for (TransactionStatus status : STATUSES) {
+                recovered[type.ordinal() * STATUSES.length + status.ordinal()] = stats.getOutcomeCount(type, status);
+            }
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    long startSample() {
+        if (sampleRate == EVERY_CALL || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            return System.nanoTime();
+        }
+        return NOT_SAMPLED;
+    }
+
+    void operationCompleted(TransactionType type, long startedNanos) {
+        if (startedNanos != NOT_SAMPLED) {
+            latencies[type.ordinal()].record(System.nanoTime() - startedNanos);
+        }
+    }
+
+    void logCompleted(long startedNanos) {
+        if (startedNanos != NOT_SAMPLED) {
+            logLatency.record(System.nanoTime() - startedNanos);
+        }
+    }
+
+    ObjectName register() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    @Override
+    public OperationMetrics getDeposit() {
+        return operation(TransactionType.DEPOSIT);
+    }
+
+    @Override
+    public OperationMetrics getWithdraw() {
+        return operation(TransactionType.WITHDRAW);
+    }
+
+    @Override
+    public OperationMetrics getTransfer() {
+        return operation(TransactionType.TRANSFER);
+    }
+
+    @Override
+    public OperationMetrics getLogTransaction() {
+        long count = 0;
+        long failed = 0;
+        Map<String, Long> failures = new LinkedHashMap<>();
+        for (TransactionType type : TYPES) {
+            for (TransactionStatus status : STATUSES) {
+                long outcomeCount = outcome(type, status);
+                count += outcomeCount;
+                if (!status.isSuccess() && outcomeCount > 0) {
+                    failed += outcomeCount;
+                    failures.merge(status.toString(), outcomeCount, Long::sum);
+                }
+            }
+        }
+        return new OperationMetrics("ЖУРНАЛ", count, failed, throughput(count), logLatency, failures);
+    }
+
+    @Override
+    public long getUptimeSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedNanos);
+    }
+
+    private OperationMetrics operation(TransactionType type) {
+        long count = 0;
+        long failed = 0;
+        Map<String, Long> failures = new LinkedHashMap<>();
+        for (TransactionStatus status : STATUSES) {
+            long outcomeCount = outcome(type, status);
+            count += outcomeCount;
+            if (!status.isSuccess() && outcomeCount > 0) {
+                failed += outcomeCount;
+                failures.put(status.toString(), outcomeCount);
+            }
+        }
+        return new OperationMetrics(type.toString(), count, failed, throughput(count),
+                latencies[type.ordinal()], failures);
+    }
+
+    private long outcome(TransactionType type, TransactionStatus status) {
+        return stats.getOutcomeCount(type, status) - recovered[type.ordinal() * STATUSES.length + status.ordinal()];
+    }
+
+    private double throughput(long count) {
+        long elapsed = System.nanoTime() - startedNanos;
+        return (elapsed > 0) ? count * 1e9 / elapsed : 0;
+    }
+}
@@ -0,0 +1,14 @@
+package bank;
+
+// Метрики операций банка в JMX: bank:type=Bank,name=Metrics
+public interface BankMetricsMXBean {
+    OperationMetrics getDeposit();
+
+    OperationMetrics getWithdraw();
+
+    OperationMetrics getTransfer();
+
+    OperationMetrics getLogTransaction();
+
+    long getUptimeSeconds();
+}
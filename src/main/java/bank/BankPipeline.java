@@ -0,0 +1,252 @@
+package bank;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Конвейер приема операций поверх Bank. Вызывающий поток получает номер в кольцевом буфере
+// (порядок операций) и заполняет заранее созданную ячейку. Дальше ячейки по порядку проходят стадии,
+// каждая в своем потоке и пачками:
+// - исполнение: правила Account, журнал транзакций и запись в журнал на диске;
+// - долговечность: одно ожидание группового коммита на всю пачку;
+// - уведомление: вызывающий поток ждет, пока стадия долговечности пройдет его номер, забирает результат
+//   и освобождает ячейку для следующего круга.
+// Запись в журнал идет после исполнения, потому что журнал хранит итоги операций, а не команды.
+// В установившемся режиме конвейер ничего не создает на операцию
+public class BankPipeline implements Closeable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH = 1024;
+    // Значение claimed после close: номера больше не выдаются
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    public enum WaitStrategy {
+        // Постоянно занимает ядро; подходит, когда у каждой стадии свое ядро
+        BUSY_SPIN,
+        // После короткого ожидания на месте уступает процессор другим потокам
+        YIELDING,
+        // Затем засыпает на 50 мкс: меньше нагрузка на простое, больше задержка
+        SLEEPING;
+
+        void idle(int attempt) {
+            if (this == BUSY_SPIN || attempt < 100) {
+                Thread.onSpinWait();
+            } else if (this == YIELDING || attempt < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(50_000);
+            }
+        }
+    }
+
+    private final Bank bank;
+    private final Slot[] ring;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final Thread executor;
+    private final Thread durability;
+    // executedLsn записывается до executedSequence: LSN последней записи исполненных операций
+    private volatile long executedLsn;
+    private volatile long executedSequence = -1;
+    private volatile long durableSequence = -1;
+    // Последний выданный номер; записывается в close до running = false
+    private volatile long lastClaimed = -1;
+    private volatile RuntimeException failure;
+    private volatile boolean running = true;
+
+    public BankPipeline(Bank bank) {
+        this(bank, DEFAULT_CAPACITY, WaitStrategy.YIELDING);
+    }
+
+    public BankPipeline(Bank bank, int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Размер буфера должен быть степенью двойки: " + capacity);
+        }
+        this.bank = bank;
+        this.ring = new Slot[capacity];
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Slot(i);
+        }
+        this.executor = new Thread(this::executeLoop, "bank-pipeline-executor");
+        this.durability = new Thread(this::durabilityLoop, "bank-pipeline-durability");
+        executor.setDaemon(true);
+        durability.setDaemon(true);
+        executor.start();
+        durability.start();
+    }
+
+    public boolean deposit(int accountNumber, BigDecimal amount) {
+        return awaitResult(publishDeposit(accountNumber, amount));
+    }
+
+    public boolean withdraw(int accountNumber, BigDecimal amount) {
+        return awaitResult(publishWithdraw(accountNumber, amount));
+    }
+
+    public boolean transfer(int from, int to, BigDecimal amount) {
+        return awaitResult(publishTransfer(from, to, amount));
+    }
+
+    // publish* возвращают номер операции. Каждый номер нужно передать в awaitResult ровно один раз:
+    // до этого ячейка занята, и после круга по буферу публикация будет ждать ее освобождения
+    public long publishDeposit(int accountNumber, BigDecimal amount) {
+        return publish(TransactionType.DEPOSIT, TransactionLog.NO_ACCOUNT, accountNumber, amount);
+    }
+
+    public long publishWithdraw(int accountNumber, BigDecimal amount) {
+        return publish(TransactionType.WITHDRAW, accountNumber, TransactionLog.NO_ACCOUNT, amount);
+    }
+
+    public long publishTransfer(int from, int to, BigDecimal amount) {
+        return publish(TransactionType.TRANSFER, from, to, amount);
+    }
+
+    public boolean awaitResult(long sequence) {
+        Slot slot = ring[(int) sequence & mask];
+        int attempt = 0;
+        while (durableSequence < sequence) {
+            if (failure != null) {
+                throw failure;
+            }
+            waitStrategy.idle(attempt++);
+        }
+        RuntimeException slotFailure = slot.failure;
+        boolean success = slotFailure == null && slot.outcome.status.isSuccess();
+        slot.failure = null;
+        slot.freeFor = sequence + ring.length;
+        if (slotFailure != null) {
+            throw slotFailure;
+        }
+        return success;
+    }
+
+    // Дожидается уже опубликованных операций и останавливает стадии. Номера закрываются одной атомарной
+    // операцией, поэтому каждая публикация либо получает номер, который исполнитель дождется, либо отказ
+    @Override
+    public void close() {
+        long last = claimed.getAndSet(CLOSED);
+        if (last != CLOSED) {
+            lastClaimed = last;
+            running = false;
+        }
+        try {
+            executor.join();
+            durability.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long publish(TransactionType type, int from, int to, BigDecimal amount) {
+        long minorAmount = Bank.minorAmountOrInvalid(amount);
+        long recordedAmount = Bank.recordedAmount(amount);
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence == CLOSED) {
+                throw new IllegalStateException("Конвейер остановлен");
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        sequence++;
+        Slot slot = ring[(int) sequence & mask];
+        int attempt = 0;
+        // После сбоя долговечности ячейки не освобождаются: awaitResult бросает исключение
+        while (slot.freeFor != sequence) {
+            if (failure != null) {
+                throw failure;
+            }
+            waitStrategy.idle(attempt++);
+        }
+        slot.type = type;
+        slot.from = from;
+        slot.to = to;
+        slot.amount = minorAmount;
+        slot.recordedAmount = recordedAmount;
+        slot.published = sequence;
+        return sequence;
+    }
+
+    private void executeLoop() {
+        long next = 0;
+        long lsn = 0;
+        int attempt = 0;
+        while (true) {
+            long last = next - 1;
+            while (last - next < MAX_BATCH - 1 && ring[(int) (last + 1) & mask].published == last + 1) {
+                Slot slot = ring[(int) ++last & mask];
+                execute(slot);
+                if (slot.failure == null) {
+                    lsn = Math.max(lsn, slot.outcome.lsn);
+                }
+            }
+            if (last >= next) {
+                executedLsn = lsn;
+                executedSequence = last;
+                next = last + 1;
+                attempt = 0;
+            } else if ((!running && lastClaimed < next) || failure != null) {
+                // После сбоя долговечности номер может остаться неопубликованным, и ждать его нельзя
+                return;
+            } else {
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+
+    private void execute(Slot slot) {
+        try {
+            switch (slot.type) {
+                case DEPOSIT -> bank.deposit(slot.to, slot.amount, slot.recordedAmount, slot.outcome);
+                case WITHDRAW -> bank.withdraw(slot.from, slot.amount, slot.recordedAmount, slot.outcome);
+                case TRANSFER -> bank.transfer(slot.from, slot.to, slot.amount, slot.recordedAmount, slot.outcome);
+            }
+        } catch (RuntimeException e) {
+            slot.failure = e;
+        }
+    }
+
+    // Одно ожидание на все операции, исполненные с прошлого раза
+    private void durabilityLoop() {
+        long durable = -1;
+        int attempt = 0;
+        while (true) {
+            long executed = executedSequence;
+            if (executed > durable) {
+                try {
+                    bank.awaitDurable(executedLsn);
+                } catch (RuntimeException e) {
+                    failure = e;
+                    return;
+                }
+                durable = executed;
+                durableSequence = durable;
+                attempt = 0;
+            } else if (!running && !executor.isAlive() && executedSequence == durable) {
+                return;
+            } else {
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+
+    private static final class Slot {
+        // Номер операции, которой ячейка достанется следующей
+        volatile long freeFor;
+        // Номер опубликованной в ячейке операции
+        volatile long published = -1;
+        TransactionType type;
+        int from;
+        int to;
+        long amount;
+        long recordedAmount;
+        RuntimeException failure;
+        final Bank.Outcome outcome = new Bank.Outcome();
+
+        Slot(long freeFor) {
+            this.freeFor = freeFor;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package bank;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Сетевой режим: HTTP/JSON поверх встроенного в JDK HttpServer. Соединения обслуживает его селектор,
+// а каждый запрос выполняется в отдельном виртуальном потоке (Java 21+). На более старой JVM
+// запросы выполняет пул из bank.http.threads обычных потоков.
+//
+//   POST /customers          {"fullName": "..."}
+//   POST /accounts           {"customerId": 0, "type": "DEBIT" | "CREDIT", "creditLimit": 500.00}
+//   GET  /accounts           ?offset=N&limit=M - страница счетов с номерами от N, ?customerId=N - счета клиента
+//   GET  /accounts/{номер}
+//   POST /deposit            {"account": 0, "amount": 10.50}
+//   POST /withdraw           {"account": 0, "amount": 10.50}
+//   POST /transfer           {"from": 0, "to": 1, "amount": 10.50}
+//   GET  /report
+class BankServer implements Closeable {
+    static final int DEFAULT_PORT = 8080;
+
+    private static final int BACKLOG = Integer.getInteger("bank.http.backlog", 16_384);
+    private static final int FALLBACK_THREADS = Integer.getInteger("bank.http.threads", 256);
+    private static final int UNPROCESSABLE = 422;
+    private static final int DEFAULT_ACCOUNT_PAGE = 1_000;
+    private static final int MAX_ACCOUNT_PAGE = 10_000;
+
+    private final Bank bank;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class RequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    BankServer(Bank bank, InetSocketAddress address) throws IOException {
+        // HttpServer пишет заголовки и тело ответа отдельно, и без TCP_NODELAY каждый ответ
+        // ждет отложенного подтверждения клиента (~40 мс). Настройка читается при первом создании сервера
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.bank = bank;
+        this.server = HttpServer.create(address, BACKLOG);
+        ExecutorService virtualExecutor = virtualThreadExecutor();
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : platformThreadExecutor();
+        server.setExecutor(executor);
+        route("/customers", this::customers);
+        route("/accounts", this::accounts);
+        route("/deposit", exchange -> operation(exchange, TransactionType.DEPOSIT));
+        route("/withdraw", exchange -> operation(exchange, TransactionType.WITHDRAW));
+        route("/transfer", exchange -> operation(exchange, TransactionType.TRANSFER));
+        route("/report", this::report);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // Виртуальные потоки появились в Java 21, а сборка идет под Java 17, поэтому фабрика ищется рефлексией.
+    // null, если JVM их не поддерживает
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService platformThreadExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(FALLBACK_THREADS, task -> {
+            Thread thread = new Thread(task, "bank-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void route(String path, Handler handler) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                try {
+                    handler.handle(exchange);
+                } catch (RequestException e) {
+                    respond(exchange, e.status, error(e.getMessage()));
+                } catch (IllegalArgumentException e) {
+                    respond(exchange, 400, error(e.getMessage()));
+                } catch (RuntimeException e) {
+                    respond(exchange, 500, error("Внутренняя ошибка: " + e));
+                }
+            }
+        });
+    }
+
+    private void customers(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        requirePath(exchange, "/customers");
+        Map<String, String> body = readBody(exchange);
+        String fullName = body.get("fullName");
+        if (fullName == null || fullName.trim().isEmpty()) {
+            throw new RequestException(400, "ФИО не может быть пустым");
+        }
+        respond(exchange, 201, customerJson(bank.createCustomer(fullName)));
+    }
+
+    private void accounts(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.equals("/accounts")) {
+            requireMethod(exchange, "GET");
+            int accountNumber = parseNumber(path.substring("/accounts/".length()), "номер счета");
+            Account account = bank.findAccount(accountNumber);
+            if (account == null) {
+                throw new RequestException(404, "Счет с номером " + accountNumber + " не найден");
+            }
+            respond(exchange, 200, accountJson(account));
+            return;
+        }
+
+        if (exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 200, accountList(parseQuery(exchange.getRequestURI().getRawQuery())));
+            return;
+        }
+
+        requireMethod(exchange, "POST");
+        Map<String, String> body = readBody(exchange);
+        int customerId = parseNumber(required(body, "customerId"), "customerId");
+        Customer customer = bank.findCustomer(customerId);
+        if (customer == null) {
+            throw new RequestException(404, "Клиент с ID: " + customerId + " не найден");
+        }
+        String type = required(body, "type");
+        Account account;
+        if (type.equalsIgnoreCase("DEBIT")) {
+            account = bank.openDebitAccount(customer);
+        } else if (type.equalsIgnoreCase("CREDIT")) {
+            account = bank.openCreditAccount(customer, parseAmount(required(body, "creditLimit"), "creditLimit"));
+        } else {
+            throw new RequestException(400, "Неизвестный тип счета: " + type);
+        }
+        respond(exchange, 201, accountJson(account));
+    }
+
+    // Балансы страницы читаются из одного согласованного среза и сходятся с /report. Без customerId
+    // счета отдаются страницами по номеру: offset - номер, с которого начинается страница, nextOffset в ответе -
+    // начало следующей (нет на последней странице)
+    private String accountList(Map<String, String> query) {
+        String customerId = query.get("customerId");
+        try (BankView view = bank.openView()) {
+            List<Account> accounts;
+            int nextOffset = -1;
+            if (customerId != null) {
+                int id = parseNumber(customerId, "customerId");
+                if (bank.findCustomer(id) == null) {
+                    throw new RequestException(404, "Клиент с ID: " + id + " не найден");
+                }
+                accounts = view.getCustomerAccounts(id);
+            } else {
+                int offset = parseNumber(query.getOrDefault("offset", "0"), "offset");
+                int limit = parseNumber(query.getOrDefault("limit", String.valueOf(DEFAULT_ACCOUNT_PAGE)), "limit");
+                if (offset < 0 || limit <= 0 || limit > MAX_ACCOUNT_PAGE) {
+                    throw new RequestException(400, "offset должен быть не меньше 0, а limit - от 1 до "
+                            + MAX_ACCOUNT_PAGE);
+                }
+                accounts = view.getAccounts(offset, limit);
+                if (accounts.size() == limit) {
+                    int next = accounts.get(limit - 1).getAccountNumber() + 1;
+                    if (next < bank.getAccountNumberLimit()) {
+                        nextOffset = next;
+                    }
+                }
+            }
+            List<String> items = new ArrayList<>(accounts.size());
+            for (Account account : accounts) {
+                items.add(accountJson(account, view.getBalanceMinor(account)));
+            }
+            Json.ObjectBuilder json = Json.object().raw("accounts", Json.array(items));
+            if (nextOffset >= 0) {
+                json.field("nextOffset", nextOffset);
+            }
+            return json.toString();
+        }
+    }
+
+    // Статус берется из самой операции, а не из журнала, поэтому его нельзя спутать с результатом чужой
+    private void operation(HttpExchange exchange, TransactionType type) throws IOException {
+        requireMethod(exchange, "POST");
+        Map<String, String> body = readBody(exchange);
+        BigDecimal amount = parseAmount(required(body, "amount"), "amount");
+        BatchOperation operation;
+        if (type == TransactionType.TRANSFER) {
+            int from = parseNumber(required(body, "from"), "from");
+            int to = parseNumber(required(body, "to"), "to");
+            if (from == to) {
+                throw new RequestException(400, "Нельзя перевести на тот же счёт");
+            }
+            operation = BatchOperation.transfer(from, to, amount);
+        } else {
+            int accountNumber = parseNumber(required(body, "account"), "account");
+            operation = (type == TransactionType.DEPOSIT)
+                    ? BatchOperation.deposit(accountNumber, amount)
+                    : BatchOperation.withdraw(accountNumber, amount);
+        }
+
+        TransactionStatus status = bank.apply(operation);
+        String json = Json.object()
+                .field("success", status.isSuccess())
+                .field("status", status.name())
+                .field("message", status.toString())
+                .toString();
+        respond(exchange, status.isSuccess() ? 200 : UNPROCESSABLE, json);
+    }
+
+    private void report(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        requirePath(exchange, "/report");
+        String json;
+        try (BankView view = bank.openView()) {
+            BankStats stats = view.getStats();
+            json = Json.object()
+                    .field("debitAccounts", stats.getDebitCount())
+                    .field("creditAccounts", stats.getCreditCount())
+                    .raw("debitTotal", Money.toBigDecimal(stats.getDebitTotal()).toPlainString())
+                    .raw("creditTotal", Money.toBigDecimal(stats.getCreditTotal()).toPlainString())
+                    .field("successfulTransactions", stats.getSuccessCount())
+                    .field("failedTransactions", stats.getFailCount())
+                    .toString();
+        }
+        respond(exchange, 200, json);
+    }
+
+    private static String customerJson(Customer customer) {
+        return Json.object().field("id", customer.getId()).field("fullName", customer.getFullName()).toString();
+    }
+
+    private static String accountJson(Account account) {
+        return accountJson(account, account.getBalanceMinor());
+    }
+
+    private static String accountJson(Account account, long balanceMinor) {
+        Json.ObjectBuilder json = Json.object()
+                .field("accountNumber", account.getAccountNumber())
+                .field("ownerId", account.getOwner().getId())
+                .field("type", account.getType().name())
+                .raw("balance", Money.toBigDecimal(balanceMinor).toPlainString());
+        if (account instanceof CreditAccount) {
+            json.raw("creditLimit", ((CreditAccount) account).getCreditLimit().toPlainString());
+        }
+        return json.toString();
+    }
+
+    private static String error(String message) {
+        return Json.object().field("error", message).toString();
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            throw new RequestException(405, "Метод " + exchange.getRequestMethod() + " не поддерживается");
+        }
+    }
+
+    private static void requirePath(HttpExchange exchange, String path) {
+        if (!exchange.getRequestURI().getPath().equals(path)) {
+            throw new RequestException(404, "Не найдено: " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null) {
+            throw new RequestException(400, "Не задано поле '" + name + "'");
+        }
+        return value;
+    }
+
+    // Параметры строки запроса: имя=значение через '&'
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = (separator < 0) ? parameter : parameter.substring(0, separator);
+            String value = (separator < 0) ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int parseNumber(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Некорректное значение поля '" + name + "': " + value);
+        }
+    }
+
+    // Те же правила, что и при вводе суммы в меню
+    private static BigDecimal parseAmount(String value, String name) {
+        Optional<BigDecimal> amount = BankApp.parseMoneyAmount(value);
+        if (amount.isEmpty()) {
+            throw new RequestException(400, "Поле '" + name + "' имеет некорректное денежное представление");
+        }
+        if (amount.get().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new RequestException(400, "Поле '" + name + "' должно быть больше 0");
+        }
+        return amount.get();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package bank;
+
+import java.util.concurrent.atomic.LongAdder;
+
+class BankStats {
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final int DEBIT_COUNT = 0;
+    private static final int CREDIT_COUNT = 1;
+    private static final int DEBIT_TOTAL = 2;
+    private static final int CREDIT_TOTAL = 3;
+    // Число транзакций по типу и статусу: OUTCOMES + type.ordinal() * STATUSES.length + status.ordinal()
+    private static final int OUTCOMES = 4;
+    static final int OUTCOME_COUNTERS = TransactionType.values().length * STATUSES.length;
+    static final int COUNTERS = OUTCOMES + OUTCOME_COUNTERS;
+
+    // Счетчики разделены по четности эпохи операции (ReadEpochs): пока читатель ждет завершения эпохи,
+    // ее половину больше никто не меняет, и ее можно сложить отдельно от операций следующей эпохи
+    private final LongAdder[][] slots = new LongAdder[2][COUNTERS];
+
+    BankStats() {
+        for (LongAdder[] slot : slots) {
+            for (int i = 0; i < COUNTERS; i++) {
+                slot[i] = new LongAdder();
+            }
+        }
+    }
+
+    // Неизменяемые итоги согласованного представления банка
+    BankStats(long[] counters) {
+        this();
+        for (int i = 0; i < COUNTERS; i++) {
+            slots[0][i].add(counters[i]);
+        }
+    }
+
+    void accountOpened(long epoch, Account account) {
+        LongAdder[] slot = slot(epoch);
+        if (account.getType() == AccountType.DEBIT) {
+            slot[DEBIT_COUNT].increment();
+        } else {
+            slot[CREDIT_COUNT].increment();
+        }
+        balanceChanged(epoch, account, account.getBalanceMinor());
+    }
+
+    // Итоги по счетам, сохраненные вместе с таблицей счетов
+    void restore(long debitCount, long creditCount, long debitTotal, long creditTotal) {
+        slots[0][DEBIT_COUNT].add(debitCount);
+        slots[0][CREDIT_COUNT].add(creditCount);
+        slots[0][DEBIT_TOTAL].add(debitTotal);
+        slots[0][CREDIT_TOTAL].add(creditTotal);
+    }
+
+    // Число транзакций по типу и статусу, сохраненное в снимке: outcomes[outcome(type, status)]
+    void restoreOutcomes(long[] outcomes) {
+        for (int i = 0; i < OUTCOME_COUNTERS; i++) {
+            slots[0][OUTCOMES + i].add(outcomes[i]);
+        }
+    }
+
+    static int outcome(TransactionType type, TransactionStatus status) {
+        return type.ordinal() * STATUSES.length + status.ordinal();
+    }
+
+    void balanceChanged(long epoch, Account account, long delta) {
+        slot(epoch)[(account.getType() == AccountType.DEBIT) ? DEBIT_TOTAL : CREDIT_TOTAL].add(delta);
+    }
+
+    void transactionLogged(long epoch, TransactionType type, TransactionStatus status) {
+        slot(epoch)[OUTCOMES + outcome(type, status)].increment();
+    }
+
+    // Счетчики операций эпох одной четности; вызывается, когда таких операций в работе нет
+    long[] sumSlot(int parity) {
+        long[] counters = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++) {
+            counters[i] = slots[parity][i].sum();
+        }
+        return counters;
+    }
+
+    long getDebitCount() {
+        return sum(DEBIT_COUNT);
+    }
+
+    long getCreditCount() {
+        return sum(CREDIT_COUNT);
+    }
+
+    long getDebitTotal() {
+        return sum(DEBIT_TOTAL);
+    }
+
+    long getCreditTotal() {
+        return sum(CREDIT_TOTAL);
+    }
+
+    long getOutcomeCount(TransactionType type, TransactionStatus status) {
+        return sum(OUTCOMES + outcome(type, status));
+    }
+
+    long getSuccessCount() {
+        long count = 0;
+        for (TransactionType type : TransactionType.values()) {
+            count += getOutcomeCount(type, TransactionStatus.OK);
+        }
+        return count;
+    }
+
+    long getFailCount() {
+        long count = 0;
+        for (int i = OUTCOMES; i < COUNTERS; i++) {
+            if (!STATUSES[(i - OUTCOMES) % STATUSES.length].isSuccess()) {
+                count += sum(i);
+            }
+        }
+        return count;
+    }
+
+    private LongAdder[] slot(long epoch) {
+        return slots[(int) epoch & 1];
+    }
+
+    private long sum(int counter) {
+        return slots[0][counter].sum() + slots[1][counter].sum();
+    }
+}
@@ -0,0 +1,146 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Согласованный срез банка (Bank.openView): балансы счетов, итоги отчета и журнал транзакций на момент открытия.
+// Операции во время чтения не ждут: перед первым изменением счета они сохраняют здесь его прежний баланс.
+// Пока представление открыто, следующее ждет его закрытия; закрывается тем же потоком, что открыл
+public final class BankView implements AutoCloseable {
+    final long epoch;
+    private final Bank bank;
+    private final ReadEpochs epochs;
+    // Балансы на момент среза у счетов и полос, измененных позже
+    private final Map<Integer, Long> bases = new ConcurrentHashMap<>();
+    private final Map<HotBalance.Stripe, Long> stripes = new ConcurrentHashMap<>();
+    private final Set<Integer> openedLater = ConcurrentHashMap.newKeySet();
+    // Записи журнала операций до среза, добавленные после logStart
+    private final IntList loggedLate = new IntList();
+    private BankStats stats;
+    private int logStart;
+    private int logLimit;
+    private int[] lateIndices;
+
+    BankView(Bank bank, ReadEpochs epochs, long epoch) {
+        this.bank = bank;
+        this.epochs = epochs;
+        this.epoch = epoch;
+    }
+
+    void init(BankStats stats, int logStart, int logLimit) {
+        this.stats = stats;
+        this.logStart = logStart;
+        this.logLimit = logLimit;
+        synchronized (loggedLate) {
+            int[] late = new int[loggedLate.size()];
+            for (int i = 0; i < late.length; i++) {
+                late[i] = loggedLate.get(i);
+            }
+            Arrays.sort(late);
+            this.lateIndices = late;
+        }
+    }
+
+    void preserve(Account account) {
+        bases.putIfAbsent(account.getAccountNumber(), account.getBaseMinor());
+    }
+
+    void preserve(HotBalance.Stripe stripe) {
+        stripes.putIfAbsent(stripe, stripe.getBalance());
+    }
+
+    void opened(int accountNumber) {
+        openedLater.add(accountNumber);
+    }
+
+    void logged(int index) {
+        synchronized (loggedLate) {
+            loggedLate.add(index);
+        }
+    }
+
+    // Итоги отчета на момент среза
+    BankStats getStats() {
+        return stats;
+    }
+
+    public boolean contains(Account account) {
+        return !openedLater.contains(account.getAccountNumber());
+    }
+
+    // Счета, открытые до среза, по возрастанию номеров
+    public List<Account> getAccounts() {
+        List<Account> result = new ArrayList<>();
+        for (Account account : bank.getAccounts()) {
+            if (contains(account)) {
+                result.add(account);
+            }
+        }
+        return result;
+    }
+
+    // Не больше limit счетов, открытых до среза, с номерами от fromNumber по возрастанию. Номера идут подряд,
+    // поэтому страница читает только свои счета, а не весь список
+    public List<Account> getAccounts(int fromNumber, int limit) {
+        List<Account> result = new ArrayList<>(Math.min(limit, 1024));
+        int numberLimit = bank.getAccountNumberLimit();
+        for (int number = Math.max(fromNumber, 0); number < numberLimit && result.size() < limit; number++) {
+            Account account = bank.findAccount(number);
+            if (account != null && contains(account)) {
+                result.add(account);
+            }
+        }
+        return result;
+    }
+
+    public List<Account> getCustomerAccounts(int customerId) {
+        List<Account> result = new ArrayList<>();
+        for (Account account : bank.getCustomerAccounts(customerId)) {
+            if (contains(account)) {
+                result.add(account);
+            }
+        }
+        return result;
+    }
+
+    public BigDecimal getBalance(Account account) {
+        return Money.toBigDecimal(getBalanceMinor(account));
+    }
+
+    // Текущее значение читается раньше сохраненного: операция сохраняет прежний баланс до того, как его изменить
+    public long getBalanceMinor(Account account) {
+        long current = account.getBaseMinor();
+        Long preserved = bases.get(account.getAccountNumber());
+        long balance = (preserved != null) ? preserved : current;
+        HotBalance hot = account.getHotBalance();
+        if (hot != null) {
+            balance += hot.sum(this);
+        }
+        return balance;
+    }
+
+    long stripeBalance(HotBalance.Stripe stripe) {
+        long current = stripe.getBalance();
+        Long preserved = stripes.get(stripe);
+        return (preserved != null) ? preserved : current;
+    }
+
+    // Записи журнала транзакций на момент среза имеют индексы меньше getTransactionLimit() и проходят containsTransaction
+    int getTransactionLimit() {
+        return logLimit;
+    }
+
+    boolean containsTransaction(int index) {
+        return index < logStart || (index < logLimit && Arrays.binarySearch(lateIndices, index) >= 0);
+    }
+
+    @Override
+    public void close() {
+        epochs.close(this);
+    }
+}
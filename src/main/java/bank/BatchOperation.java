@@ -0,0 +1,46 @@
+package bank;
+
+import java.math.BigDecimal;
+
+public final class BatchOperation {
+    private final TransactionType type;
+    private final Integer fromAccountNumber;
+    private final Integer toAccountNumber;
+    private final BigDecimal amount;
+
+    private BatchOperation(TransactionType type, Integer fromAccountNumber, Integer toAccountNumber,
+                           BigDecimal amount) {
+        this.type = type;
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+    }
+
+    public static BatchOperation deposit(int accountNumber, BigDecimal amount) {
+        return new BatchOperation(TransactionType.DEPOSIT, null, accountNumber, amount);
+    }
+
+    public static BatchOperation withdraw(int accountNumber, BigDecimal amount) {
+        return new BatchOperation(TransactionType.WITHDRAW, accountNumber, null, amount);
+    }
+
+    public static BatchOperation transfer(int from, int to, BigDecimal amount) {
+        return new BatchOperation(TransactionType.TRANSFER, from, to, amount);
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public Integer getFromAccountNumber() {
+        return fromAccountNumber;
+    }
+
+    public Integer getToAccountNumber() {
+        return toAccountNumber;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+}
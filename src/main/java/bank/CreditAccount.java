@@ -3,24 +3,29 @@ package bank;
 import java.math.BigDecimal;
 
 public class CreditAccount extends Account {
-    private final BigDecimal creditLimit;
+    private final long creditLimit;
 
-    public CreditAccount(Customer owner, BigDecimal creditLimit) {
-        super(owner, AccountType.CREDIT);
+    public CreditAccount(int accountNumber, Customer owner, long creditLimit) {
+        super(accountNumber, owner, AccountType.CREDIT);
+        this.creditLimit = creditLimit;
+    }
+
+    CreditAccount(int accountNumber, Customer owner, long creditLimit, AccountTable table) {
+        super(accountNumber, owner, AccountType.CREDIT, table);
         this.creditLimit = creditLimit;
     }
 
     public BigDecimal getCreditLimit() {
+        return Money.toBigDecimal(creditLimit);
+    }
+
+    public long getCreditLimitMinor() {
         return creditLimit;
     }
 
     @Override
-    public boolean withdraw(BigDecimal amount) {
-        if ((amount.compareTo(BigDecimal.ZERO) > 0) &&
-            (balance.subtract(amount).compareTo(creditLimit.negate()) >= 0)) {
-            balance = balance.subtract(amount);
-            return true;
-        }
-        return false;
+    boolean canWithdraw(long balance, long amount) {
+        // balance - amount >= -creditLimit без риска переполнения
+        return amount > 0 && amount - creditLimit <= balance;
     }
-}
\ No newline at end of file
+}
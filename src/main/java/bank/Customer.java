@@ -1,13 +1,11 @@
 package bank;
 
 public class Customer {
-    private static int nextId = 0;
-
     private final int id;
     private final String fullName;
 
-    public Customer(String fullName) {
-        this.id = nextId++;
+    public Customer(int id, String fullName) {
+        this.id = id;
         this.fullName = fullName;
     }
 
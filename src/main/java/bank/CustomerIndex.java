@@ -0,0 +1,198 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+// Поиск клиентов по ФИО без учета регистра (ё не отличается от е). Индекс - триграммы имени, окруженного
+// пробелами, и для каждого слова триграмма "  x" с его первой буквой; у каждой триграммы список номеров
+// клиентов по возрастанию. Запрос от трех символов ищет подстроку: кандидаты - пересечение списков его
+// триграмм, затем имя проверяется целиком. Запрос из одного-двух символов ищет начало слова.
+// Страница продолжается с номера из токена, поэтому следующая страница не обходит предыдущие
+final class CustomerIndex {
+    private final Map<Long, Postings> grams = new HashMap<>();
+    private final IntFunction<Customer> customers;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int idLimit;
+
+    CustomerIndex(IntFunction<Customer> customers) {
+        this.customers = customers;
+    }
+
+    void add(int customerId, String fullName) {
+        String name = " " + normalize(fullName) + " ";
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i + 3 <= name.length(); i++) {
+                postings(gram(name.charAt(i), name.charAt(i + 1), name.charAt(i + 2))).add(customerId);
+                if (name.charAt(i) == ' ' && name.charAt(i + 1) != ' ') {
+                    postings(gram(' ', ' ', name.charAt(i + 1))).add(customerId);
+                }
+            }
+            idLimit = Math.max(idLimit, customerId + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Пустой запрос возвращает всех клиентов по возрастанию номера
+    CustomerPage find(String query, String pageToken, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть больше 0: " + limit);
+        }
+        String normalized = normalize(query);
+        int fromId = (pageToken != null) ? parsePageToken(pageToken) : 0;
+        // На один больше страницы: найденный сверх нее клиент становится токеном следующей
+        List<Customer> found = new ArrayList<>(Math.min(limit + 1, 1024));
+        lock.readLock().lock();
+        try {
+            if (normalized.isEmpty()) {
+                for (int id = fromId; id < idLimit && found.size() <= limit; id++) {
+                    Customer customer = customers.apply(id);
+                    if (customer != null) {
+                        found.add(customer);
+                    }
+                }
+            } else {
+                collect(normalized, fromId, limit + 1, found);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        String nextPageToken = null;
+        if (found.size() > limit) {
+            nextPageToken = Integer.toString(found.remove(limit).getId());
+        }
+        return new CustomerPage(found, nextPageToken);
+    }
+
+    private void collect(String query, int fromId, int wanted, List<Customer> found) {
+        boolean substring = query.length() >= 3;
+        Postings[] lists = substring ? new Postings[query.length() - 2] : new Postings[1];
+        if (substring) {
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = grams.get(gram(query.charAt(i), query.charAt(i + 1), query.charAt(i + 2)));
+            }
+        } else {
+            lists[0] = grams.get((query.length() == 1) ? gram(' ', ' ', query.charAt(0))
+                                                       : gram(' ', query.charAt(0), query.charAt(1)));
+        }
+        for (Postings list : lists) {
+            if (list == null) {
+                return;
+            }
+        }
+        // Обход по самому короткому списку, остальные проверяются курсорами
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+        int[] cursors = new int[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            cursors[i] = lists[i].lowerBound(fromId, 0);
+        }
+        Postings driver = lists[0];
+        String pattern = substring ? query : " " + query;
+        for (int position = cursors[0]; position < driver.size && found.size() < wanted; position++) {
+            int id = driver.ids[position];
+            boolean inAll = true;
+            for (int i = 1; i < lists.length && inAll; i++) {
+                Postings list = lists[i];
+                int cursor = list.lowerBound(id, cursors[i]);
+                cursors[i] = cursor;
+                if (cursor == list.size) {
+                    return;
+                }
+                inAll = list.ids[cursor] == id;
+            }
+            if (inAll) {
+                Customer customer = customers.apply(id);
+                if (customer != null && (" " + normalize(customer.getFullName())).contains(pattern)) {
+                    found.add(customer);
+                }
+            }
+        }
+    }
+
+    private Postings postings(long gram) {
+        return grams.computeIfAbsent(gram, key -> new Postings());
+    }
+
+    // Пробелы схлопываются, чтобы запрос и имя делились на триграммы одинаково
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                c = Character.toLowerCase(c);
+                normalized.append((c == 'ё') ? 'е' : c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static long gram(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+
+    private static int parsePageToken(String pageToken) {
+        int id;
+        try {
+            id = Integer.parseInt(pageToken);
+        } catch (NumberFormatException e) {
+            id = -1;
+        }
+        if (id < 0) {
+            throw new IllegalArgumentException("Некорректный токен страницы: " + pageToken);
+        }
+        return id;
+    }
+
+    // Номера клиентов по возрастанию без повторов. Номера выдаются по порядку, но регистрируются
+    // параллельно, поэтому изредка номер вставляется перед последним
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            int position = lowerBound(id, 0);
+            if (position < size && ids[position] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        // Первая позиция не раньше from, где номер не меньше id
+        int lowerBound(int id, int from) {
+            if (size == 0 || ids[size - 1] < id) {
+                return size;
+            }
+            int low = from;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ids[middle] < id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
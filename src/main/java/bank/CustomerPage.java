@@ -0,0 +1,26 @@
+package bank;
+
+import java.util.List;
+
+public final class CustomerPage {
+    private final List<Customer> customers;
+    private final String nextPageToken;
+
+    CustomerPage(List<Customer> customers, String nextPageToken) {
+        this.customers = customers;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+
+    // null, если страница последняя
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
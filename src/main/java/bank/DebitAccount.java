@@ -1,19 +1,16 @@
 package bank;
 
-import java.math.BigDecimal;
-
 public class DebitAccount extends Account {
-    public DebitAccount(Customer owner) {
-        super(owner, AccountType.DEBIT);
+    public DebitAccount(int accountNumber, Customer owner) {
+        super(accountNumber, owner, AccountType.DEBIT);
+    }
+
+    DebitAccount(int accountNumber, Customer owner, AccountTable table) {
+        super(accountNumber, owner, AccountType.DEBIT, table);
     }
 
     @Override
-    public boolean withdraw(BigDecimal amount) {
-        if ((amount.compareTo(BigDecimal.ZERO) > 0) &&
-            (balance.compareTo(amount) >= 0)) {
-            balance = balance.subtract(amount);
-            return true;
-        }
-        return false;
+    boolean canWithdraw(long balance, long amount) {
+        return amount > 0 && balance >= amount;
     }
-}
\ No newline at end of file
+}
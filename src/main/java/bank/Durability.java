@@ -0,0 +1,10 @@
+package bank;
+
+public enum Durability {
+    // Вызов не ждет журнала, записи сбрасываются на диск фоновым потоком
+    ASYNC,
+    // Вызов ждет записи своей пачки в файл (переживает падение процесса, но не ОС)
+    WRITTEN,
+    // Вызов ждет fsync своей пачки (групповой коммит)
+    FSYNC
+}
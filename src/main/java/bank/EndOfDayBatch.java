@@ -0,0 +1,38 @@
+package bank;
+
+import java.util.concurrent.RecursiveTask;
+
+// Закрытие дня для диапазона номеров счетов [from, to): диапазон делится пополам, пока в нем больше
+// LEAF_ACCOUNTS номеров, а итоги частей складываются при возврате, без общих счетчиков
+final class EndOfDayBatch extends RecursiveTask<EndOfDayResult> {
+    private static final long serialVersionUID = 1L;
+    private static final int LEAF_ACCOUNTS = 4096;
+
+    private final Bank bank;
+    private final EndOfDayRates rates;
+    private final int from;
+    private final int to;
+
+    EndOfDayBatch(Bank bank, EndOfDayRates rates, int from, int to) {
+        this.bank = bank;
+        this.rates = rates;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected EndOfDayResult compute() {
+        if (to - from <= LEAF_ACCOUNTS) {
+            EndOfDayResult result = new EndOfDayResult();
+            for (int accountNumber = from; accountNumber < to; accountNumber++) {
+                bank.closeDay(accountNumber, rates, result);
+            }
+            return result;
+        }
+        int middle = (from + to) >>> 1;
+        EndOfDayBatch left = new EndOfDayBatch(bank, rates, from, middle);
+        left.fork();
+        EndOfDayResult right = new EndOfDayBatch(bank, rates, middle, to).compute();
+        return right.merge(left.join());
+    }
+}
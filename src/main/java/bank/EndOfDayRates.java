@@ -0,0 +1,93 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Ставки закрытия дня: годовой процент на положительный остаток дебетового счета, годовой процент
+// на отрицательный остаток кредитного счета и комиссия за каждый день с отрицательным остатком.
+// Проценты начисляются за один день (годовая ставка / 365) и округляются до копейки по-банковски
+public final class EndOfDayRates {
+    static final int DAYS_IN_YEAR = 365;
+    private static final int MAX_PERCENT_SCALE = 6;
+    private static final BigDecimal MAX_PERCENT = BigDecimal.valueOf(1000);
+
+    private final BigDecimal debitPercent;
+    private final BigDecimal overdraftPercent;
+    private final BigDecimal overdraftFee;
+    private final DailyRate debitRate;
+    private final DailyRate overdraftRate;
+    private final long overdraftFeeMinor;
+
+    public EndOfDayRates(BigDecimal debitPercent, BigDecimal overdraftPercent, BigDecimal overdraftFee) {
+        if (overdraftFee.signum() < 0 || !Money.isRepresentable(overdraftFee)) {
+            throw new IllegalArgumentException("Некорректная комиссия за овердрафт: " + overdraftFee);
+        }
+        this.debitPercent = debitPercent;
+        this.overdraftPercent = overdraftPercent;
+        this.overdraftFee = overdraftFee;
+        this.debitRate = new DailyRate(debitPercent);
+        this.overdraftRate = new DailyRate(overdraftPercent);
+        this.overdraftFeeMinor = Money.toMinor(overdraftFee);
+    }
+
+    public BigDecimal getDebitPercent() {
+        return debitPercent;
+    }
+
+    public BigDecimal getOverdraftPercent() {
+        return overdraftPercent;
+    }
+
+    public BigDecimal getOverdraftFee() {
+        return overdraftFee;
+    }
+
+    // Проценты за день на положительный остаток дебетового счета, в копейках
+    long debitInterest(long balance) {
+        return debitRate.accrue(balance);
+    }
+
+    // Проценты за день на отрицательный остаток balance кредитного счета, в копейках
+    long overdraftInterest(long balance) {
+        return overdraftRate.accrue(-balance);
+    }
+
+    long overdraftFee() {
+        return overdraftFeeMinor;
+    }
+
+    // Дневная ставка как дробь numerator / denominator: начисление считается в long без BigDecimal,
+    // кроме сумм, на которых произведение переполняет long
+    private static final class DailyRate {
+        private final long numerator;
+        private final long denominator;
+
+        DailyRate(BigDecimal percent) {
+            if (percent.signum() < 0 || percent.compareTo(MAX_PERCENT) > 0) {
+                throw new IllegalArgumentException("Ставка должна быть от 0 до " + MAX_PERCENT + "%: " + percent);
+            }
+            BigDecimal exact = percent.stripTrailingZeros();
+            if (exact.scale() > MAX_PERCENT_SCALE) {
+                throw new IllegalArgumentException("Ставка задана точнее " + MAX_PERCENT_SCALE
+                        + " знаков после запятой: " + percent);
+            }
+            int scale = Math.max(exact.scale(), 0);
+            this.numerator = exact.setScale(scale).unscaledValue().longValueExact();
+            this.denominator = BigDecimal.TEN.pow(scale).longValueExact() * 100 * DAYS_IN_YEAR;
+        }
+
+        long accrue(long amount) {
+            if (Math.multiplyHigh(amount, numerator) != 0 || amount * numerator < 0) {
+                return BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(numerator))
+                        .divide(BigDecimal.valueOf(denominator), 0, RoundingMode.HALF_EVEN).longValueExact();
+            }
+            long product = amount * numerator;
+            long quotient = product / denominator;
+            long twiceRemainder = (product % denominator) * 2;
+            if (twiceRemainder > denominator || (twiceRemainder == denominator && (quotient & 1) != 0)) {
+                quotient++;
+            }
+            return quotient;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package bank;
+
+import java.math.BigDecimal;
+
+// Итоги закрытия дня: сколько начислений каждого вида сделано и на какую сумму
+public final class EndOfDayResult {
+    private int accounts;
+    private long interestCount;
+    private long interestTotal;
+    private long overdraftInterestCount;
+    private long overdraftInterestTotal;
+    private long feeCount;
+    private long feeTotal;
+    // Наибольший LSN записанных начислений: закрытие дня ждет его долговечности один раз в конце
+    long lastLsn;
+
+    void accountProcessed() {
+        accounts++;
+    }
+
+    void charged(TransactionType type, long amount, long lsn) {
+        if (type == TransactionType.INTEREST) {
+            interestCount++;
+            interestTotal += amount;
+        } else if (type == TransactionType.OVERDRAFT_INTEREST) {
+            overdraftInterestCount++;
+            overdraftInterestTotal += amount;
+        } else {
+            feeCount++;
+            feeTotal += amount;
+        }
+        lastLsn = Math.max(lastLsn, lsn);
+    }
+
+    EndOfDayResult merge(EndOfDayResult other) {
+        accounts += other.accounts;
+        interestCount += other.interestCount;
+        interestTotal += other.interestTotal;
+        overdraftInterestCount += other.overdraftInterestCount;
+        overdraftInterestTotal += other.overdraftInterestTotal;
+        feeCount += other.feeCount;
+        feeTotal += other.feeTotal;
+        lastLsn = Math.max(lastLsn, other.lastLsn);
+        return this;
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public long getInterestCount() {
+        return interestCount;
+    }
+
+    public BigDecimal getInterestTotal() {
+        return Money.toBigDecimal(interestTotal);
+    }
+
+    public long getOverdraftInterestCount() {
+        return overdraftInterestCount;
+    }
+
+    public BigDecimal getOverdraftInterestTotal() {
+        return Money.toBigDecimal(overdraftInterestTotal);
+    }
+
+    public long getFeeCount() {
+        return feeCount;
+    }
+
+    public BigDecimal getFeeTotal() {
+        return Money.toBigDecimal(feeTotal);
+    }
+}
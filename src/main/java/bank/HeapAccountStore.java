@@ -0,0 +1,52 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+final class HeapAccountStore implements AccountStore {
+    private final Registry<Account> accounts = new Registry<>();
+    // Номера счетов каждого клиента в порядке открытия
+    private final Registry<IntList> ownerAccounts = new Registry<>();
+
+    @Override
+    public Account find(int accountNumber) {
+        return accounts.get(accountNumber);
+    }
+
+    @Override
+    public boolean contains(int accountNumber) {
+        return accounts.containsId(accountNumber);
+    }
+
+    @Override
+    public synchronized void add(Account account) {
+        accounts.put(account.getAccountNumber(), account);
+        int ownerId = account.getOwner().getId();
+        IntList owned = ownerAccounts.get(ownerId);
+        if (owned == null) {
+            owned = new IntList();
+            ownerAccounts.put(ownerId, owned);
+        }
+        owned.add(account.getAccountNumber());
+    }
+
+    @Override
+    public Collection<Account> all() {
+        return accounts;
+    }
+
+    @Override
+    public List<Account> ownedBy(int customerId) {
+        IntList accountNumbers = ownerAccounts.get(customerId);
+        if (accountNumbers == null) {
+            return List.of();
+        }
+        int size = accountNumbers.size();
+        List<Account> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(accounts.get(accountNumbers.get(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+package bank;
+
+import java.util.concurrent.locks.StampedLock;
+
+// Поступления горячего счета, разнесенные по полосам. Каждая полоса копит свою часть баланса под своей
+// блокировкой и помнит LSN своего последнего пополнения. Поток пополняет свою полосу, а занятую обходит,
+// поэтому пополнения одного счета из разных потоков почти не ждут друг друга. Сумма полос только растет:
+// списания идут в основной баланс счета под блокировкой счета
+final class HotBalance {
+    private final Stripe[] stripes;
+    private final int mask;
+
+    // Блокировка, часть баланса и LSN лежат в одном объекте; поля-заполнители разносят полосы по строкам кэша
+    static final class Stripe extends StampedLock {
+        private static final long serialVersionUID = 1L;
+
+        private volatile long balance;
+        private long appliedLsn;
+        @SuppressWarnings("unused")
+        private long p1, p2, p3, p4, p5, p6, p7;
+
+        boolean deposit(long amount) {
+            if (!Account.canDeposit(balance, amount)) {
+                return false;
+            }
+            balance += amount;
+            return true;
+        }
+
+        long getBalance() {
+            return balance;
+        }
+
+        void setAppliedLsn(long appliedLsn) {
+            this.appliedLsn = appliedLsn;
+        }
+
+        void unlock() {
+            tryUnlockWrite();
+        }
+    }
+
+    HotBalance() {
+        int size = Integer.highestOneBit(Math.max(2, Runtime.getRuntime().availableProcessors()) - 1) << 1;
+        this.stripes = new Stripe[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Сначала полоса потока, затем любая свободная; если заняты все, ждет полосу потока
+    Stripe lockStripe() {
+        int home = (Thread.currentThread().hashCode() * 0x9E3779B9) >>> 16;
+        for (int i = 0; i <= mask; i++) {
+            Stripe stripe = stripes[(home + i) & mask];
+            if (stripe.tryWriteLock() != 0) {
+                return stripe;
+            }
+        }
+        Stripe stripe = stripes[home & mask];
+        stripe.writeLock();
+        return stripe;
+    }
+
+    long sum() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            total += stripe.balance;
+        }
+        return total;
+    }
+
+    // Сумма полос на момент среза представления
+    long sum(BankView view) {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            total += view.stripeBalance(stripe);
+        }
+        return total;
+    }
+
+    // Полосы захватываются по возрастанию индекса; пока они заняты, незавершенных пополнений нет
+    void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.writeLock();
+        }
+    }
+
+    void unlockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.unlock();
+        }
+    }
+
+    // Читается под lockAll
+    long lastAppliedLsn() {
+        long lsn = 0;
+        for (Stripe stripe : stripes) {
+            lsn = Math.max(lsn, stripe.appliedLsn);
+        }
+        return lsn;
+    }
+}
@@ -0,0 +1,40 @@
+package bank;
+
+import java.util.Arrays;
+
+// Растущий список int без упаковки. Добавление синхронизировано, чтение без блокировок: размер публикуется
+// после элемента, а новый массив - до него, поэтому прочитавший size() видит в get() все элементы до него
+final class IntList {
+    private volatile int[] values;
+    private volatile int size;
+
+    IntList() {
+        this(4);
+    }
+
+    IntList(int capacity) {
+        this.values = new int[capacity];
+    }
+
+    synchronized void add(int value) {
+        int[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, Math.max(4, current.length * 2));
+            values = current;
+        }
+        current[size] = value;
+        size = size + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int position) {
+        return values[position];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,570 @@
+package bank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+class Journal implements Closeable {
+    private static final int MAGIC = 0x424E4B4A;
+    private static final int VERSION = 1;
+    // MAGIC, VERSION, LSN первой записи сегмента и номер его первой транзакции
+    private static final int FILE_HEADER_SIZE = 24;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 8 << 20;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte CUSTOMER = 1;
+    private static final byte ACCOUNT = 2;
+    private static final byte TRANSACTION = 3;
+
+    private final Path dir;
+    private final Durability durability;
+    private final ReentrantLock lock;
+    private final Condition dataAvailable;
+    private final Condition spaceAvailable;
+    private final Condition batchCompleted;
+    private final CRC32C crc;
+    private final Thread writer;
+
+    private FileChannel channel;
+    // LSN первой записи текущего сегмента, включая запрошенный, но еще не созданный
+    private long segmentFirstLsn;
+    // Номер следующей транзакции: транзакции нумеруются отдельно от LSN, начиная с 0
+    private long transactionCount;
+    private ByteBuffer active;
+    private ByteBuffer flushing;
+    private int recordStart;
+    private long appendedLsn;
+    private long completedLsn;
+    private long forcedLsn;
+    private boolean forceRequested;
+    private long pendingRollLsn;
+    private long pendingRollTransaction;
+    private int pendingRollPosition;
+    private boolean rolling;
+    private boolean closed;
+    private IOException failure;
+
+    // Записи нумеруются сквозным LSN начиная с 1; сегмент называется по LSN своей первой записи, а в заголовке
+    // хранит еще номер своей первой транзакции. Записи с LSN меньше replayFromLsn уже учтены в снимке: из них
+    // слушателю передаются только транзакции с номера historyFrom - история, которой нет в архиве транзакций.
+    // Сегменты, все транзакции которых уже в архиве, не читаются
+    Journal(Path dir, Durability durability, long replayFromLsn, long historyFrom, JournalListener listener)
+            throws IOException {
+        this.dir = dir;
+        this.durability = durability;
+        this.lock = new ReentrantLock();
+        this.dataAvailable = lock.newCondition();
+        this.spaceAvailable = lock.newCondition();
+        this.batchCompleted = lock.newCondition();
+        this.crc = new CRC32C();
+        this.active = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.flushing = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        List<Long> segments = listSegments(dir);
+        long[] firstTransactions = new long[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            firstTransactions[i] = readFirstTransaction(dir, segments.get(i));
+        }
+        long nextLsn = Math.max(replayFromLsn, 1);
+        long nextTransaction = historyFrom;
+        boolean replaying = false;
+        for (int i = 0; i < segments.size(); i++) {
+            long firstLsn = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            if (!last && segments.get(i + 1) <= replayFromLsn && firstTransactions[i + 1] <= historyFrom) {
+                continue;
+            }
+            if (replaying) {
+                if (firstLsn != nextLsn || firstTransactions[i] != nextTransaction) {
+                    throw new IOException("Журнал не содержит записей начиная с LSN " + nextLsn);
+                }
+            } else {
+                if (firstTransactions[i] > historyFrom) {
+                    throw new IOException("История транзакций начиная с номера " + historyFrom
+                            + " не сохранена ни в архиве, ни в журнале");
+                }
+                if (firstLsn > nextLsn) {
+                    throw new IOException("Журнал не содержит записей начиная с LSN " + nextLsn);
+                }
+            }
+            replaying = true;
+            try (FileChannel segment = FileChannel.open(dir.resolve(segmentName(firstLsn)),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long[] end = replay(segment, firstLsn, firstTransactions[i], replayFromLsn, historyFrom, listener);
+                if (end[0] < segment.size()) {
+                    if (!last) {
+                        throw new IOException("Поврежден сегмент журнала " + segmentName(firstLsn));
+                    }
+                    // Хвост, оборванный при сбое, отбрасывается
+                    segment.truncate(end[0]);
+                    segment.force(true);
+                }
+                nextLsn = end[1];
+                nextTransaction = end[2];
+            }
+        }
+        if (nextLsn < replayFromLsn) {
+            throw new IOException("Журнал не содержит записей, учтенных в снимке (LSN " + replayFromLsn + ")");
+        }
+        if (nextTransaction < historyFrom) {
+            throw new IOException("Архив транзакций содержит " + historyFrom + " записей, а журнал - только "
+                    + nextTransaction);
+        }
+
+        this.appendedLsn = nextLsn - 1;
+        this.completedLsn = appendedLsn;
+        this.forcedLsn = appendedLsn;
+        this.transactionCount = nextTransaction;
+        if (segments.isEmpty()) {
+            this.channel = createSegment(nextLsn, nextTransaction);
+            this.segmentFirstLsn = nextLsn;
+        } else {
+            long lastSegment = segments.get(segments.size() - 1);
+            this.channel = FileChannel.open(dir.resolve(segmentName(lastSegment)), StandardOpenOption.WRITE);
+            this.channel.position(channel.size());
+            this.segmentFirstLsn = lastSegment;
+        }
+
+        this.writer = new Thread(this::writeLoop, "bank-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    long appendCustomer(int id, String fullName) {
+        byte[] name = fullName.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            reserve(1 + 4 + 4 + name.length)
+                    .put(CUSTOMER).putInt(id).putInt(name.length).put(name);
+            return commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long appendAccount(int accountNumber, AccountType type, int ownerId, long creditLimit) {
+        lock.lock();
+        try {
+            reserve(1 + 4 + 1 + 4 + 8)
+                    .put(ACCOUNT).putInt(accountNumber).put((byte) type.ordinal()).putInt(ownerId).putLong(creditLimit);
+            return commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Номер транзакции - порядковый номер ее записи среди транзакций журнала
+    long appendTransaction(TransactionType type, long amount, int from, int to,
+                           long timestamp, TransactionStatus status) {
+        lock.lock();
+        try {
+            reserve(1 + 1 + 8 + 4 + 4 + 8 + 1)
+                    .put(TRANSACTION).put((byte) type.ordinal()).putLong(amount).putInt(from).putInt(to)
+                    .putLong(timestamp).put((byte) status.ordinal());
+            transactionCount++;
+            return commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void awaitDurable(long lsn) {
+        if (durability == Durability.ASYNC) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (completedLsn < lsn && failure == null) {
+                batchCompleted.awaitUninterruptibly();
+            }
+            if (completedLsn < lsn) {
+                throw new UncheckedIOException("Ошибка записи журнала", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long lastLsn() {
+        lock.lock();
+        try {
+            return appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Число транзакций в журнале, включая удаленные сегменты
+    long transactionCount() {
+        lock.lock();
+        try {
+            return transactionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Следующая запись начнет новый сегмент; возвращает ее LSN
+    long roll() {
+        lock.lock();
+        try {
+            // В пустом сегменте менять нечего: новый получил бы то же имя
+            if (pendingRollLsn == 0 && appendedLsn + 1 == segmentFirstLsn) {
+                return segmentFirstLsn;
+            }
+            if (pendingRollLsn == 0) {
+                pendingRollLsn = appendedLsn + 1;
+                pendingRollTransaction = transactionCount;
+                segmentFirstLsn = pendingRollLsn;
+                pendingRollPosition = active.position();
+                dataAvailable.signal();
+            }
+            return pendingRollLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ждет, пока все уже добавленные записи и запрошенная смена сегмента окажутся на диске
+    void sync() {
+        lock.lock();
+        try {
+            long target = appendedLsn;
+            while ((forcedLsn < target || pendingRollLsn != 0 || rolling) && failure == null) {
+                forceRequested = true;
+                dataAvailable.signal();
+                batchCompleted.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Ошибка записи журнала", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Удаляет сегменты, целиком лежащие до LSN lsn, если все их транзакции - с номерами меньше archivedTransactions -
+    // уже есть в архиве транзакций. Остальные сегменты до lsn остаются единственной копией истории
+    void deleteSegmentsBefore(long lsn, long archivedTransactions) throws IOException {
+        List<Long> segments = listSegments(dir);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (segments.get(i + 1) > lsn || readFirstTransaction(dir, segments.get(i + 1)) > archivedTransactions) {
+                break;
+            }
+            Files.deleteIfExists(dir.resolve(segmentName(segments.get(i))));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            dataAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure == null) {
+                channel.force(true);
+            }
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private ByteBuffer reserve(int payloadLength) {
+        int recordLength = RECORD_HEADER_SIZE + payloadLength;
+        if (recordLength > BUFFER_SIZE) {
+            throw new IllegalArgumentException("Слишком большая запись журнала: " + recordLength + " байт");
+        }
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("Журнал закрыт");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Ошибка записи журнала", failure);
+            }
+            if (active.remaining() >= recordLength) {
+                break;
+            }
+            dataAvailable.signal();
+            spaceAvailable.awaitUninterruptibly();
+        }
+        recordStart = active.position();
+        active.position(recordStart + RECORD_HEADER_SIZE);
+        return active;
+    }
+
+    private long commit() {
+        int end = active.position();
+        int payloadStart = recordStart + RECORD_HEADER_SIZE;
+
+        crc.reset();
+        active.limit(end).position(payloadStart);
+        crc.update(active);
+        active.limit(active.capacity()).position(end);
+
+        active.putInt(recordStart, end - payloadStart);
+        active.putInt(recordStart + 4, (int) crc.getValue());
+        dataAvailable.signal();
+        return ++appendedLsn;
+    }
+
+    // Всё, что накопилось, пока шла запись предыдущей пачки, уходит на диск одним write + force
+    private void writeLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                while (active.position() == 0 && pendingRollLsn == 0 && !forceRequested && !closed) {
+                    dataAvailable.awaitUninterruptibly();
+                }
+                if (active.position() == 0 && pendingRollLsn == 0 && !forceRequested) {
+                    return;
+                }
+
+                ByteBuffer batch = active;
+                active = flushing;
+                flushing = batch;
+                long batchLsn = appendedLsn;
+                long rollLsn = pendingRollLsn;
+                long rollTransaction = pendingRollTransaction;
+                int rollPosition = pendingRollPosition;
+                boolean force = forceRequested || durability != Durability.WRITTEN;
+                rolling = rollLsn != 0;
+                pendingRollLsn = 0;
+                forceRequested = false;
+                spaceAvailable.signalAll();
+
+                lock.unlock();
+                IOException error = null;
+                try {
+                    batch.flip();
+                    if (rollLsn != 0) {
+                        int end = batch.limit();
+                        batch.limit(rollPosition);
+                        write(batch);
+                        channel.force(false);
+                        channel.close();
+                        channel = createSegment(rollLsn, rollTransaction);
+                        batch.limit(end);
+                    }
+                    write(batch);
+                    if (force) {
+                        channel.force(false);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    batch.clear();
+                    lock.lock();
+                }
+
+                if (error != null) {
+                    failure = error;
+                    batchCompleted.signalAll();
+                    spaceAvailable.signalAll();
+                    return;
+                }
+                completedLsn = batchLsn;
+                rolling = false;
+                if (force) {
+                    forcedLsn = batchLsn;
+                }
+                batchCompleted.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(ByteBuffer batch) throws IOException {
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+    }
+
+    private FileChannel createSegment(long firstLsn, long firstTransaction) throws IOException {
+        FileChannel segment = FileChannel.open(dir.resolve(segmentName(firstLsn)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(firstLsn)
+                .putLong(firstTransaction).flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+        segment.force(true);
+        return segment;
+    }
+
+    // LSN последней целой записи журнала в dir или 0, если журнала нет. Читает только последний сегмент
+    // и находит его конец так же, как восстановление: оборванный хвост не считается
+    static long endLsn(Path dir) throws IOException {
+        List<Long> segments = listSegments(dir);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        long firstLsn = segments.get(segments.size() - 1);
+        long firstTransaction = readFirstTransaction(dir, firstLsn);
+        try (FileChannel segment = FileChannel.open(dir.resolve(segmentName(firstLsn)), StandardOpenOption.READ)) {
+            return replay(segment, firstLsn, firstTransaction, Long.MAX_VALUE, Long.MAX_VALUE, null)[1] - 1;
+        }
+    }
+
+    private static String segmentName(long firstLsn) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX);
+    }
+
+    private static List<Long> listSegments(Path dir) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long readFirstTransaction(Path dir, long firstLsn) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        try (FileChannel segment = FileChannel.open(dir.resolve(segmentName(firstLsn)), StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (segment.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        header.flip();
+        if (header.remaining() < FILE_HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION
+                || header.getLong() != firstLsn) {
+            throw new IOException("Сегмент " + segmentName(firstLsn) + " не является журналом банка"
+                    + " или имеет неподдерживаемую версию");
+        }
+        return header.getLong();
+    }
+
+    // Возвращает {позиция конца последней целой записи, LSN следующей записи, номер следующей транзакции}
+    private static long[] replay(FileChannel segment, long firstLsn, long firstTransaction, long replayFromLsn,
+                          long historyFrom, JournalListener listener) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        CRC32C check = new CRC32C();
+        long position = FILE_HEADER_SIZE;
+        long readPosition = FILE_HEADER_SIZE;
+        long lsn = firstLsn;
+        long transaction = firstTransaction;
+        boolean eof = false;
+
+        while (!eof) {
+            int read = segment.read(buffer, readPosition);
+            if (read < 0) {
+                eof = true;
+            } else {
+                readPosition += read;
+            }
+            buffer.flip();
+            int dataEnd = buffer.limit();
+
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int start = buffer.position();
+                int length = buffer.getInt(start);
+                int expectedCrc = buffer.getInt(start + 4);
+                if (length <= 0 || length > BUFFER_SIZE - RECORD_HEADER_SIZE) {
+                    return new long[] {position, lsn, transaction};
+                }
+                if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+                    break;
+                }
+
+                int payloadEnd = start + RECORD_HEADER_SIZE + length;
+                check.reset();
+                buffer.position(start + RECORD_HEADER_SIZE).limit(payloadEnd);
+                check.update(buffer);
+                if ((int) check.getValue() != expectedCrc) {
+                    return new long[] {position, lsn, transaction};
+                }
+
+                buffer.position(start + RECORD_HEADER_SIZE);
+                byte kind = buffer.get(start + RECORD_HEADER_SIZE);
+                if (lsn >= replayFromLsn || (kind == TRANSACTION && transaction >= historyFrom)) {
+                    dispatch(buffer, lsn, transaction, listener);
+                }
+                if (kind == TRANSACTION) {
+                    transaction++;
+                }
+                buffer.limit(dataEnd).position(payloadEnd);
+                position += RECORD_HEADER_SIZE + length;
+                lsn++;
+            }
+            buffer.compact();
+        }
+        return new long[] {position, lsn, transaction};
+    }
+
+    private static void dispatch(ByteBuffer buffer, long lsn, long transaction, JournalListener listener)
+            throws IOException {
+        byte kind = buffer.get();
+        switch (kind) {
+            case CUSTOMER: {
+                int id = buffer.getInt();
+                String fullName = readString(buffer);
+                listener.onCustomer(lsn, id, fullName);
+                break;
+            }
+            case ACCOUNT: {
+                int accountNumber = buffer.getInt();
+                AccountType type = AccountType.values()[buffer.get()];
+                int ownerId = buffer.getInt();
+                long creditLimit = buffer.getLong();
+                listener.onAccount(lsn, accountNumber, type, ownerId, creditLimit);
+                break;
+            }
+            case TRANSACTION: {
+                TransactionType type = TransactionType.values()[buffer.get()];
+                long amount = buffer.getLong();
+                int from = buffer.getInt();
+                int to = buffer.getInt();
+                long timestamp = buffer.getLong();
+                TransactionStatus status = TransactionStatus.values()[buffer.get()];
+                listener.onTransaction(lsn, transaction, type, amount, from, to, timestamp, status);
+                break;
+            }
+            default:
+                throw new IOException("Неизвестный тип записи журнала: " + kind);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
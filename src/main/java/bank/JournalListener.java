@@ -0,0 +1,11 @@
+package bank;
+
+interface JournalListener {
+    void onCustomer(long lsn, int id, String fullName);
+
+    void onAccount(long lsn, int accountNumber, AccountType type, int ownerId, long creditLimit);
+
+    // transaction - номер транзакции в журнале, он же ее индекс в журнале транзакций банка
+    void onTransaction(long lsn, long transaction, TransactionType type, long amount, int from, int to,
+                       long timestamp, TransactionStatus status);
+}
@@ -0,0 +1,240 @@
+package bank;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Минимальный JSON для сетевого режима: разбор плоских объектов и построение ответов.
+// Значения при разборе возвращаются строками: числа - как записаны, чтобы суммы читались без потери точности
+final class Json {
+    private Json() {
+    }
+
+    static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> fields = parser.object();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw parser.error("лишние символы после объекта");
+        }
+        return fields;
+    }
+
+    static ObjectBuilder object() {
+        return new ObjectBuilder();
+    }
+
+    static String array(List<String> values) {
+        StringBuilder sb = new StringBuilder().append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(values.get(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    static final class ObjectBuilder {
+        private final StringBuilder sb = new StringBuilder().append('{');
+
+        ObjectBuilder field(String name, String value) {
+            quote(name(name), value);
+            return this;
+        }
+
+        ObjectBuilder field(String name, long value) {
+            name(name).append(value);
+            return this;
+        }
+
+        ObjectBuilder field(String name, boolean value) {
+            name(name).append(value);
+            return this;
+        }
+
+        // Готовый JSON: число, массив или вложенный объект
+        ObjectBuilder raw(String name, String json) {
+            name(name).append(json);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString() + '}';
+        }
+
+        private StringBuilder name(String name) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            quote(sb, name);
+            return sb.append(':');
+        }
+    }
+
+    private static void quote(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> object() {
+            skipWhitespace();
+            expect('{');
+            Map<String, String> fields = new HashMap<>();
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return fields;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                fields.put(name, value());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return fields;
+                }
+                if (c != ',') {
+                    throw error("ожидается ',' или '}'");
+                }
+            }
+        }
+
+        private String value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            int start = position;
+            while (!atEnd() && "+-.0123456789eEtruefals".indexOf(peek()) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("вложенные объекты и массивы не поддерживаются");
+            }
+            return text.substring(start, position);
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("обрезанная escape-последовательность");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("некорректная escape-последовательность");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        sb.append(escaped);
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        boolean atEnd() {
+            return position >= text.length();
+        }
+
+        private char peek() {
+            if (atEnd()) {
+                throw error("неожиданный конец");
+            }
+            return text.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("ожидается '" + expected + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Некорректный JSON (позиция " + position + "): " + message);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package bank;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Гистограмма задержек в наносекундах с логарифмическими корзинами: 64 корзины на каждую степень двойки,
+// то есть погрешность перцентиля не больше 1,6%. Запись без блокировок, из любого числа потоков
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_BITS = SUB_BUCKET_BITS - 1;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) << HALF_SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        // Максимум меняется редко, поэтому сначала читается и только при росте обновляется CAS
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    // Верхняя граница корзины, в которую попал перцентиль, но не больше максимума
+    long percentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBound(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << HALF_SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket >>> HALF_SUB_BUCKET_BITS) - 1;
+        long subBucket = bucket - ((long) shift << HALF_SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,217 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Синтетическая нагрузка на Bank: создает клиентов и счета, затем threads потоков в замкнутом цикле выполняют
+// пополнения, снятия и переводы в заданной пропорции. Счета выбираются равномерно или по закону Ципфа:
+// счет ранга k выбирается с весом 1 / k^zipfExponent, так что несколько "торговых" счетов получают
+// большую часть операций. В конце печатаются пропускная способность, перцентили задержки, причины
+// отказов и проверка сохранения денег: сумма остатков изменилась ровно на пополнения минус снятия
+final class LoadGenerator {
+    private static final TransactionType[] TYPES = {
+        TransactionType.DEPOSIT, TransactionType.WITHDRAW, TransactionType.TRANSFER
+    };
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final long MAX_AMOUNT = 10_000;
+    private static final long INITIAL_BALANCE = 100_000;
+    private static final BigDecimal CREDIT_LIMIT = new BigDecimal("1000.00");
+
+    private final Bank bank;
+    private final int customers;
+    private final int threads;
+    // Доли пополнений, снятий и переводов в процентах, в сумме 100
+    private final int[] mix;
+    private final double zipfExponent;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[TYPES.length];
+    private int[] accountNumbers;
+    // Накопленные веса рангов для выборки по Ципфу; null - равномерная выборка
+    private double[] zipfWeights;
+
+    // Итоги одного потока; складываются после остановки потоков
+    private static final class Totals {
+        final long[] outcomes = new long[TYPES.length * STATUSES.length];
+        long deposited;
+        long withdrawn;
+
+        void add(Totals other) {
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] += other.outcomes[i];
+            }
+            deposited += other.deposited;
+            withdrawn += other.withdrawn;
+        }
+    }
+
+    LoadGenerator(Bank bank, int customers, int threads, int[] mix, double zipfExponent) {
+        if (customers <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Число клиентов и потоков должно быть больше 0: "
+                    + customers + ", " + threads);
+        }
+        if (mix.length != TYPES.length || Arrays.stream(mix).anyMatch(share -> share < 0)
+                || Arrays.stream(mix).sum() != 100) {
+            throw new IllegalArgumentException("Доли пополнений, снятий и переводов должны быть неотрицательными"
+                    + " и давать в сумме 100: " + Arrays.toString(mix));
+        }
+        if (zipfExponent < 0 || Double.isNaN(zipfExponent)) {
+            throw new IllegalArgumentException("Показатель распределения Ципфа должен быть не меньше 0: "
+                    + zipfExponent);
+        }
+        this.bank = bank;
+        this.customers = customers;
+        this.threads = threads;
+        this.mix = mix.clone();
+        this.zipfExponent = zipfExponent;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    void run(int seconds) throws InterruptedException {
+        long started = System.nanoTime();
+        Totals totals = new Totals();
+        populate();
+        System.out.printf("Подготовка %,d клиентов и счетов: %.1f с%n", customers, (System.nanoTime() - started) / 1e9);
+        long before = totalBalance();
+
+        Totals[] threadTotals = new Totals[threads];
+        Thread[] workers = new Thread[threads];
+        SplittableRandom seeds = new SplittableRandom(42);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int i = 0; i < threads; i++) {
+            Totals threadTotal = new Totals();
+            SplittableRandom random = seeds.split();
+            threadTotals[i] = threadTotal;
+            workers[i] = new Thread(() -> work(random, deadline, threadTotal), "bank-load-" + i);
+        }
+        long loadStarted = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - loadStarted;
+        for (Totals threadTotal : threadTotals) {
+            totals.add(threadTotal);
+        }
+        report(totals, elapsed, totalBalance() - before);
+    }
+
+    // Каждый клиент получает один счет: каждый четвертый - кредитный, остальные - дебетовые с начальным остатком.
+    // Ранги Ципфа раздаются счетам в случайном порядке, чтобы горячие счета не шли подряд
+    private void populate() {
+        accountNumbers = new int[customers];
+        for (int i = 0; i < customers; i++) {
+            Customer customer = bank.createCustomer("Клиент нагрузки " + i);
+            Account account = (i % 4 == 3) ? bank.openCreditAccount(customer, CREDIT_LIMIT)
+                                           : bank.openDebitAccount(customer);
+            accountNumbers[i] = account.getAccountNumber();
+            if (account.getType() == AccountType.DEBIT) {
+                Bank.Outcome outcome = new Bank.Outcome();
+                bank.deposit(accountNumbers[i], INITIAL_BALANCE, INITIAL_BALANCE, outcome);
+                bank.awaitDurable(outcome.lsn);
+            }
+        }
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = customers - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = accountNumbers[i];
+            accountNumbers[i] = accountNumbers[j];
+            accountNumbers[j] = swap;
+        }
+        if (zipfExponent > 0) {
+            zipfWeights = new double[customers];
+            double total = 0;
+            for (int rank = 0; rank < customers; rank++) {
+                total += 1 / Math.pow(rank + 1, zipfExponent);
+                zipfWeights[rank] = total;
+            }
+        }
+    }
+
+    private void work(SplittableRandom random, long deadline, Totals totals) {
+        Bank.Outcome outcome = new Bank.Outcome();
+        while (System.nanoTime() < deadline) {
+            int choice = random.nextInt(100);
+            int type = (choice < mix[0]) ? 0 : (choice < mix[0] + mix[1]) ? 1 : 2;
+            long amount = random.nextLong(1, MAX_AMOUNT + 1);
+            long started = System.nanoTime();
+            switch (TYPES[type]) {
+                case DEPOSIT -> bank.deposit(account(random), amount, amount, outcome);
+                case WITHDRAW -> bank.withdraw(account(random), amount, amount, outcome);
+                default -> bank.transfer(account(random), account(random), amount, amount, outcome);
+            }
+            bank.awaitDurable(outcome.lsn);
+            latencies[type].record(System.nanoTime() - started);
+            totals.outcomes[type * STATUSES.length + outcome.status.ordinal()]++;
+            if (outcome.status.isSuccess()) {
+                if (type == 0) {
+                    totals.deposited += amount;
+                } else if (type == 1) {
+                    totals.withdrawn += amount;
+                }
+            }
+        }
+    }
+
+    private int account(SplittableRandom random) {
+        if (zipfWeights == null) {
+            return accountNumbers[random.nextInt(customers)];
+        }
+        double target = random.nextDouble() * zipfWeights[customers - 1];
+        int low = 0;
+        int high = customers - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (zipfWeights[middle] < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return accountNumbers[low];
+    }
+
+    private long totalBalance() {
+        long total = 0;
+        for (Account account : bank.getAccounts()) {
+            total += account.getBalanceMinor();
+        }
+        return total;
+    }
+
+    private void report(Totals totals, long elapsedNanos, long balanceChange) {
+        long operations = Arrays.stream(totals.outcomes).sum();
+        System.out.println();
+        System.out.println("----------------НАГРУЗКА----------------");
+        System.out.printf("Потоков: %d, счетов: %,d, выбор счетов: %s, доли: %d/%d/%d%n", threads, customers,
+                (zipfWeights == null) ? "равномерный" : "Ципф, s = " + zipfExponent, mix[0], mix[1], mix[2]);
+        System.out.printf("Операций: %,d за %.1f с, %,.0f оп/с%n",
+                operations, elapsedNanos / 1e9, operations * 1e9 / elapsedNanos);
+        System.out.printf("%-12s %12s %10s %10s %10s %10s%n", "ОПЕРАЦИЯ", "ВСЕГО", "P50", "P99", "P99.9", "МАКС");
+        for (int type = 0; type < TYPES.length; type++) {
+            LatencyHistogram latency = latencies[type];
+            System.out.printf("%-12s %12d %10.1f %10.1f %10.1f %10.1f%n", TYPES[type], latency.getCount(),
+                    latency.percentile(50) / 1e3, latency.percentile(99) / 1e3,
+                    latency.percentile(99.9) / 1e3, latency.getMax() / 1e3);
+        }
+        System.out.println("Задержки в мкс, до долговечной записи");
+        for (int type = 0; type < TYPES.length; type++) {
+            for (TransactionStatus status : STATUSES) {
+                long count = totals.outcomes[type * STATUSES.length + status.ordinal()];
+                if (!status.isSuccess() && count > 0) {
+                    System.out.println(TYPES[type] + ": " + status + " - " + count);
+                }
+            }
+        }
+        long expected = totals.deposited - totals.withdrawn;
+        System.out.println("Пополнения " + Money.toBigDecimal(totals.deposited) + ", снятия "
+                + Money.toBigDecimal(totals.withdrawn) + ", изменение суммы остатков "
+                + Money.toBigDecimal(balanceChange) + ": "
+                + ((balanceChange == expected) ? "деньги сохранены"
+                                               : "РАСХОЖДЕНИЕ " + Money.toBigDecimal(balanceChange - expected)));
+        System.out.println("----------------------------------------");
+    }
+}
@@ -0,0 +1,25 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public final class Money {
+    private Money() {
+    }
+
+    public static boolean isRepresentable(BigDecimal amount) {
+        if (amount.scale() > Common.MONEY_UNIT_PRECISION) {
+            return false;
+        }
+        return amount.setScale(Common.MONEY_UNIT_PRECISION).unscaledValue().bitLength() < Long.SIZE;
+    }
+
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(Common.MONEY_UNIT_PRECISION, RoundingMode.UNNECESSARY)
+                     .unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, Common.MONEY_UNIT_PRECISION);
+    }
+}
@@ -0,0 +1,67 @@
+package bank;
+
+import java.util.Map;
+
+// Снимок метрик одной операции. Задержки в наносекундах
+public class OperationMetrics {
+    private final String name;
+    private final long count;
+    private final long failed;
+    private final double throughput;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+    private final Map<String, Long> failures;
+
+    OperationMetrics(String name, long count, long failed, double throughput,
+                     LatencyHistogram latency, Map<String, Long> failures) {
+        this.name = name;
+        this.count = count;
+        this.failed = failed;
+        this.throughput = throughput;
+        this.p50 = latency.percentile(50);
+        this.p99 = latency.percentile(99);
+        this.p999 = latency.percentile(99.9);
+        this.max = latency.getMax();
+        this.failures = failures;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    // Операций в секунду с момента запуска
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public long getLatencyP50() {
+        return p50;
+    }
+
+    public long getLatencyP99() {
+        return p99;
+    }
+
+    public long getLatencyP999() {
+        return p999;
+    }
+
+    public long getLatencyMax() {
+        return max;
+    }
+
+    // Число неуспешных операций по причине отказа
+    public Map<String, Long> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,137 @@
+package bank;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Эпохи операций для согласованного чтения без блокировки записи. Каждая изменяющая операция банка входит
+// в текущую эпоху (enter/exit) уже после захвата блокировок своих счетов, поэтому у одного счета эпохи
+// операций не убывают. Читатель (open) начинает новую эпоху E и ждет, пока завершатся операции эпохи E - 1:
+// срез - все операции эпох меньше E. Операции эпохи E при открытом представлении перед первым изменением
+// счета сохраняют в нем прежний баланс, а операции эпохи E - 1 отмечают в нем свои записи журнала транзакций.
+// Представление одновременно одно: следующий читатель ждет закрытия предыдущего, операции не ждут никого
+final class ReadEpochs {
+    // Счетчик операций в работе: своя ячейка на поток и четность эпохи, ячейки разнесены по строкам кэша
+    private static final int STRIDE = 8;
+
+    private final AtomicLongArray inFlight;
+    private final int mask;
+    private final ReentrantLock readers = new ReentrantLock();
+    private volatile long epoch;
+    private volatile BankView view;
+    // Итоги BankStats завершенных эпох каждой четности на момент последнего среза
+    private final long[][] settled = {new long[BankStats.COUNTERS], new long[BankStats.COUNTERS]};
+
+    ReadEpochs() {
+        int cells = Integer.highestOneBit(Math.max(2, Runtime.getRuntime().availableProcessors()) - 1) << 1;
+        this.inFlight = new AtomicLongArray(cells * 2 * STRIDE);
+        this.mask = cells - 1;
+    }
+
+    // Эпоха операции: ячейка отмечается до повторного чтения эпохи, поэтому читатель, сменивший эпоху,
+    // увидит все операции, которые ее не заметили
+    long enter() {
+        int cell = cell();
+        while (true) {
+            long current = epoch;
+            int index = index(cell, current);
+            inFlight.incrementAndGet(index);
+            if (epoch == current) {
+                return current;
+            }
+            inFlight.decrementAndGet(index);
+        }
+    }
+
+    void exit(long epoch) {
+        inFlight.decrementAndGet(index(cell(), epoch));
+    }
+
+    // Вызывается под блокировкой счета перед первым в операции изменением его основного баланса
+    void beforeChange(long epoch, Account account) {
+        BankView view = this.view;
+        if (view != null && epoch >= view.epoch) {
+            view.preserve(account);
+        }
+    }
+
+    // То же для полосы горячего счета, под блокировкой полосы
+    void beforeChange(long epoch, HotBalance.Stripe stripe) {
+        BankView view = this.view;
+        if (view != null && epoch >= view.epoch) {
+            view.preserve(stripe);
+        }
+    }
+
+    // Вызывается до регистрации счета
+    void accountOpened(long epoch, int accountNumber) {
+        BankView view = this.view;
+        if (view != null && epoch >= view.epoch) {
+            view.opened(accountNumber);
+        }
+    }
+
+    void logged(long epoch, int index) {
+        BankView view = this.view;
+        if (view != null && epoch < view.epoch) {
+            view.logged(index);
+        }
+    }
+
+    BankView open(Bank bank, BankStats stats, TransactionLog transactions) {
+        readers.lock();
+        try {
+            long next = epoch + 1;
+            BankView opened = new BankView(bank, this, next);
+            // Представление публикуется до смены эпохи: операции новой эпохи его уже видят, а запись журнала
+            // от операции прошлой эпохи либо попадает в logStart, либо отмечается в представлении
+            view = opened;
+            int logStart = transactions.size();
+            epoch = next;
+            int previous = (int) (next - 1) & 1;
+            awaitQuiescent(previous);
+            settled[previous] = stats.sumSlot(previous);
+            long[] counters = new long[BankStats.COUNTERS];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = settled[0][i] + settled[1][i];
+            }
+            opened.init(new BankStats(counters), logStart, transactions.size());
+            return opened;
+        } catch (RuntimeException | Error e) {
+            view = null;
+            readers.unlock();
+            throw e;
+        }
+    }
+
+    void close(BankView closed) {
+        if (view == closed) {
+            view = null;
+            readers.unlock();
+        }
+    }
+
+    private void awaitQuiescent(int parity) {
+        for (int spins = 0; ; spins++) {
+            long count = 0;
+            for (int cell = 0; cell <= mask; cell++) {
+                count += inFlight.get(index(cell, parity));
+            }
+            if (count == 0) {
+                return;
+            }
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private int cell() {
+        return ((Thread.currentThread().hashCode() * 0x9E3779B9) >>> 16) & mask;
+    }
+
+    private int index(int cell, long epoch) {
+        return ((cell << 1) | ((int) epoch & 1)) * STRIDE;
+    }
+}
@@ -0,0 +1,110 @@
+package bank;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Объекты с плотными неотрицательными номерами (счета, клиенты) в массивах по CHUNK_SIZE элементов:
+// поиск - два обращения к массиву, без упаковки ключей и узлов хеш-таблицы. Добавление синхронизировано,
+// чтение без блокировок. Обход - по возрастанию номеров
+final class Registry<T> extends AbstractCollection<T> {
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicReferenceArray<T>[] chunks = newDirectory(16);
+    private volatile int size;
+
+    T get(int id) {
+        if (id < 0) {
+            return null;
+        }
+        AtomicReferenceArray<T>[] current = chunks;
+        int chunkIndex = id >>> CHUNK_SHIFT;
+        if (chunkIndex >= current.length) {
+            return null;
+        }
+        AtomicReferenceArray<T> chunk = current[chunkIndex];
+        return (chunk != null) ? chunk.get(id & CHUNK_MASK) : null;
+    }
+
+    boolean containsId(int id) {
+        return get(id) != null;
+    }
+
+    // Номер занимается один раз: повторная регистрация того же номера - ошибка
+    synchronized void put(int id, T value) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Отрицательный номер: " + id);
+        }
+        AtomicReferenceArray<T>[] current = chunks;
+        int chunkIndex = id >>> CHUNK_SHIFT;
+        if (chunkIndex >= current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, chunkIndex + 1));
+            chunks = current;
+        }
+        AtomicReferenceArray<T> chunk = current[chunkIndex];
+        if (chunk == null) {
+            chunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+            current[chunkIndex] = chunk;
+        }
+        if (!chunk.compareAndSet(id & CHUNK_MASK, null, value)) {
+            throw new IllegalStateException("Номер уже занят: " + id);
+        }
+        size = size + 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        AtomicReferenceArray<T>[] snapshot = chunks;
+        return new Iterator<>() {
+            private int chunkIndex;
+            private int offset = -1;
+            private T next = advance();
+
+            private T advance() {
+                while (chunkIndex < snapshot.length) {
+                    AtomicReferenceArray<T> chunk = snapshot[chunkIndex];
+                    if (chunk != null) {
+                        while (++offset < CHUNK_SIZE) {
+                            T value = chunk.get(offset);
+                            if (value != null) {
+                                return value;
+                            }
+                        }
+                    }
+                    chunkIndex++;
+                    offset = -1;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                T result = next;
+                next = advance();
+                return result;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> AtomicReferenceArray<T>[] newDirectory(int length) {
+        return (AtomicReferenceArray<T>[]) new AtomicReferenceArray<?>[length];
+    }
+}
@@ -0,0 +1,108 @@
+package bank;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Строки копятся в большом буфере в UTF-8 и уходят в поток кусками, а не отдельным println на строку
+final class ReportWriter implements Closeable {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private static volatile Charset stdoutCharset = Charset.defaultCharset();
+
+    private final byte[] buffer;
+    private final PrintStream out;
+    private final boolean closeOut;
+    private final boolean utf8;
+    private int length;
+
+    private ReportWriter(PrintStream out, boolean closeOut, boolean utf8, int bufferSize) {
+        this.buffer = new byte[bufferSize];
+        this.out = out;
+        this.closeOut = closeOut;
+        this.utf8 = utf8;
+    }
+
+    // Кодировка, в которой System.out выводит текст. Байты уходят в него напрямую, только если это UTF-8
+    static void setStdoutCharset(Charset charset) {
+        stdoutCharset = charset;
+    }
+
+    // Вывод идет через System.out, чтобы сохранить порядок с остальным выводом
+    static ReportWriter stdout() {
+        return new ReportWriter(System.out, false, StandardCharsets.UTF_8.equals(stdoutCharset), CHUNK_SIZE);
+    }
+
+    static ReportWriter toFile(Path file) throws IOException {
+        return toFile(file, CHUNK_SIZE);
+    }
+
+    // Для множества маленьких файлов буфер берется меньше: каждый файл выделяет свой
+    static ReportWriter toFile(Path file, int bufferSize) throws IOException {
+        PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(file), bufferSize),
+                false, StandardCharsets.UTF_8);
+        return new ReportWriter(out, true, true, bufferSize);
+    }
+
+    ReportWriter println(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return println(bytes, bytes.length);
+    }
+
+    ReportWriter println(RowRenderer row) {
+        return println(row.buffer(), row.length());
+    }
+
+    // Как и PrintStream, не бросает исключений: ошибку записи показывает checkError() после close()
+    @Override
+    public void close() {
+        flushBuffer();
+        if (closeOut) {
+            out.close();
+        } else {
+            out.flush();
+        }
+    }
+
+    boolean checkError() {
+        return out.checkError();
+    }
+
+    private ReportWriter println(byte[] bytes, int count) {
+        if (length + count + LINE_SEPARATOR.length > buffer.length) {
+            flushBuffer();
+        }
+        if (count + LINE_SEPARATOR.length > buffer.length) {
+            write(bytes, 0, count);
+            write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+            return this;
+        }
+        System.arraycopy(bytes, 0, buffer, length, count);
+        length += count;
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, length, LINE_SEPARATOR.length);
+        length += LINE_SEPARATOR.length;
+        return this;
+    }
+
+    private void flushBuffer() {
+        if (length > 0) {
+            write(buffer, 0, length);
+            length = 0;
+        }
+    }
+
+    // Буфер сбрасывается только на границе строк, поэтому куски всегда содержат целые символы UTF-8
+    private void write(byte[] bytes, int offset, int count) {
+        if (utf8) {
+            out.write(bytes, offset, count);
+        } else {
+            out.print(new String(bytes, offset, count, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package bank;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Строки таблиц без String.format: поля дописываются в переиспользуемый буфер сразу в UTF-8 и дополняются
+// пробелами до ширины, как %-Ns. Постоянные части строк закодированы заранее. Суммы выводятся из копеек
+// так же, как %.2f, с десятичным разделителем и цифрами текущей локали
+final class RowRenderer {
+    private static final long[] POWERS_OF_TEN = {1, 10, 100};
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private static final byte[] TIME_LABEL = utf8("| ВРЕМЯ: ");
+    private static final byte[] FROM_LABEL = utf8(" | ОТ: ");
+    private static final byte[] TO_LABEL = utf8(" | КОМУ: ");
+    private static final byte[] ACCOUNT_LABEL = utf8("| НОМЕР СЧЕТА: ");
+    private static final byte[] OWNER_LABEL = utf8(" | ВЛАДЕЛЕЦ: ");
+    private static final byte[] BALANCE_LABEL = utf8(" | БАЛАНС: ");
+    private static final byte[] ID_LABEL = utf8("| ID: ");
+    private static final byte[] NAME_LABEL = utf8(" | ФИО: ");
+    private static final byte[] ROW_END = utf8(" |");
+    private static final byte[][] TYPE_CELLS = new byte[TransactionType.values().length][];
+    private static final byte[][] STATUS_CELLS = new byte[TransactionStatus.values().length][];
+    private static final byte[][] ACCOUNT_TYPE_CELLS = new byte[AccountType.values().length][];
+
+    static {
+        for (TransactionType type : TransactionType.values()) {
+            TYPE_CELLS[type.ordinal()] = utf8(" | ТИП: " + padded(type.toString(), 10) + " | СУММА: ");
+        }
+        for (TransactionStatus status : TransactionStatus.values()) {
+            STATUS_CELLS[status.ordinal()] = utf8(" | СТАТУС: " + padded(status.isSuccess() ? "УСПЕШНО" : "СБОЙ", 8)
+                    + " | СООБЩЕНИЕ: " + status + padded(" |", 35));
+        }
+        for (AccountType type : AccountType.values()) {
+            ACCOUNT_TYPE_CELLS[type.ordinal()] = utf8(" | ТИП: " + padded(type.toString(), 9) + " |");
+        }
+    }
+
+    private byte[] row = new byte[512];
+    private int length;
+    private final char decimalSeparator;
+    private final char zeroDigit;
+
+    RowRenderer() {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.zeroDigit = symbols.getZeroDigit();
+    }
+
+    RowRenderer clear() {
+        length = 0;
+        return this;
+    }
+
+    RowRenderer transaction(TransactionType type, long amount, int from, int to,
+                            long timestamp, TransactionStatus status) {
+        bytes(TIME_LABEL).timestamp(timestamp, 19)
+                .bytes(TYPE_CELLS[type.ordinal()]).amount(amount, 10)
+                .bytes(FROM_LABEL).accountNumber(from, 5)
+                .bytes(TO_LABEL).accountNumber(to, 5)
+                .bytes(STATUS_CELLS[status.ordinal()]);
+        return this;
+    }
+
+    RowRenderer account(Account account, long balance) {
+        bytes(ACCOUNT_LABEL).number(account.getAccountNumber(), 5)
+                .bytes(BALANCE_LABEL).amount(balance, 10)
+                .bytes(ACCOUNT_TYPE_CELLS[account.getType().ordinal()]);
+        return this;
+    }
+
+    RowRenderer accountWithOwner(Account account, long balance) {
+        bytes(ACCOUNT_LABEL).number(account.getAccountNumber(), 5)
+                .bytes(OWNER_LABEL).text(account.getOwner().getFullName(), 25)
+                .bytes(BALANCE_LABEL).amount(balance, 10)
+                .bytes(ACCOUNT_TYPE_CELLS[account.getType().ordinal()]);
+        return this;
+    }
+
+    RowRenderer customer(Customer customer) {
+        bytes(ID_LABEL).number(customer.getId(), 5)
+                .bytes(NAME_LABEL).text(customer.getFullName(), 25).bytes(ROW_END);
+        return this;
+    }
+
+    RowRenderer text(String value, int width) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensureCapacity(4);
+                row[length++] = (byte) (0xF0 | (codePoint >> 18));
+                row[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                row[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                row[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                character(c);
+            }
+        }
+        return pad(value.length(), width);
+    }
+
+    RowRenderer number(long value, int width) {
+        if (value == Long.MIN_VALUE) {
+            return text(Long.toString(value), width);
+        }
+        int chars = 0;
+        if (value < 0) {
+            ensureCapacity(1);
+            row[length++] = '-';
+            value = -value;
+            chars++;
+        }
+        chars += digits(value, '0');
+        return pad(chars, width);
+    }
+
+    RowRenderer amount(long minor, int width) {
+        long scale = POWERS_OF_TEN[Common.MONEY_UNIT_PRECISION];
+        int chars = 0;
+        if (minor < 0) {
+            ensureCapacity(1);
+            row[length++] = '-';
+            chars++;
+        }
+        chars += digits(Math.abs(minor / scale), zeroDigit);
+        character(decimalSeparator);
+        long fraction = Math.abs(minor % scale);
+        for (int i = Common.MONEY_UNIT_PRECISION - 1; i >= 0; i--) {
+            character((char) (zeroDigit + (fraction / POWERS_OF_TEN[i]) % 10));
+        }
+        return pad(chars + 1 + Common.MONEY_UNIT_PRECISION, width);
+    }
+
+    // Как DateTimeFormatter.ISO_LOCAL_DATE_TIME для Transaction.fromEpochNanos(epochNanos):
+    // секунды выводятся всегда, доли секунды - без хвостовых нулей
+    RowRenderer timestamp(long epochNanos, int width) {
+        long epochSecond = Math.floorDiv(epochNanos, NANOS_PER_SECOND);
+        int nano = (int) Math.floorMod(epochNanos, NANOS_PER_SECOND);
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochSecond, SECONDS_PER_DAY));
+        int secondOfDay = Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            String formatted = Transaction.fromEpochNanos(epochNanos).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            return text(formatted, width);
+        }
+
+        ensureCapacity(29);
+        int start = length;
+        twoDigits(year / 100);
+        twoDigits(year % 100);
+        row[length++] = '-';
+        twoDigits(date.getMonthValue());
+        row[length++] = '-';
+        twoDigits(date.getDayOfMonth());
+        row[length++] = 'T';
+        twoDigits(secondOfDay / 3600);
+        row[length++] = ':';
+        twoDigits(secondOfDay / 60 % 60);
+        row[length++] = ':';
+        twoDigits(secondOfDay % 60);
+        if (nano != 0) {
+            row[length++] = '.';
+            for (int divisor = 100_000_000; nano != 0; divisor /= 10) {
+                row[length++] = (byte) ('0' + nano / divisor);
+                nano %= divisor;
+            }
+        }
+        return pad(length - start, width);
+    }
+
+    byte[] buffer() {
+        return row;
+    }
+
+    int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(row, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private RowRenderer accountNumber(int accountNumber, int width) {
+        if (accountNumber == TransactionLog.NO_ACCOUNT) {
+            ensureCapacity(1);
+            row[length++] = '-';
+            return pad(1, width);
+        }
+        return number(accountNumber, width);
+    }
+
+    private RowRenderer bytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, row, length, value.length);
+        length += value.length;
+        return this;
+    }
+
+    // Неотрицательное число цифрами, начинающимися с zero; возвращает число символов
+    private int digits(long value, char zero) {
+        int count = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            count++;
+        }
+        if (zero == '0') {
+            ensureCapacity(count);
+            for (int i = length + count - 1; i >= length; i--) {
+                row[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += count;
+        } else {
+            char[] chars = new char[count];
+            for (int i = count - 1; i >= 0; i--) {
+                chars[i] = (char) (zero + value % 10);
+                value /= 10;
+            }
+            for (char c : chars) {
+                character(c);
+            }
+        }
+        return count;
+    }
+
+    private void twoDigits(int value) {
+        row[length++] = (byte) ('0' + value / 10);
+        row[length++] = (byte) ('0' + value % 10);
+    }
+
+    // Одиночный суррогат заменяется на '?', как в String.getBytes
+    private void character(char c) {
+        ensureCapacity(3);
+        if (c < 0x80) {
+            row[length++] = (byte) c;
+        } else if (c < 0x800) {
+            row[length++] = (byte) (0xC0 | (c >> 6));
+            row[length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (!Character.isSurrogate(c)) {
+            row[length++] = (byte) (0xE0 | (c >> 12));
+            row[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            row[length++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            row[length++] = '?';
+        }
+    }
+
+    private RowRenderer pad(int chars, int width) {
+        int count = width - chars;
+        if (count > 0) {
+            ensureCapacity(count);
+            Arrays.fill(row, length, length + count, (byte) ' ');
+            length += count;
+        }
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > row.length) {
+            row = Arrays.copyOf(row, Math.max(row.length * 2, length + extra));
+        }
+    }
+
+    private static String padded(String value, int width) {
+        StringBuilder sb = new StringBuilder(value);
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,325 @@
+package bank;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Пакетный режим BankApp: файл команд по одной на строку, поля через ';'.
+// Поток разбора передает готовые команды исполнителю пачками через ограниченную очередь.
+// Идущие подряд пополнения, снятия и переводы исполняются одним Bank.applyBatch: пока в очереди есть
+// готовые пачки, операции копятся до MAX_BATCH_SIZE, и ожидание записи журнала приходится на весь пакет
+class ScriptRunner {
+    private static final int CHUNK_SIZE = 1024;
+    private static final int MAX_BATCH_SIZE = 16 * CHUNK_SIZE;
+    private static final int QUEUE_CHUNKS = 64;
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final List<Command> END = Collections.emptyList();
+
+    private enum Kind {
+        CUSTOMER, DEBIT, CREDIT, DEPOSIT, WITHDRAW, TRANSFER, ERROR
+    }
+
+    private static final class Command {
+        final int line;
+        final Kind kind;
+        final String text;
+        final int first;
+        final int second;
+        final BigDecimal amount;
+        long startedAt;
+
+        Command(int line, Kind kind, String text, int first, int second, BigDecimal amount) {
+            this.line = line;
+            this.kind = kind;
+            this.text = text;
+            this.first = first;
+            this.second = second;
+            this.amount = amount;
+        }
+    }
+
+    private static final class ParseException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        ParseException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final Bank bank;
+    private final BlockingQueue<List<Command>> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+    // Команды, выполненные сразу, и одиночные операции: от начала разбора команды исполнителем до результата
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // Пакеты applyBatch: одно значение на пакет - время самого вызова; отдельные операции пакета не замеряются
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private long batchedOperations;
+    private final List<Command> pendingCommands = new ArrayList<>();
+    private final List<BatchOperation> pendingOperations = new ArrayList<>();
+    private volatile IOException readFailure;
+    private long succeeded;
+    private long failed;
+    private long parseErrors;
+
+    ScriptRunner(Bank bank) {
+        this.bank = bank;
+    }
+
+    void run(Path script) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Thread parser = new Thread(() -> parse(script), "bank-script-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        try (ReportWriter out = ReportWriter.stdout()) {
+            while (true) {
+                List<Command> chunk = queue.take();
+                if (chunk == END) {
+                    flushOperations(out);
+                    break;
+                }
+                for (Command command : chunk) {
+                    command.startedAt = System.nanoTime();
+                    execute(command, out);
+                }
+                if (queue.isEmpty() || pendingOperations.size() >= MAX_BATCH_SIZE) {
+                    flushOperations(out);
+                }
+            }
+        }
+        parser.join();
+        if (readFailure != null) {
+            throw readFailure;
+        }
+        printSummary(script, System.nanoTime() - started);
+    }
+
+    private void parse(Path script) {
+        List<Command> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (BufferedReader reader = new BufferedReader(
+                Files.newBufferedReader(script, StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                chunk.add(parseLine(lineNumber, trimmed));
+                if (chunk.size() == CHUNK_SIZE) {
+                    queue.put(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+        } catch (IOException e) {
+            readFailure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                if (!chunk.isEmpty()) {
+                    queue.put(chunk);
+                }
+                queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Форматы строк:
+    //   customer;ФИО
+    //   debit;ID клиента
+    //   credit;ID клиента;кредитный лимит
+    //   deposit;номер счета;сумма
+    //   withdraw;номер счета;сумма
+    //   transfer;счет отправителя;счет получателя;сумма
+    private static Command parseLine(int line, String text) {
+        String[] fields = text.split(";", -1);
+        String name = fields[0].trim();
+        try {
+            switch (name) {
+                case "customer": {
+                    expectFields(fields, 2);
+                    String fullName = fields[1].trim();
+                    if (fullName.isEmpty()) {
+                        throw new ParseException("ФИО не может быть пустым");
+                    }
+                    return new Command(line, Kind.CUSTOMER, fullName, 0, 0, null);
+                }
+                case "debit":
+                    expectFields(fields, 2);
+                    return new Command(line, Kind.DEBIT, null, parseNumber(fields[1], "ID клиента"), 0, null);
+                case "credit": {
+                    expectFields(fields, 3);
+                    int customerId = parseNumber(fields[1], "ID клиента");
+                    BigDecimal creditLimit = parseAmount(fields[2], "кредитный лимит");
+                    return new Command(line, Kind.CREDIT, null, customerId, 0, creditLimit);
+                }
+                case "deposit":
+                case "withdraw": {
+                    expectFields(fields, 3);
+                    int accountNumber = parseNumber(fields[1], "номер счета");
+                    BigDecimal amount = parseAmount(fields[2], "сумма");
+                    Kind kind = name.equals("deposit") ? Kind.DEPOSIT : Kind.WITHDRAW;
+                    return new Command(line, kind, null, accountNumber, 0, amount);
+                }
+                case "transfer": {
+                    expectFields(fields, 4);
+                    int from = parseNumber(fields[1], "счет отправителя");
+                    int to = parseNumber(fields[2], "счет получателя");
+                    if (from == to) {
+                        throw new ParseException("нельзя перевести на тот же счёт");
+                    }
+                    BigDecimal amount = parseAmount(fields[3], "сумма");
+                    return new Command(line, Kind.TRANSFER, null, from, to, amount);
+                }
+                default:
+                    throw new ParseException("неизвестная команда '" + name + "'");
+            }
+        } catch (ParseException e) {
+            return new Command(line, Kind.ERROR, e.getMessage(), 0, 0, null);
+        }
+    }
+
+    private static void expectFields(String[] fields, int count) throws ParseException {
+        if (fields.length != count) {
+            throw new ParseException("ожидается полей: " + count + ", получено: " + fields.length);
+        }
+    }
+
+    private static int parseNumber(String field, String name) throws ParseException {
+        try {
+            return Integer.parseInt(field.trim());
+        } catch (NumberFormatException e) {
+            throw new ParseException("некорректное значение поля '" + name + "': " + field);
+        }
+    }
+
+    // Те же правила, что и при вводе суммы в меню
+    private static BigDecimal parseAmount(String field, String name) throws ParseException {
+        Optional<BigDecimal> value = BankApp.parseMoneyAmount(field);
+        if (value.isEmpty()) {
+            throw new ParseException("поле '" + name + "' имеет некорректное денежное представление");
+        }
+        if (value.get().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new ParseException("поле '" + name + "' должно быть больше 0");
+        }
+        return value.get();
+    }
+
+    private void execute(Command command, ReportWriter out) {
+        switch (command.kind) {
+            case DEPOSIT:
+                enqueueOperation(command, BatchOperation.deposit(command.first, command.amount));
+                return;
+            case WITHDRAW:
+                enqueueOperation(command, BatchOperation.withdraw(command.first, command.amount));
+                return;
+            case TRANSFER:
+                enqueueOperation(command, BatchOperation.transfer(command.first, command.second, command.amount));
+                return;
+            default:
+                break;
+        }
+
+        flushOperations(out);
+        if (command.kind == Kind.ERROR) {
+            parseErrors++;
+            report(out, command, "ошибка разбора: " + command.text);
+            return;
+        }
+        String error = null;
+        if (command.kind == Kind.CUSTOMER) {
+            bank.createCustomer(command.text);
+        } else {
+            Customer customer = bank.findCustomer(command.first);
+            if (customer == null) {
+                error = "Клиент с ID: " + command.first + " не найден";
+            } else if (command.kind == Kind.DEBIT) {
+                bank.openDebitAccount(customer);
+            } else {
+                bank.openCreditAccount(customer, command.amount);
+            }
+        }
+        latency.record(System.nanoTime() - command.startedAt);
+        completed(command, error, out);
+    }
+
+    private void enqueueOperation(Command command, BatchOperation operation) {
+        pendingCommands.add(command);
+        pendingOperations.add(operation);
+    }
+
+    private void flushOperations(ReportWriter out) {
+        if (pendingOperations.isEmpty()) {
+            return;
+        }
+        // Одиночной операции пакет ничего не экономит, а горячий счет в нем блокировался бы целиком
+        if (pendingOperations.size() == 1) {
+            Command command = pendingCommands.get(0);
+            TransactionStatus status = bank.apply(pendingOperations.get(0));
+            latency.record(System.nanoTime() - command.startedAt);
+            completed(command, status.isSuccess() ? null : status.toString(), out);
+            pendingCommands.clear();
+            pendingOperations.clear();
+            return;
+        }
+        long started = System.nanoTime();
+        List<Transaction> results = bank.applyBatch(pendingOperations);
+        batchLatency.record(System.nanoTime() - started);
+        batchedOperations += results.size();
+        for (int i = 0; i < results.size(); i++) {
+            Transaction transaction = results.get(i);
+            completed(pendingCommands.get(i), transaction.isSuccess() ? null : transaction.getMessage(), out);
+        }
+        pendingCommands.clear();
+        pendingOperations.clear();
+    }
+
+    private void completed(Command command, String error, ReportWriter out) {
+        if (error == null) {
+            succeeded++;
+        } else {
+            failed++;
+            report(out, command, error);
+        }
+    }
+
+    private static void report(ReportWriter out, Command command, String message) {
+        out.println("Строка " + command.line + ": " + message);
+    }
+
+    private void printSummary(Path script, long elapsedNanos) {
+        long commands = succeeded + failed + parseErrors;
+        System.out.println();
+        System.out.println("----------------СЦЕНАРИЙ----------------");
+        System.out.println("Файл: " + script);
+        System.out.println("Команд: " + commands + ", успешно: " + succeeded
+                + ", ошибок выполнения: " + failed + ", ошибок разбора: " + parseErrors);
+        System.out.printf("Время: %.3f с, %.0f команд/с%n", elapsedNanos / 1e9,
+                (elapsedNanos > 0) ? commands * 1e9 / elapsedNanos : 0.0);
+        if (latency.getCount() > 0) {
+            System.out.printf("Задержка команд вне пакетов (%d), мкс: p50 %.1f | p99 %.1f | p99.9 %.1f | макс %.1f%n",
+                    latency.getCount(), latency.percentile(50) / 1e3, latency.percentile(99) / 1e3,
+                    latency.percentile(99.9) / 1e3, latency.getMax() / 1e3);
+        }
+        if (batchLatency.getCount() > 0) {
+            System.out.printf("Пакетов applyBatch: %d, операций в пакете в среднем %.0f%n", batchLatency.getCount(),
+                    (double) batchedOperations / batchLatency.getCount());
+            System.out.printf("Время пакета, мкс: p50 %.1f | p99 %.1f | p99.9 %.1f | макс %.1f%n",
+                    batchLatency.percentile(50) / 1e3, batchLatency.percentile(99) / 1e3,
+                    batchLatency.percentile(99.9) / 1e3, batchLatency.getMax() / 1e3);
+        }
+        System.out.println("----------------------------------------");
+    }
+}
@@ -0,0 +1,321 @@
+package bank;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Счета разделены между шардами по номеру (номер % число шардов). Шард владеет своими счетами и журналом
+// транзакций и выполняет операции по очереди в собственном потоке, поэтому балансы меняются без блокировок.
+// Перевод между шардами - обмен сообщениями: шард отправителя резервирует сумму (списывает ее со счета
+// в "деньги в пути"), шард получателя зачисляет ее и отвечает подтверждением или отказом, после чего
+// отправитель фиксирует перевод или возвращает резерв на счет. Сумма списывается ровно один раз и в любой
+// момент лежит либо на счете, либо в пути. Перевод записывается в журнал шарда отправителя.
+// Режим работает только в памяти, без журнала на диске
+public class ShardedBank implements Closeable {
+    private static final int DRAIN_LIMIT = 1024;
+    private static final Consumer<Shard> STOP = shard -> { };
+
+    private final Shard[] shards;
+    private final Registry<Customer> customers = new Registry<>();
+    private final AtomicInteger nextCustomerId = new AtomicInteger();
+    private final AtomicInteger nextAccountNumber = new AtomicInteger();
+
+    public ShardedBank(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Число шардов должно быть положительным: " + shardCount);
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public Customer createCustomer(String fullName) {
+        Customer customer = new Customer(nextCustomerId.getAndIncrement(), fullName);
+        customers.put(customer.getId(), customer);
+        return customer;
+    }
+
+    public Customer findCustomer(int customerId) {
+        return customers.get(customerId);
+    }
+
+    public Account openDebitAccount(Customer owner) {
+        return register(new DebitAccount(nextAccountNumber.getAndIncrement(), owner));
+    }
+
+    public Account openCreditAccount(Customer owner, BigDecimal creditLimit) {
+        if (creditLimit.signum() < 0 || !Money.isRepresentable(creditLimit)) {
+            throw new IllegalArgumentException("Некорректный кредитный лимит: " + creditLimit);
+        }
+        return register(new CreditAccount(nextAccountNumber.getAndIncrement(), owner, Money.toMinor(creditLimit)));
+    }
+
+    public Account findAccount(int accountNumber) {
+        if (!isAllocated(accountNumber)) {
+            return null;
+        }
+        return shardOf(accountNumber).call(shard -> shard.accounts.get(accountNumber)).join();
+    }
+
+    public boolean deposit(int accountNumber, BigDecimal amount) {
+        return depositAsync(accountNumber, amount).join();
+    }
+
+    public boolean withdraw(int accountNumber, BigDecimal amount) {
+        return withdrawAsync(accountNumber, amount).join();
+    }
+
+    public boolean transfer(int from, int to, BigDecimal amount) {
+        return transferAsync(from, to, amount).join();
+    }
+
+    // Результат завершается в потоке шарда: зависимые действия не должны блокироваться
+    public CompletableFuture<Boolean> depositAsync(int accountNumber, BigDecimal amount) {
+        long minorAmount = Bank.minorAmountOrInvalid(amount);
+        long recordedAmount = Bank.recordedAmount(amount);
+        return shardOf(accountNumber).call(shard -> shard.deposit(accountNumber, minorAmount, recordedAmount));
+    }
+
+    public CompletableFuture<Boolean> withdrawAsync(int accountNumber, BigDecimal amount) {
+        long minorAmount = Bank.minorAmountOrInvalid(amount);
+        long recordedAmount = Bank.recordedAmount(amount);
+        return shardOf(accountNumber).call(shard -> shard.withdraw(accountNumber, minorAmount, recordedAmount));
+    }
+
+    public CompletableFuture<Boolean> transferAsync(int from, int to, BigDecimal amount) {
+        long minorAmount = Bank.minorAmountOrInvalid(amount);
+        long recordedAmount = Bank.recordedAmount(amount);
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        shardOf(from).submit(shard -> shard.transfer(from, to, minorAmount, recordedAmount, result));
+        return result;
+    }
+
+    // Транзакции всех шардов по времени
+    public List<Transaction> getTransactions() {
+        List<Transaction> result = new ArrayList<>();
+        for (Shard shard : shards) {
+            result.addAll(shard.transactions.asList());
+        }
+        result.sort(Comparator.comparing(Transaction::getTimestamp));
+        return result;
+    }
+
+    public long getTransactionCount() {
+        long count = 0;
+        for (Shard shard : shards) {
+            count += shard.transactions.size();
+        }
+        return count;
+    }
+
+    // Сумма балансов и денег в пути. Совпадает с суммой всех пополнений за вычетом снятий, когда
+    // в обработке нет операций; во время переводов зачисленная, но еще не подтвержденная сумма учитывается дважды
+    public BigDecimal getTotalBalance() {
+        List<CompletableFuture<Long>> totals = new ArrayList<>();
+        for (Shard shard : shards) {
+            totals.add(shard.call(Shard::totalBalance));
+        }
+        long total = 0;
+        for (CompletableFuture<Long> shardTotal : totals) {
+            total = Math.addExact(total, shardTotal.join());
+        }
+        return Money.toBigDecimal(total);
+    }
+
+    // Дожидается завершения начатых переводов и останавливает потоки шардов.
+    // Операции, начатые после вызова close, не выполняются
+    @Override
+    public void close() {
+        boolean settled = false;
+        while (!settled) {
+            settled = true;
+            for (Shard shard : shards) {
+                settled &= shard.call(s -> s.inFlight == 0).join();
+            }
+        }
+        for (Shard shard : shards) {
+            shard.submit(STOP);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Account register(Account account) {
+        shardOf(account.getAccountNumber()).call(shard -> shard.accounts.put(account.getAccountNumber(), account))
+                                           .join();
+        return account;
+    }
+
+    private Shard shardOf(int accountNumber) {
+        return shards[Math.floorMod(accountNumber, shards.length)];
+    }
+
+    private boolean isAllocated(int accountNumber) {
+        return accountNumber >= 0 && accountNumber < nextAccountNumber.get();
+    }
+
+    private final class Shard implements Runnable {
+        private final BlockingQueue<Consumer<Shard>> mailbox = new LinkedBlockingQueue<>();
+        private final Map<Integer, Account> accounts = new HashMap<>();
+        private final TransactionLog transactions = new TransactionLog();
+        private final Thread thread;
+        // Меняется только потоком шарда
+        private long inFlight;
+
+        Shard(int index) {
+            this.thread = new Thread(this, "bank-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Consumer<Shard> message) {
+            mailbox.add(message);
+        }
+
+        <T> CompletableFuture<T> call(Function<Shard, T> operation) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            submit(shard -> {
+                try {
+                    result.complete(operation.apply(shard));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public void run() {
+            List<Consumer<Shard>> batch = new ArrayList<>(DRAIN_LIMIT);
+            try {
+                while (true) {
+                    batch.add(mailbox.take());
+                    mailbox.drainTo(batch, DRAIN_LIMIT - 1);
+                    for (Consumer<Shard> message : batch) {
+                        if (message == STOP) {
+                            return;
+                        }
+                        message.accept(this);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean deposit(int accountNumber, long amount, long recordedAmount) {
+            TransactionStatus status;
+            Account account = accounts.get(accountNumber);
+            if (amount < 0) {
+                status = TransactionStatus.INVALID_AMOUNT;
+            } else if (account == null) {
+                status = TransactionStatus.ACCOUNT_NOT_FOUND;
+            } else {
+                status = account.deposit(amount) ? TransactionStatus.OK : TransactionStatus.DEPOSIT_FAILED;
+            }
+            log(TransactionType.DEPOSIT, recordedAmount, TransactionLog.NO_ACCOUNT, accountNumber, status);
+            return status.isSuccess();
+        }
+
+        boolean withdraw(int accountNumber, long amount, long recordedAmount) {
+            TransactionStatus status;
+            Account account = accounts.get(accountNumber);
+            if (amount < 0) {
+                status = TransactionStatus.INVALID_AMOUNT;
+            } else if (account == null) {
+                status = TransactionStatus.ACCOUNT_NOT_FOUND;
+            } else {
+                status = account.withdraw(amount) ? TransactionStatus.OK : TransactionStatus.INSUFFICIENT_FUNDS;
+            }
+            log(TransactionType.WITHDRAW, recordedAmount, accountNumber, TransactionLog.NO_ACCOUNT, status);
+            return status.isSuccess();
+        }
+
+        void transfer(int from, int to, long amount, long recordedAmount, CompletableFuture<Boolean> result) {
+            Account fromAccount = accounts.get(from);
+            TransactionStatus status;
+            if (amount < 0) {
+                status = TransactionStatus.INVALID_AMOUNT;
+            } else if (fromAccount == null) {
+                status = TransactionStatus.SENDER_NOT_FOUND;
+            } else if (!isAllocated(to)) {
+                status = TransactionStatus.RECIPIENT_NOT_FOUND;
+            } else if (shardOf(to) == this) {
+                Account toAccount = accounts.get(to);
+                if (toAccount == null) {
+                    status = TransactionStatus.RECIPIENT_NOT_FOUND;
+                } else {
+                    status = fromAccount.transfer(toAccount, amount) ? TransactionStatus.OK
+                                                                      : TransactionStatus.SENDER_INSUFFICIENT_FUNDS;
+                }
+            } else if (fromAccount.withdraw(amount)) {
+                inFlight += amount;
+                shardOf(to).submit(shard -> shard.credit(this, from, to, amount, result));
+                return;
+            } else {
+                status = TransactionStatus.SENDER_INSUFFICIENT_FUNDS;
+            }
+            log(TransactionType.TRANSFER, recordedAmount, from, to, status);
+            result.complete(status.isSuccess());
+        }
+
+        // Выполняется шардом получателя
+        void credit(Shard source, int from, int to, long amount, CompletableFuture<Boolean> result) {
+            Account toAccount = accounts.get(to);
+            TransactionStatus status;
+            if (toAccount == null) {
+                status = TransactionStatus.RECIPIENT_NOT_FOUND;
+            } else {
+                // Сумма уже списана у отправителя: отказ здесь - сбой зачисления получателю, а не нехватка средств
+                status = toAccount.deposit(amount) ? TransactionStatus.OK : TransactionStatus.DEPOSIT_FAILED;
+            }
+            source.submit(shard -> shard.settle(from, to, amount, status, result));
+        }
+
+        // Выполняется шардом отправителя после ответа получателя
+        void settle(int from, int to, long amount, TransactionStatus status, CompletableFuture<Boolean> result) {
+            inFlight -= amount;
+            if (!status.isSuccess()) {
+                accounts.get(from).adjustBalance(amount);
+            }
+            log(TransactionType.TRANSFER, amount, from, to, status);
+            result.complete(status.isSuccess());
+        }
+
+        long totalBalance() {
+            long total = inFlight;
+            for (Account account : accounts.values()) {
+                total = Math.addExact(total, account.getBalanceMinor());
+            }
+            return total;
+        }
+
+        private void log(TransactionType type, long amount, int from, int to, TransactionStatus status) {
+            transactions.append(type, amount, from, to, Transaction.nowEpochNanos(), status);
+        }
+    }
+}
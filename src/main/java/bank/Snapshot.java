@@ -0,0 +1,194 @@
+package bank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+class Snapshot {
+    private static final int MAGIC = 0x424E4B53;
+    private static final int VERSION = 1;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final byte END = 0;
+    private static final byte CUSTOMER = 1;
+    private static final byte ACCOUNT = 2;
+
+    interface Loader {
+        // transactionCount - число транзакций до снимка, outcomes - их число по типу и статусу (BankStats.outcome)
+        void onHeader(int nextCustomerId, int nextAccountNumber, int transactionCount, long[] outcomes);
+
+        void onCustomer(int id, String fullName);
+
+        // false - счета уже есть в таблице счетов, и снимок читается только до них
+        boolean needsAccounts();
+
+        void onAccount(int accountNumber, AccountType type, int ownerId, long creditLimit,
+                       long balance, long appliedLsn);
+    }
+
+    static final class Writer implements Closeable {
+        private final Path dir;
+        private final long startLsn;
+        private final Path tempFile;
+        private final FileChannel channel;
+        private final CheckedOutputStream checked;
+        private final DataOutputStream out;
+        private boolean committed;
+
+        Writer(Path dir, long startLsn, int nextCustomerId, int nextAccountNumber,
+               int transactionCount, long[] outcomes) throws IOException {
+            this.dir = dir;
+            this.startLsn = startLsn;
+            this.tempFile = dir.resolve(fileName(startLsn) + TEMP_SUFFIX);
+            this.channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            OutputStream file = Channels.newOutputStream(channel);
+            this.checked = new CheckedOutputStream(new BufferedOutputStream(file, IO_BUFFER_SIZE), new CRC32C());
+            this.out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(startLsn);
+            out.writeInt(nextCustomerId);
+            out.writeInt(nextAccountNumber);
+            out.writeInt(transactionCount);
+            out.writeInt(outcomes.length);
+            for (long outcome : outcomes) {
+                out.writeLong(outcome);
+            }
+        }
+
+        void customer(int id, String fullName) throws IOException {
+            out.writeByte(CUSTOMER);
+            out.writeInt(id);
+            out.writeUTF(fullName);
+        }
+
+        void account(int accountNumber, AccountType type, int ownerId, long creditLimit,
+                     long balance, long appliedLsn) throws IOException {
+            out.writeByte(ACCOUNT);
+            out.writeInt(accountNumber);
+            out.writeByte(type.ordinal());
+            out.writeInt(ownerId);
+            out.writeLong(creditLimit);
+            out.writeLong(balance);
+            out.writeLong(appliedLsn);
+        }
+
+        // Снимок становится видимым только после fsync и атомарного переименования
+        void commit() throws IOException {
+            out.writeByte(END);
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+            out.close();
+            Files.move(tempFile, dir.resolve(fileName(startLsn)), StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    // Возвращает LSN, с которого нужно дочитать журнал, или 0, если снимков нет
+    static long loadLatest(Path dir, Loader loader) throws IOException {
+        List<Long> snapshots = list(dir);
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        long startLsn = snapshots.get(snapshots.size() - 1);
+        try (InputStream file = Files.newInputStream(dir.resolve(fileName(startLsn)));
+             CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, IO_BUFFER_SIZE), new CRC32C());
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != startLsn) {
+                throw new IOException("Файл " + fileName(startLsn) + " не является снимком банка"
+                        + " или имеет неподдерживаемую версию");
+            }
+            int nextCustomerId = in.readInt();
+            int nextAccountNumber = in.readInt();
+            int transactionCount = in.readInt();
+            int outcomeCount = in.readInt();
+            if (outcomeCount != BankStats.OUTCOME_COUNTERS) {
+                throw new IOException("Снимок " + fileName(startLsn) + " хранит " + outcomeCount
+                        + " счетчиков транзакций, ожидается " + BankStats.OUTCOME_COUNTERS);
+            }
+            long[] outcomes = new long[outcomeCount];
+            for (int i = 0; i < outcomeCount; i++) {
+                outcomes[i] = in.readLong();
+            }
+            loader.onHeader(nextCustomerId, nextAccountNumber, transactionCount, outcomes);
+            while (true) {
+                byte kind = in.readByte();
+                if (kind == END) {
+                    break;
+                } else if (kind == CUSTOMER) {
+                    loader.onCustomer(in.readInt(), in.readUTF());
+                } else if (kind == ACCOUNT) {
+                    // Счета записаны после клиентов; контрольная сумма в этом случае не проверяется
+                    if (!loader.needsAccounts()) {
+                        return startLsn;
+                    }
+                    int accountNumber = in.readInt();
+                    AccountType type = AccountType.values()[in.readByte()];
+                    loader.onAccount(accountNumber, type, in.readInt(), in.readLong(), in.readLong(), in.readLong());
+                } else {
+                    throw new IOException("Неизвестный тип записи снимка: " + kind);
+                }
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Контрольная сумма снимка " + fileName(startLsn) + " не совпадает");
+            }
+        }
+        return startLsn;
+    }
+
+    static void deleteBefore(Path dir, long startLsn) throws IOException {
+        for (long snapshot : list(dir)) {
+            if (snapshot < startLsn) {
+                Files.deleteIfExists(dir.resolve(fileName(snapshot)));
+            }
+        }
+    }
+
+    private static String fileName(long startLsn) {
+        return String.format("%s%020d%s", PREFIX, startLsn, SUFFIX);
+    }
+
+    private static List<Long> list(Path dir) throws IOException {
+        List<Long> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                snapshots.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+}
@@ -0,0 +1,52 @@
+package bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.RecursiveTask;
+
+// Выписки клиентов с ID из [from, to), каждая в свой файл. Диапазон делится пополам, пока в нем больше
+// LEAF_CUSTOMERS клиентов; результат - число записанных выписок
+final class StatementBatch extends RecursiveTask<Integer> {
+    private static final long serialVersionUID = 1L;
+    private static final int LEAF_CUSTOMERS = 256;
+
+    private final Bank bank;
+    private final Path dir;
+    private final long fromTimestamp;
+    private final long toTimestamp;
+    private final int from;
+    private final int to;
+
+    StatementBatch(Bank bank, Path dir, long fromTimestamp, long toTimestamp, int from, int to) {
+        this.bank = bank;
+        this.dir = dir;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected Integer compute() {
+        if (to - from <= LEAF_CUSTOMERS) {
+            RowRenderer row = new RowRenderer();
+            int written = 0;
+            for (int customerId = from; customerId < to; customerId++) {
+                try {
+                    if (bank.writeStatement(customerId, dir, fromTimestamp, toTimestamp, row)) {
+                        written++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e.getMessage(), e);
+                }
+            }
+            return written;
+        }
+        int middle = (from + to) >>> 1;
+        StatementBatch left = new StatementBatch(bank, dir, fromTimestamp, toTimestamp, from, middle);
+        left.fork();
+        int right = new StatementBatch(bank, dir, fromTimestamp, toTimestamp, middle, to).compute();
+        return right + left.join();
+    }
+}
@@ -1,27 +1,47 @@
 package bank;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
 
 public class Transaction {
+    // ZoneId.systemDefault() клонирует TimeZone при каждом вызове; часовой пояс процесса не меняется
+    private static final ZoneRules ZONE_RULES = ZoneId.systemDefault().getRules();
+
     private final TransactionType type;
     private final BigDecimal amount;
     private final Integer fromAccountNumber;
     private final Integer toAccountNumber;
     private final LocalDateTime timestamp;
-    private boolean success;
-    private String message;
+    private final TransactionStatus status;
 
-    public Transaction(TransactionType type, BigDecimal amount,
-                       Integer fromAccountNumber, Integer toAccountNumber) {
+    Transaction(TransactionType type, BigDecimal amount, Integer fromAccountNumber, Integer toAccountNumber,
+                LocalDateTime timestamp, TransactionStatus status) {
         this.type = type;
         this.amount = amount;
         this.fromAccountNumber = fromAccountNumber;
         this.toAccountNumber = toAccountNumber;
-        this.timestamp = LocalDateTime.now();
-        this.success = true;
-        this.message = "ОК";
+        this.timestamp = timestamp;
+        this.status = status;
+    }
+
+    static long toEpochNanos(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+    }
+
+    static LocalDateTime fromEpochNanos(long epochNanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    // Текущее локальное время в том же представлении, что и toEpochNanos(LocalDateTime.now())
+    static long nowEpochNanos() {
+        Instant now = Instant.now();
+        int offset = ZONE_RULES.getOffset(now).getTotalSeconds();
+        return (now.getEpochSecond() + offset) * 1_000_000_000L + now.getNano();
     }
 
     public TransactionType getType() {
@@ -44,33 +64,23 @@ public class Transaction {
         return timestamp;
     }
 
-    public boolean isSuccess() {
-        return success;
-    }
-
-    public String getMessage() {
-        return message;
+    public TransactionStatus getStatus() {
+        return status;
     }
 
-    public void setSuccess(boolean success) {
-        this.success = success;
+    public boolean isSuccess() {
+        return status.isSuccess();
     }
 
-    public void setMessage(String message) {
-        this.message = message;
+    public String getMessage() {
+        return status.toString();
     }
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();   
-        sb.append("| ВРЕМЯ: ").append(String.format("%-19s", timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)))
-          .append(" | ТИП: ").append(String.format("%-10s", type.toString()))
-          .append(" | СУММА: ").append(String.format("%-10.2f", amount))
-          .append(" | ОТ: ").append(String.format("%-5s", (fromAccountNumber != null ? fromAccountNumber : "-")))
-          .append(" | КОМУ: ").append(String.format("%-5s", (toAccountNumber != null ? toAccountNumber : "-")))
-          .append(" | СТАТУС: ").append(String.format("%-8s", (success ? "УСПЕШНО" : "СБОЙ")))
-          .append(" | СООБЩЕНИЕ: ").append(message).append(String.format("%-35s", " |"));
-
-        return sb.toString();
+        return new RowRenderer().transaction(type, Money.toMinor(amount),
+                (fromAccountNumber != null) ? fromAccountNumber : TransactionLog.NO_ACCOUNT,
+                (toAccountNumber != null) ? toAccountNumber : TransactionLog.NO_ACCOUNT,
+                toEpochNanos(timestamp), status).toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,423 @@
+package bank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Архив старых записей журнала транзакций: блоки по TransactionLog.CHUNK_SIZE записей, каждый сжат отдельно,
+// лежат в неизменяемых файлах-сегментах. Разреженный индекс в памяти - одна запись на блок (файл, смещение,
+// длина, последняя метка времени), так что память архива почти не растет с числом записей.
+// Сегмент синхронизируется с диском до того, как стать видимым, и в конце хранит свою часть индекса
+// и последнюю запись каждого своего счета. Архив - постоянное хранилище истории: журнал операций удаляет
+// сегменты, транзакции которых уже здесь, а при открытии индекс и входы в цепочки счетов читаются из сегментов
+final class TransactionArchive implements Closeable {
+    private static final String PREFIX = "transactions-";
+    private static final String SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x424E4B54;
+    // Длина оглавления, его CRC32C и MAGIC
+    private static final int TRAILER_SIZE = 12;
+    private static final int CACHED_BLOCKS = 4;
+    // Тип и статус в одном байте, сумма и разность меток времени - до 10 байт, счета и ссылки - до 5
+    private static final int MAX_BLOCK_BYTES = TransactionLog.CHUNK_SIZE * (1 + 2 * 10 + 4 * 5);
+
+    private static final class Block {
+        final Path file;
+        final long offset;
+        final int length;
+        final long lastTimestamp;
+
+        Block(Path file, long offset, int length, long lastTimestamp) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.lastTimestamp = lastTimestamp;
+        }
+    }
+
+    private final Path dir;
+    // Блоки идут подряд с нулевого; blockCount публикуется после блока
+    private volatile Block[] blocks = new Block[64];
+    private volatile int blockCount;
+    // Последняя запись каждого счета в сегментах, прочитанных при открытии
+    private final Map<Integer, Integer> heads = new HashMap<>();
+    // Последние прочитанные блоки: последовательное чтение истории распаковывает каждый блок один раз
+    private final Map<Integer, TransactionLog.Chunk> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TransactionLog.Chunk> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    TransactionArchive(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.dir = dir;
+        // Сегмент, не дописанный до сбоя, еще не был виден
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + TEMP_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        for (int firstIndex : listSegments()) {
+            if (firstIndex != size()) {
+                throw new IOException("В архиве транзакций нет записей с " + size() + " по " + (firstIndex - 1));
+            }
+            load(dir.resolve(fileName(firstIndex)));
+        }
+    }
+
+    // Число записей в архиве: записи с меньшими индексами читаются из него
+    int size() {
+        return blockCount << TransactionLog.CHUNK_SHIFT;
+    }
+
+    // Метка времени последней записи архива
+    long lastTimestamp() {
+        return (blockCount > 0) ? blocks[blockCount - 1].lastTimestamp : Long.MIN_VALUE;
+    }
+
+    // Номер счета и индекс его последней записи в архиве на момент открытия
+    Map<Integer, Integer> heads() {
+        return heads;
+    }
+
+    TransactionLog.Chunk block(int blockIndex) throws IOException {
+        if (blockIndex >= blockCount) {
+            throw new IndexOutOfBoundsException("Блок архива: " + blockIndex + ", блоков: " + blockCount);
+        }
+        synchronized (cache) {
+            TransactionLog.Chunk chunk = cache.get(blockIndex);
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        TransactionLog.Chunk chunk = read(blockIndex, blocks[blockIndex]);
+        synchronized (cache) {
+            cache.put(blockIndex, chunk);
+        }
+        return chunk;
+    }
+
+    // Первый индекс архива, где метка времени не меньше timestamp, или size(), если такой записи нет
+    int firstAtOrAfter(long timestamp) throws IOException {
+        Block[] current = blocks;
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (current[middle].lastTimestamp < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == blockCount) {
+            return size();
+        }
+        long[] timestamps = block(low).timestamps;
+        int position = 0;
+        high = TransactionLog.CHUNK_SIZE - 1;
+        while (position < high) {
+            int middle = (position + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                position = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return (low << TransactionLog.CHUNK_SHIFT) + position;
+    }
+
+    // Сегмент пишется во временный файл; его блоки становятся доступны для чтения после commit()
+    Writer newSegment() throws IOException {
+        return new Writer(blockCount);
+    }
+
+    @Override
+    public void close() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    // Оглавление сегмента: блоки (длина, последняя метка времени) и последние записи счетов
+    private void load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE, file);
+            int footerLength = trailer.getInt();
+            int expectedCrc = trailer.getInt();
+            if (trailer.getInt() != MAGIC || footerLength < 8 || footerLength > size - TRAILER_SIZE) {
+                throw new IOException("Файл " + file.getFileName() + " не является сегментом архива транзакций");
+            }
+            ByteBuffer footer = readFully(channel, size - TRAILER_SIZE - footerLength, footerLength, file);
+            CRC32C crc = new CRC32C();
+            crc.update(footer.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Оглавление сегмента архива " + file.getFileName() + " повреждено");
+            }
+            int count = footer.getInt();
+            Block[] current = blocks;
+            if (blockCount + count > current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, blockCount + count));
+            }
+            long offset = 0;
+            for (int i = 0; i < count; i++) {
+                int length = footer.getInt();
+                current[blockCount + i] = new Block(file, offset, length, footer.getLong());
+                offset += length;
+            }
+            for (int i = footer.getInt(); i > 0; i--) {
+                heads.put(footer.getInt(), footer.getInt());
+            }
+            blocks = current;
+            blockCount += count;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Оглавление сегмента архива " + file.getFileName() + " повреждено", e);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, Path file)
+            throws IOException {
+        if (position < 0) {
+            throw new IOException("Сегмент архива " + file.getFileName() + " обрезан");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Сегмент архива " + file.getFileName() + " обрезан");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private TransactionLog.Chunk read(int blockIndex, Block block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(block.length);
+        try (FileChannel channel = FileChannel.open(block.file, StandardOpenOption.READ)) {
+            while (compressed.hasRemaining()) {
+                if (channel.read(compressed, block.offset + compressed.position()) < 0) {
+                    throw new IOException("Сегмент архива " + block.file.getFileName() + " обрезан");
+                }
+            }
+        }
+        ByteBuffer raw = ByteBuffer.allocate(MAX_BLOCK_BYTES);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(raw.array(), raw.position(), raw.remaining());
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary() || !raw.hasRemaining())) {
+                    throw new IOException("Блок архива в " + block.file.getFileName() + " обрезан");
+                }
+                raw.position(raw.position() + inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Блок архива в " + block.file.getFileName() + " поврежден", e);
+        } finally {
+            inflater.end();
+        }
+        raw.flip();
+        TransactionLog.Chunk chunk = new TransactionLog.Chunk(true);
+        try {
+            long timestamp = 0;
+            for (int i = 0; i < TransactionLog.CHUNK_SIZE; i++) {
+                int index = (blockIndex << TransactionLog.CHUNK_SHIFT) + i;
+                byte kind = raw.get();
+                chunk.types[i] = (byte) (kind >>> 4);
+                chunk.statuses[i] = (byte) (kind & 0x0F);
+                chunk.amounts[i] = getSignedVarLong(raw);
+                chunk.fromAccounts[i] = getVarInt(raw) + TransactionLog.NO_ACCOUNT;
+                chunk.toAccounts[i] = getVarInt(raw) + TransactionLog.NO_ACCOUNT;
+                timestamp += getSignedVarLong(raw);
+                chunk.timestamps[i] = timestamp;
+                chunk.previousFrom[i] = previous(index, getVarInt(raw));
+                chunk.previousTo[i] = previous(index, getVarInt(raw));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Блок архива в " + block.file.getFileName() + " поврежден", e);
+        }
+        return chunk;
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    // Ссылка на предыдущую запись счета хранится как расстояние до нее, 0 - предыдущей записи нет
+    private static int distance(int index, int previous) {
+        return (previous >= 0) ? index - previous : 0;
+    }
+
+    private static int previous(int index, int distance) {
+        return (distance != 0) ? index - distance : -1;
+    }
+
+    // Числа пишутся по 7 бит в байте, малые значения занимают один байт; знаковые - в зигзаг-кодировании
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        putVarLong(buffer, value & 0xFFFFFFFFL);
+    }
+
+    private static void putSignedVarLong(ByteBuffer buffer, long value) {
+        putVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        return (int) getVarLong(buffer);
+    }
+
+    private static long getSignedVarLong(ByteBuffer buffer) {
+        long value = getVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = buffer.get();
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String fileName(int firstIndex) {
+        return String.format("%s%010d%s", PREFIX, firstIndex, SUFFIX);
+    }
+
+    final class Writer implements Closeable {
+        private final int firstBlock;
+        private final Path file;
+        private final Path tempFile;
+        private final FileChannel channel;
+        private final List<Block> written = new ArrayList<>();
+        private final ByteBuffer raw = ByteBuffer.allocate(MAX_BLOCK_BYTES);
+        private final byte[] compressed = new byte[1 << 16];
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private long offset;
+        private boolean committed;
+
+        private Writer(int firstBlock) throws IOException {
+            this.firstBlock = firstBlock;
+            this.file = dir.resolve(fileName(firstBlock << TransactionLog.CHUNK_SHIFT));
+            this.tempFile = dir.resolve(file.getFileName() + TEMP_SUFFIX);
+            this.channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        // Записи кодируются числами переменной длины (метки времени и ссылки - разностями), затем сжимаются
+        // Deflate: без предварительного кодирования сжатие занимает в несколько раз больше времени
+        // previousFrom и previousTo - ссылки для всего сегмента, ссылки блока начинаются с позиции links
+        void block(TransactionLog.Chunk chunk, int[] previousFrom, int[] previousTo, int links) throws IOException {
+            raw.clear();
+            long timestamp = 0;
+            for (int i = 0; i < TransactionLog.CHUNK_SIZE; i++) {
+                int index = ((firstBlock + written.size()) << TransactionLog.CHUNK_SHIFT) + i;
+                raw.put((byte) ((chunk.types[i] << 4) | chunk.statuses[i]));
+                putSignedVarLong(raw, chunk.amounts[i]);
+                putVarInt(raw, chunk.fromAccounts[i] - TransactionLog.NO_ACCOUNT);
+                putVarInt(raw, chunk.toAccounts[i] - TransactionLog.NO_ACCOUNT);
+                putSignedVarLong(raw, chunk.timestamps[i] - timestamp);
+                timestamp = chunk.timestamps[i];
+                putVarInt(raw, distance(index, previousFrom[links + i]));
+                putVarInt(raw, distance(index, previousTo[links + i]));
+            }
+
+            deflater.reset();
+            deflater.setInput(raw.array(), 0, raw.position());
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                int deflated = deflater.deflate(compressed);
+                ByteBuffer bytes = ByteBuffer.wrap(compressed, 0, deflated);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                length += deflated;
+            }
+            written.add(new Block(file, offset, length, chunk.timestamps[TransactionLog.CHUNK_SIZE - 1]));
+            offset += length;
+        }
+
+        // heads - пары (номер счета, индекс его последней записи в сегменте). Оглавление пишется в конец сегмента;
+        // сегмент и каталог синхронизируются с диском, после чего журнал может удалить свою копию записей
+        void commit(IntList heads) throws IOException {
+            ByteBuffer footer = ByteBuffer.allocate(4 + written.size() * 12 + 4 + heads.size() * 4 + TRAILER_SIZE);
+            footer.putInt(written.size());
+            for (Block block : written) {
+                footer.putInt(block.length).putLong(block.lastTimestamp);
+            }
+            footer.putInt(heads.size() / 2);
+            for (int i = 0; i < heads.size(); i++) {
+                footer.putInt(heads.get(i));
+            }
+            int footerLength = footer.position();
+            CRC32C crc = new CRC32C();
+            crc.update(footer.array(), 0, footerLength);
+            footer.putInt(footerLength).putInt((int) crc.getValue()).putInt(MAGIC).flip();
+            while (footer.hasRemaining()) {
+                channel.write(footer);
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+                directory.force(true);
+            }
+            Block[] current = blocks;
+            int count = firstBlock + written.size();
+            if (count > current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, count));
+            }
+            for (int i = 0; i < written.size(); i++) {
+                current[firstBlock + i] = written.get(i);
+            }
+            blocks = current;
+            blockCount = count;
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+}
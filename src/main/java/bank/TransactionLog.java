@@ -0,0 +1,632 @@
+package bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Журнал транзакций в виде столбцов примитивов, разбитых на блоки; объекты Transaction создаются только при чтении.
+// Запись идет под монитором журнала, чтение - без блокировок: все записи с индексом меньше size() уже заполнены.
+// Сам журнал упорядочен по времени, а для каждого счета ведется список индексов его записей.
+// Старые заполненные блоки можно перенести в архив (archiveOld): индексы записей при этом не меняются,
+// а чтение блока, которого уже нет в памяти, идет в архив
+class TransactionLog {
+    static final int NO_ACCOUNT = -1;
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    // Контрольная точка баланса ставится на каждую CHECKPOINT_EVERY-ю изменившую баланс счета запись
+    static final int CHECKPOINT_EVERY = 64;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int SEGMENT_CHUNKS = 64;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    static final class Chunk {
+        final byte[] types = new byte[CHUNK_SIZE];
+        final byte[] statuses = new byte[CHUNK_SIZE];
+        final long[] amounts = new long[CHUNK_SIZE];
+        final int[] fromAccounts = new int[CHUNK_SIZE];
+        final int[] toAccounts = new int[CHUNK_SIZE];
+        final long[] timestamps = new long[CHUNK_SIZE];
+        // Только у блоков архива: индекс предыдущей записи счета отправителя и счета получателя или -1
+        final int[] previousFrom;
+        final int[] previousTo;
+
+        Chunk(boolean archived) {
+            this.previousFrom = archived ? new int[CHUNK_SIZE] : null;
+            this.previousTo = archived ? new int[CHUNK_SIZE] : null;
+        }
+    }
+
+    // Контрольные точки баланса счета: индекс записи, ее метка времени и накопленное изменение баланса счета
+    // с начала журнала по эту запись включительно. Хранится изменение, а не сам баланс: после перезапуска записи
+    // архива не перечитываются, и баланс на начало журнала в памяти неизвестен. При архивации у счета остаются
+    // точки записей в памяти и одна самая новая точка перед ними: изменение накопительное, и более старые точки
+    // только сокращают разбор архива, а их число росло бы без предела. Меняются под монитором журнала
+    // операцией, держащей блокировку счета (или полосы горячего счета), и читаются под той же блокировкой;
+    // прореженные точки заменяют прежний объект целиком, как списки записей счетов
+    private static final class Checkpoints {
+        private int[] indices = new int[4];
+        private long[] timestamps = new long[4];
+        private long[] changes = new long[4];
+        private int size;
+        private int sinceLast;
+        private long change;
+
+        void record(int index, long timestamp, long delta) {
+            change += delta;
+            if (++sinceLast < CHECKPOINT_EVERY) {
+                return;
+            }
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                changes = Arrays.copyOf(changes, size * 2);
+            }
+            indices[size] = index;
+            timestamps[size] = timestamp;
+            changes[size] = change;
+            size++;
+            sinceLast = 0;
+        }
+
+        // Копия без точек, перед которыми есть еще одна точка с индексом меньше boundary, или null, если таких нет
+        Checkpoints trimmed(int boundary) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (indices[middle] < boundary) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int keepFrom = low - 1;
+            if (keepFrom <= 0) {
+                return null;
+            }
+            Checkpoints copy = new Checkpoints();
+            int kept = size - keepFrom;
+            int capacity = Math.max(4, kept);
+            copy.indices = Arrays.copyOfRange(indices, keepFrom, keepFrom + capacity);
+            copy.timestamps = Arrays.copyOfRange(timestamps, keepFrom, keepFrom + capacity);
+            copy.changes = Arrays.copyOfRange(changes, keepFrom, keepFrom + capacity);
+            copy.size = kept;
+            copy.sinceLast = sinceLast;
+            copy.change = change;
+            return copy;
+        }
+
+        // Первая точка с меткой времени позже timestamp или size
+        int firstAfter(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] <= timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    // Откуда разбирать историю счета назад: записи с индексом меньше before, а изменение баланса записями
+    // от before и позже уже известно - changeAfter
+    static final class Checkpoint {
+        private final int before;
+        private final long changeAfter;
+
+        private Checkpoint(int before, long changeAfter) {
+            this.before = before;
+            this.changeAfter = changeAfter;
+        }
+
+        int getBefore() {
+            return before;
+        }
+
+        long getChangeAfter() {
+            return changeAfter;
+        }
+    }
+
+    // Последовательность индексов журнала, в которой ищется запрос: записи одного счета или весь журнал
+    private interface Entries {
+        int size();
+
+        int get(int position);
+    }
+
+    private volatile Chunk[] chunks = new Chunk[16];
+    private volatile int size;
+    // Индексы записей каждого счета по возрастанию. После переноса в архив в списке остаются записи в памяти
+    // и последняя архивная запись счета, от которой более старые находятся по ссылкам previousFrom/previousTo
+    private final Map<Integer, IntList> accountEntries = new ConcurrentHashMap<>();
+    private final Map<Integer, Checkpoints> checkpoints = new ConcurrentHashMap<>();
+    private volatile TransactionArchive archive;
+    // Записи с меньшими индексами есть только в архиве
+    private volatile int memoryStart;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    // Метки времени не убывают в порядке индексов, так что журнал упорядочен по времени
+    synchronized int append(TransactionType type, long amount, int from, int to,
+                            long timestamp, TransactionStatus status) {
+        int index = size;
+        if (index == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Журнал транзакций переполнен");
+        }
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        Chunk[] current = chunks;
+        if (chunkIndex == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            chunks = current;
+        }
+        Chunk chunk = current[chunkIndex];
+        if (chunk == null) {
+            chunk = new Chunk(false);
+            current[chunkIndex] = chunk;
+        }
+
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+        int offset = index & CHUNK_MASK;
+        chunk.types[offset] = (byte) type.ordinal();
+        chunk.statuses[offset] = (byte) status.ordinal();
+        chunk.amounts[offset] = amount;
+        chunk.fromAccounts[offset] = from;
+        chunk.toAccounts[offset] = to;
+        chunk.timestamps[offset] = lastTimestamp;
+        size = index + 1;
+        // Индексы счетов обновляются после публикации записи, чтобы по ним нельзя было прочитать незаполненную запись
+        if (from != NO_ACCOUNT) {
+            accountEntries.computeIfAbsent(from, key -> new IntList(8)).add(index);
+        }
+        if (to != NO_ACCOUNT && to != from) {
+            accountEntries.computeIfAbsent(to, key -> new IntList(8)).add(index);
+        }
+        if (status.isSuccess() && from != to) {
+            if (from != NO_ACCOUNT) {
+                checkpoints.computeIfAbsent(from, key -> new Checkpoints()).record(index, lastTimestamp, -amount);
+            }
+            if (to != NO_ACCOUNT) {
+                checkpoints.computeIfAbsent(to, key -> new Checkpoints()).record(index, lastTimestamp, amount);
+            }
+        }
+        return index;
+    }
+
+    int size() {
+        return size;
+    }
+
+    TransactionType getType(int index) {
+        return TYPES[chunk(index).types[index & CHUNK_MASK]];
+    }
+
+    TransactionStatus getStatus(int index) {
+        return STATUSES[chunk(index).statuses[index & CHUNK_MASK]];
+    }
+
+    long getAmount(int index) {
+        return chunk(index).amounts[index & CHUNK_MASK];
+    }
+
+    int getFrom(int index) {
+        return chunk(index).fromAccounts[index & CHUNK_MASK];
+    }
+
+    int getTo(int index) {
+        return chunk(index).toAccounts[index & CHUNK_MASK];
+    }
+
+    long getTimestamp(int index) {
+        return chunk(index).timestamps[index & CHUNK_MASK];
+    }
+
+    Transaction get(int index) {
+        Chunk chunk = chunk(index);
+        int offset = index & CHUNK_MASK;
+        int from = chunk.fromAccounts[offset];
+        int to = chunk.toAccounts[offset];
+        return new Transaction(TYPES[chunk.types[offset]], Money.toBigDecimal(chunk.amounts[offset]),
+                (from != NO_ACCOUNT) ? from : null, (to != NO_ACCOUNT) ? to : null,
+                Transaction.fromEpochNanos(chunk.timestamps[offset]), STATUSES[chunk.statuses[offset]]);
+    }
+
+    // Неизменяемое представление журнала на момент вызова
+    List<Transaction> asList() {
+        int count = size;
+        return new AbstractList<>() {
+            @Override
+            public Transaction get(int index) {
+                if (index < 0 || index >= count) {
+                    throw new IndexOutOfBoundsException("Индекс: " + index + ", размер: " + count);
+                }
+                return TransactionLog.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    // Записи идут от новых к старым. Границы по времени и по токену страницы находятся двоичным поиском,
+    // поэтому стоимость страницы зависит от limit, а не от размера журнала. Пустые фильтры - null.
+    // Записи старше тех, что в памяти, дочитываются из архива: подряд или по ссылкам на предыдущую запись счета
+    TransactionPage find(Integer accountNumber, Long fromTimestamp, Long toTimestamp, TransactionStatus status,
+                         String pageToken, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть больше 0: " + limit);
+        }
+        int start = memoryStart;
+        Entries entries = entries(accountNumber, start);
+        int count = entries.size();
+        int high = count;
+        int token = (pageToken != null) ? parsePageToken(pageToken) : Integer.MAX_VALUE;
+        if (pageToken != null) {
+            high = Math.min(high, lowerBound(entries, count, token));
+        }
+        if (toTimestamp != null) {
+            high = Math.min(high, firstAtOrAfter(entries, high, toTimestamp));
+        }
+        int low = (fromTimestamp != null) ? firstAtOrAfter(entries, high, fromTimestamp) : 0;
+
+        List<Transaction> page = new ArrayList<>(Math.min(limit, high - low));
+        int lastIndex = -1;
+        int position = high - 1;
+        for (; position >= low && page.size() < limit; position--) {
+            int index = entries.get(position);
+            if (status == null || getStatus(index) == status) {
+                page.add(get(index));
+                lastIndex = index;
+            }
+        }
+        boolean more = position >= low;
+        // Если по fromTimestamp не отсечена ни одна запись в памяти, более старые могут быть в архиве
+        if (!more && low == 0) {
+            int index = newestArchived(accountNumber, entries, start, token, toTimestamp);
+            for (; index >= 0 && page.size() < limit; index = older(accountNumber, index)) {
+                long timestamp = getTimestamp(index);
+                if (fromTimestamp != null && timestamp < fromTimestamp) {
+                    index = -1;
+                    break;
+                }
+                if (index < token && (toTimestamp == null || timestamp < toTimestamp)
+                        && (status == null || getStatus(index) == status)) {
+                    page.add(get(index));
+                    lastIndex = index;
+                }
+            }
+            more = index >= 0;
+        }
+        String nextPageToken = (page.size() == limit && more) ? Integer.toString(lastIndex) : null;
+        return new TransactionPage(page, nextPageToken);
+    }
+
+    // Записи счета с индексами меньше before от новых к старым, включая архив
+    AccountHistory history(int accountNumber, int before) {
+        return new AccountHistory(accountNumber, before);
+    }
+
+    final class AccountHistory {
+        private final int accountNumber;
+        private final int before;
+        private final Entries entries;
+        private int position;
+        private int last = -1;
+
+        private AccountHistory(int accountNumber, int before) {
+            this.accountNumber = accountNumber;
+            this.before = before;
+            this.entries = entries(accountNumber, 0);
+            this.position = lowerBound(entries, entries.size(), before);
+            if (position == 0 && entries.size() > 0) {
+                last = entries.get(0);
+            }
+        }
+
+        // Индекс следующей, более старой записи или -1. Когда записи списка счета кончаются, история
+        // продолжается по ссылкам архива от самой старой из них
+        int next() {
+            if (position > 0) {
+                last = entries.get(--position);
+                return last;
+            }
+            while (last >= 0) {
+                last = older(accountNumber, last);
+                if (last < before) {
+                    return last;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Ближайшая контрольная точка счета позже timestamp; без нее история разбирается от конца журнала (limit).
+    // Вызывается под блокировкой счета, пока его записи не добавляются
+    Checkpoint checkpointAfter(int accountNumber, long timestamp, int limit) {
+        Checkpoints points = checkpoints.get(accountNumber);
+        if (points == null) {
+            return new Checkpoint(limit, 0);
+        }
+        int position = points.firstAfter(timestamp);
+        if (position == points.size) {
+            return new Checkpoint(limit, 0);
+        }
+        return new Checkpoint(points.indices[position] + 1, points.change - points.changes[position]);
+    }
+
+    // Подключается до первой записи: журнал продолжается с конца архива, а списки записей счетов начинаются
+    // с их последних архивных записей - входов в цепочки ссылок архива
+    synchronized void attachArchive(TransactionArchive archive) {
+        this.archive = archive;
+        int archived = archive.size();
+        if (archived == 0) {
+            return;
+        }
+        int archivedChunks = archived >>> CHUNK_SHIFT;
+        chunks = new Chunk[Math.max(chunks.length, Integer.highestOneBit(archivedChunks) << 1)];
+        for (Map.Entry<Integer, Integer> head : archive.heads().entrySet()) {
+            IntList entries = new IntList(8);
+            entries.add(head.getValue());
+            accountEntries.put(head.getKey(), entries);
+        }
+        lastTimestamp = archive.lastTimestamp();
+        memoryStart = archived;
+        size = archived;
+    }
+
+    // Переносит в архив заполненные блоки среди первых count записей, вышедшие за последние keepRecords записей
+    // или целиком старше olderThan; блок, в который еще идет запись, остается в памяти. Вызывается из одного
+    // потока. Запись в журнал ждет только замены списка одного счета и выгрузки блоков из массива
+    void archiveOld(int count, int keepRecords, long olderThan) throws IOException {
+        Chunk[] current = chunks;
+        int first = memoryStart >>> CHUNK_SHIFT;
+        int last = first;
+        while (((long) (last + 1) << CHUNK_SHIFT) < count) {
+            long newer = count - ((long) (last + 1) << CHUNK_SHIFT);
+            if (newer < keepRecords && current[last].timestamps[CHUNK_MASK] >= olderThan) {
+                break;
+            }
+            last++;
+        }
+
+        for (int from = first; from < last; from += SEGMENT_CHUNKS) {
+            int to = Math.min(last, from + SEGMENT_CHUNKS);
+            int start = from << CHUNK_SHIFT;
+            int[] previousFrom = new int[(to - from) << CHUNK_SHIFT];
+            int[] previousTo = new int[previousFrom.length];
+            IntList heads = new IntList();
+            linkPrevious(start, previousFrom, previousTo, heads);
+            try (TransactionArchive.Writer writer = archive.newSegment()) {
+                for (int chunkIndex = from; chunkIndex < to; chunkIndex++) {
+                    writer.block(current[chunkIndex], previousFrom, previousTo, (chunkIndex << CHUNK_SHIFT) - start);
+                }
+                writer.commit(heads);
+            }
+            // Блоки выгружаются после списков счетов: пока список не укорочен, его записи еще читаются из памяти
+            int boundary = to << CHUNK_SHIFT;
+            trimAccountEntries(boundary);
+            trimCheckpoints(boundary);
+            synchronized (this) {
+                Chunk[] live = chunks;
+                for (int chunkIndex = from; chunkIndex < to; chunkIndex++) {
+                    live[chunkIndex] = null;
+                }
+                memoryStart = boundary;
+            }
+        }
+    }
+
+    // Самая новая запись архива, с которой продолжается поиск, или -1
+    private int newestArchived(Integer accountNumber, Entries entries, int start, int token, Long toTimestamp) {
+        if (accountNumber == null) {
+            int index = Math.min(start, token) - 1;
+            if (toTimestamp != null && index >= 0) {
+                index = Math.min(index, archiveFirstAtOrAfter(toTimestamp) - 1);
+            }
+            return index;
+        }
+        if (entries.size() == 0) {
+            return -1;
+        }
+        int first = entries.get(0);
+        // Токен - последняя выданная запись счета, поэтому следующая страница начинается сразу перед ней
+        if (token < first && (getFrom(token) == accountNumber || getTo(token) == accountNumber)) {
+            return older(accountNumber, token);
+        }
+        return older(accountNumber, first);
+    }
+
+    // Предыдущая запись журнала, а для счета - его предыдущая запись по ссылке из архива; -1, если ее нет.
+    // Для записи из памяти предыдущей нет: более старые записи счета были бы в его списке
+    private int older(Integer accountNumber, int index) {
+        if (accountNumber == null) {
+            return index - 1;
+        }
+        TransactionArchive current = archive;
+        if (current == null || index >= current.size()) {
+            return -1;
+        }
+        Chunk chunk = archivedChunk(index >>> CHUNK_SHIFT);
+        int offset = index & CHUNK_MASK;
+        if (chunk.fromAccounts[offset] == accountNumber) {
+            return chunk.previousFrom[offset];
+        }
+        return (chunk.toAccounts[offset] == accountNumber) ? chunk.previousTo[offset] : -1;
+    }
+
+    // Ссылки на предыдущие записи счетов для записей от start: один проход по спискам счетов вместо поиска
+    // по списку для каждой записи. В heads - пары (счет, его последняя запись среди этих записей)
+    private void linkPrevious(int start, int[] previousFrom, int[] previousTo, IntList heads) {
+        Arrays.fill(previousFrom, -1);
+        Arrays.fill(previousTo, -1);
+        int end = start + previousFrom.length;
+        for (Map.Entry<Integer, IntList> entry : accountEntries.entrySet()) {
+            int accountNumber = entry.getKey();
+            Entries entries = entries(entry.getValue());
+            int count = entries.size();
+            if (count == 0 || entries.get(count - 1) < start) {
+                continue;
+            }
+            int position = lowerBound(entries, count, start);
+            int previous = (position > 0) ? entries.get(position - 1) : -1;
+            for (; position < count; position++) {
+                int index = entries.get(position);
+                if (index >= end) {
+                    break;
+                }
+                if (getFrom(index) == accountNumber) {
+                    previousFrom[index - start] = previous;
+                }
+                if (getTo(index) == accountNumber) {
+                    previousTo[index - start] = previous;
+                }
+                previous = index;
+            }
+            if (previous >= start) {
+                heads.add(accountNumber);
+                heads.add(previous);
+            }
+        }
+    }
+
+    // Оставляет в списках счетов записи от boundary и одну запись перед ними - вход в цепочку архива
+    private void trimAccountEntries(int boundary) {
+        for (Map.Entry<Integer, IntList> entry : accountEntries.entrySet()) {
+            IntList list = entry.getValue();
+            if (list.size() < 2 || list.get(1) >= boundary) {
+                continue;
+            }
+            synchronized (this) {
+                Entries entries = entries(list);
+                int count = entries.size();
+                int keepFrom = lowerBound(entries, count, boundary) - 1;
+                IntList trimmed = new IntList(Math.max(8, count - keepFrom));
+                for (int position = keepFrom; position < count; position++) {
+                    trimmed.add(entries.get(position));
+                }
+                accountEntries.put(entry.getKey(), trimmed);
+            }
+        }
+    }
+
+    private void trimCheckpoints(int boundary) {
+        for (Map.Entry<Integer, Checkpoints> entry : checkpoints.entrySet()) {
+            synchronized (this) {
+                Checkpoints trimmed = entry.getValue().trimmed(boundary);
+                if (trimmed != null) {
+                    checkpoints.put(entry.getKey(), trimmed);
+                }
+            }
+        }
+    }
+
+    private Entries entries(Integer accountNumber, int start) {
+        if (accountNumber == null) {
+            int count = size - start;
+            return new Entries() {
+                @Override
+                public int size() {
+                    return count;
+                }
+
+                @Override
+                public int get(int position) {
+                    return start + position;
+                }
+            };
+        }
+        return entries(accountEntries.get(accountNumber));
+    }
+
+    private static Entries entries(IntList list) {
+        int count = (list != null) ? list.size() : 0;
+        return new Entries() {
+            @Override
+            public int size() {
+                return count;
+            }
+
+            @Override
+            public int get(int position) {
+                return list.get(position);
+            }
+        };
+    }
+
+    private static int parsePageToken(String pageToken) {
+        int index;
+        try {
+            index = Integer.parseInt(pageToken);
+        } catch (NumberFormatException e) {
+            index = -1;
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("Некорректный токен страницы: " + pageToken);
+        }
+        return index;
+    }
+
+    // Первая позиция, где индекс журнала не меньше index
+    private static int lowerBound(Entries entries, int high, int index) {
+        int low = 0;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.get(middle) < index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Первая позиция, где метка времени не меньше timestamp
+    private int firstAtOrAfter(Entries entries, int high, long timestamp) {
+        int low = 0;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getTimestamp(entries.get(middle)) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private Chunk chunk(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Индекс: " + index + ", размер: " + size);
+        }
+        Chunk chunk = chunks[index >>> CHUNK_SHIFT];
+        return (chunk != null) ? chunk : archivedChunk(index >>> CHUNK_SHIFT);
+    }
+
+    private Chunk archivedChunk(int chunkIndex) {
+        try {
+            return archive.block(chunkIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения архива транзакций", e);
+        }
+    }
+
+    private int archiveFirstAtOrAfter(long timestamp) {
+        try {
+            return archive.firstAtOrAfter(timestamp);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения архива транзакций", e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package bank;
+
+import java.util.List;
+
+public final class TransactionPage {
+    private final List<Transaction> transactions;
+    private final String nextPageToken;
+
+    TransactionPage(List<Transaction> transactions, String nextPageToken) {
+        this.transactions = transactions;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    // null, если страница последняя
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
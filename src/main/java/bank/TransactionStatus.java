@@ -0,0 +1,27 @@
+package bank;
+
+public enum TransactionStatus {
+    OK("ОК"),
+    INVALID_AMOUNT("Неверная сумма"),
+    ACCOUNT_NOT_FOUND("Счет не найден"),
+    DEPOSIT_FAILED("Сбой пополнения"),
+    INSUFFICIENT_FUNDS("Недостаточно средств"),
+    SENDER_NOT_FOUND("Счет отправителя не найден"),
+    RECIPIENT_NOT_FOUND("Счет получателя не найден"),
+    SENDER_INSUFFICIENT_FUNDS("Недостаточно средств у отправителя");
+
+    private final String message;
+
+    TransactionStatus(String message) {
+        this.message = message;
+    }
+
+    public boolean isSuccess() {
+        return this == OK;
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
@@ -3,7 +3,11 @@ package bank;
 public enum TransactionType {
     DEPOSIT("ПОПОЛНЕНИЕ"),
     WITHDRAW("СНЯТИЕ"),
-    TRANSFER("ПЕРЕВОД");
+    TRANSFER("ПЕРЕВОД"),
+    // Начисления закрытия дня; новые типы добавляются только в конец - порядковый номер пишется в журнал
+    INTEREST("ПРОЦЕНТЫ"),
+    OVERDRAFT_INTEREST("ОВЕРДРАФТ"),
+    FEE("КОМИССИЯ");
 
     private final String showType;
 